@@ -24,9 +24,13 @@ import peersim.core.*;
 import peersim.transport.Transport;
 import peersim.cdsim.CDProtocol;
 import peersim.edsim.EDProtocol;
+import peersim.edsim.MessagePool;
+import peersim.edsim.PooledMessage;
 
 /**
 * Event driven version of epidemic averaging.
+* Messages are taken from a {@link MessagePool}, and they are returned to
+* the pool by the simulator after they are processed.
 */
 public class AverageED extends SingleValueHolder
 implements CDProtocol, EDProtocol<AverageMessage> {
@@ -67,7 +71,7 @@ public void nextCycle( Node node, int pid )
 			send(
 				node,
 				peern,
-				new AverageMessage(value,node),
+				AverageMessage.get(value,node),
 				pid);
 	}
 }
@@ -84,7 +88,7 @@ public void processEvent( Node node, int pid, AverageMessage aem ) {
 			send(
 				node,
 				aem.sender,
-				new AverageMessage(value,null),
+				AverageMessage.get(value,null),
 				pid);
 				
 	value = (value + aem.value) / 2;
@@ -99,16 +103,25 @@ public void processEvent( Node node, int pid, AverageMessage aem ) {
 * The type of a message. It contains a value of type double and the
 * sender node of type {@link peersim.core.Node}.
 */
-class AverageMessage {
+class AverageMessage extends PooledMessage {
 
-	final double value;
+	/** The pool of the messages of all the instances */
+	private static final MessagePool<AverageMessage> pool =
+		new MessagePool<AverageMessage>() {
+			protected AverageMessage create() { return new AverageMessage(); }
+		};
+
+	double value;
 	/** If not null,
 	this has to be answered, otherwise this is the answer. */
-	final Node sender;
-	public AverageMessage( double value, Node sender )
+	Node sender;
+	/** Returns a message from the pool. */
+	static AverageMessage get( double value, Node sender )
 	{
-		this.value = value;
-		this.sender = sender;
+		AverageMessage m = pool.acquire();
+		m.value = value;
+		m.sender = sender;
+		return m;
 	}
+	protected void clear() { sender = null; }
 }
-
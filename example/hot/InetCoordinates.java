@@ -18,7 +18,7 @@
 
 package example.hot;
 
-import peersim.core.Protocol;
+import peersim.core.Coordinates;
 
 /**
  * <p>
@@ -34,7 +34,7 @@ import peersim.core.Protocol;
  * 
  * @author Gian Paolo Jesi
  */
-public class InetCoordinates implements Protocol {
+public class InetCoordinates implements Coordinates {
 
     // ------------------------------------------------------------------------
     // Fields
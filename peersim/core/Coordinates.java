@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.core;
+
+
+/**
+* Instances of classes implementing this interface give the node that hosts
+* them a position in the plane. Nodes with coordinates can be indexed by
+* {@link SpatialIndex} to find nearby nodes.
+*/
+public interface Coordinates extends Protocol {
+
+	/** Returns the first coordinate of the position. */
+	public double getX();
+
+	/** Returns the second coordinate of the position. */
+	public double getY();
+}
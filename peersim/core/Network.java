@@ -91,6 +91,12 @@ static Node[] node = null;
 */
 private static int len;
 
+/**
+* The number of times the node array was reordered by {@link #shuffle} or
+* {@link #sort}.
+*/
+private static long reorderings = 0;
+
 /**
 * The prototype node which is used to populate the simulation via cloning.
 * After all the nodes have been cloned, {@link Control} components can be
@@ -271,6 +277,7 @@ public static void swap(int i, int j) {
 public static void shuffle() {
 	
 	for(int i=len; i>1; i--) swap(i-1, CommonState.r.nextInt(i));
+	reorderings++;
 }
 
 // ------------------------------------------------------------------
@@ -284,10 +291,21 @@ public static void sort(Comparator<? super Node> c) {
 	
 	Arrays.sort(node,0,len,c);
 	for(int i=0; i<len; i++) node[i].setIndex(i);
+	reorderings++;
 }
 
 // ------------------------------------------------------------------
 
+/**
+* Returns the number of times the node array was reordered by
+* {@link #shuffle} or {@link #sort}. Components that cache information
+* based on node indexes can compare it with an earlier value to find out
+* whether the indexes have changed.
+*/
+public static long getReorderings() { return reorderings; }
+
+// ------------------------------------------------------------------
+
 public static void test() {
 	
 	System.err.println("number of nodes = "+len);
@@ -0,0 +1,419 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.core;
+
+import java.util.*;
+
+/**
+* A uniform grid of the nodes of the network by their position, given by a
+* {@link Coordinates} protocol. It answers k-nearest neighbour and range
+* queries by looking only at the cells around the query point, so building
+* a proximity graph of n nodes takes about O(n log n) time instead of
+* O(n<sup>2</sup>) for scanning the network.
+* <p>
+* There is one index for each coordinate protocol, returned by
+* {@link #get}. The index is built from the network at the first call in
+* each experiment, and it has to be maintained when the network changes:
+* joining nodes are added by {@link #add} (see
+* {@link peersim.dynamics.SpatialIndexer}), and nodes that move are updated
+* by calling {@link #add} again. Nodes that are removed from the network
+* are {@link Fallible#DEAD}, and they are purged lazily when queries meet
+* them. Nodes that are down are still returned by queries.
+* <p>
+* The size of the cells is chosen so that a cell contains a few nodes on
+* average, and the grid is rebuilt when the number of nodes grows a lot.
+* The positions are copied into the index, so queries do not access the
+* protocols. Like the rest of the simulator, indexes are not thread-safe.
+*/
+public class SpatialIndex {
+
+
+// ====================== fields ================================
+// ==============================================================
+
+
+/** The average number of nodes per cell after (re)building */
+private static final int OCCUPANCY = 4;
+
+/** The indexes by coordinate protocol */
+private static final HashMap<Integer,SpatialIndex> indexes =
+	new HashMap<Integer,SpatialIndex>();
+
+/** The nodes of a cell and their positions */
+private static final class Cell {
+
+	Node[] nodes = new Node[OCCUPANCY];
+	double[] x = new double[OCCUPANCY], y = new double[OCCUPANCY];
+	int n;
+}
+
+/** The coordinate protocol */
+private final int pid;
+
+/** The prototype of the network when the index was built */
+private final Node prototype;
+
+/** The cells that contain nodes, by {@link #key} */
+private HashMap<Long,Cell> cells;
+
+/** The cell of each node */
+private IdentityHashMap<Node,Cell> where = new IdentityHashMap<Node,Cell>();
+
+/** The side of the cells */
+private double side;
+
+/** The range of the coordinates of the cells that contain nodes */
+private int minx, maxx, miny, maxy;
+
+/** The number of nodes when the grid was built */
+private int built;
+
+
+// ====================== initialization ========================
+// ==============================================================
+
+
+private SpatialIndex( int pid ) {
+
+	this.pid = pid;
+	prototype = Network.prototype;
+}
+
+// --------------------------------------------------------------
+
+/**
+* Returns the index of the nodes by the given {@link Coordinates}
+* protocol. If the index does not exist in the current experiment, it
+* is built from the nodes of the network that are not dead.
+*/
+public static SpatialIndex get( int pid ) {
+
+	SpatialIndex idx = indexes.get(pid);
+	if( idx == null || idx.prototype != Network.prototype )
+	{
+		idx = new SpatialIndex(pid);
+		for(int i=0; i<Network.size(); ++i)
+		{
+			final Node n = Network.get(i);
+			if( n.getFailState() != Fallible.DEAD ) idx.where.put(n,null);
+		}
+		idx.rebuild();
+		indexes.put(pid,idx);
+	}
+	return idx;
+}
+
+
+// ======================= public methods =======================
+// ==============================================================
+
+
+/**
+* Adds the node to the index at its current position, or moves it there if
+* it is already in the index. Dead nodes are not added.
+*/
+public void add( Node n ) {
+
+	if( n.getFailState() == Fallible.DEAD ) return;
+	final Cell old = where.get(n);
+	if( old != null ) remove(old,n);
+	final Coordinates c = coordinates(n);
+	where.put(n,insert(n,c.getX(),c.getY()));
+	if( where.size() > OCCUPANCY*built ) rebuild();
+}
+
+// --------------------------------------------------------------
+
+/** Removes the node from the index, if it is there. */
+public void remove( Node n ) {
+
+	final Cell c = where.remove(n);
+	if( c != null ) remove(c,n);
+}
+
+// --------------------------------------------------------------
+
+/** Returns the number of nodes in the index, including unpurged dead ones. */
+public int size() { return where.size(); }
+
+// --------------------------------------------------------------
+
+/**
+* Returns the k nodes nearest to the given point, in increasing order of
+* distance, or all the nodes if there are fewer.
+* @param exclude this node is not returned, can be null
+*/
+public Node[] nearest( double x, double y, int k, Node exclude ) {
+
+	if( k <= 0 || cells.isEmpty() ) return new Node[0];
+	// the best candidates, in a max-heap by squared distance
+	final Node[] bn = new Node[k];
+	final double[] bd = new double[k];
+	int found = 0;
+	final int cx = coord(x), cy = coord(y);
+	final long far = Math.max(Math.max((long)cx-minx,(long)maxx-cx),
+		Math.max((long)cy-miny,(long)maxy-cy));
+	final long near = Math.max(0,Math.max(
+		Math.max((long)minx-cx,(long)cx-maxx),
+		Math.max((long)miny-cy,(long)cy-maxy)));
+	for(long r=near; r<=far; ++r)
+	{
+		// points in ring r are at least (r-1)*side away
+		final double lb = Math.max(0,(r-1)*side);
+		if( found == k && lb*lb >= bd[0] ) break;
+		for(long i=Math.max(cx-r,minx); i<=Math.min(cx+r,maxx); ++i)
+		for(long j=Math.max(cy-r,miny); j<=Math.min(cy+r,maxy); ++j)
+		{
+			if( i != cx-r && i != cx+r && j != cy-r && j != cy+r )
+			{
+				j = cy+r-1; // skip the inside of the ring
+				continue;
+			}
+			final Cell c = cells.get(key((int)i,(int)j));
+			if( c == null ) continue;
+			for(int e=0; e<c.n; ++e)
+			{
+				final Node n = c.nodes[e];
+				if( n.getFailState() == Fallible.DEAD )
+				{
+					where.remove(n);
+					remove(c,n);
+					e--;
+					continue;
+				}
+				if( n == exclude ) continue;
+				final double dx = c.x[e]-x, dy = c.y[e]-y;
+				final double d = dx*dx+dy*dy;
+				if( found < k )
+				{
+					// sift up
+					int h = found++;
+					while( h > 0 && bd[(h-1)/2] < d )
+					{
+						bd[h] = bd[(h-1)/2];
+						bn[h] = bn[(h-1)/2];
+						h = (h-1)/2;
+					}
+					bd[h] = d;
+					bn[h] = n;
+				}
+				else if( d < bd[0] )
+				{
+					// replace the root and sift down
+					int h = 0;
+					for(int ch=1; ch<k; ch=2*h+1)
+					{
+						if( ch+1 < k && bd[ch+1] > bd[ch] ) ch++;
+						if( bd[ch] <= d ) break;
+						bd[h] = bd[ch];
+						bn[h] = bn[ch];
+						h = ch;
+					}
+					bd[h] = d;
+					bn[h] = n;
+				}
+			}
+		}
+	}
+	// heap sort in increasing order
+	final Node[] res = new Node[found];
+	for(int m=found; m>0; --m)
+	{
+		res[m-1] = bn[0];
+		final double d = bd[m-1];
+		final Node n = bn[m-1];
+		int h = 0;
+		for(int ch=1; ch<m-1; ch=2*h+1)
+		{
+			if( ch+1 < m-1 && bd[ch+1] > bd[ch] ) ch++;
+			if( bd[ch] <= d ) break;
+			bd[h] = bd[ch];
+			bn[h] = bn[ch];
+			h = ch;
+		}
+		bd[h] = d;
+		bn[h] = n;
+	}
+	return res;
+}
+
+// --------------------------------------------------------------
+
+/**
+* Returns the k nodes nearest to the given node, in increasing order of
+* distance, not including the node itself.
+*/
+public Node[] nearest( Node n, int k ) {
+
+	final Coordinates c = coordinates(n);
+	return nearest(c.getX(),c.getY(),k,n);
+}
+
+// --------------------------------------------------------------
+
+/**
+* Returns the nodes whose distance from the given point is at most the
+* given radius, in no particular order.
+*/
+public List<Node> range( double x, double y, double radius ) {
+
+	final ArrayList<Node> res = new ArrayList<Node>();
+	if( cells.isEmpty() || !(radius >= 0) ) return res;
+	final long fromx = Math.max(minx,coord(x-radius));
+	final long tox = Math.min(maxx,coord(x+radius));
+	final long fromy = Math.max(miny,coord(y-radius));
+	final long toy = Math.min(maxy,coord(y+radius));
+	final double r2 = radius*radius;
+	for(long i=fromx; i<=tox; ++i)
+	for(long j=fromy; j<=toy; ++j)
+	{
+		final Cell c = cells.get(key((int)i,(int)j));
+		if( c == null ) continue;
+		for(int e=0; e<c.n; ++e)
+		{
+			final Node n = c.nodes[e];
+			if( n.getFailState() == Fallible.DEAD )
+			{
+				where.remove(n);
+				remove(c,n);
+				e--;
+				continue;
+			}
+			final double dx = c.x[e]-x, dy = c.y[e]-y;
+			if( dx*dx+dy*dy <= r2 ) res.add(n);
+		}
+	}
+	return res;
+}
+
+
+// ======================= private methods ======================
+// ==============================================================
+
+
+/** Returns the coordinate protocol of the node. */
+private Coordinates coordinates( Node n ) {
+
+	try {
+		return (Coordinates)n.getProtocol(pid);
+	} catch( ClassCastException e ) {
+		throw new IllegalArgumentException("Protocol " +
+			peersim.config.Configuration.lookupPid(pid) +
+			" does not implement Coordinates");
+	}
+}
+
+// --------------------------------------------------------------
+
+/** Returns the cell coordinate of the given position coordinate. */
+private int coord( double x ) {
+
+	final double c = Math.floor(x/side);
+	return (int)Math.max(Integer.MIN_VALUE/2,Math.min(Integer.MAX_VALUE/2,c));
+}
+
+// --------------------------------------------------------------
+
+private static long key( int i, int j ) {
+
+	return ((long)i<<32) | (j & 0xffffffffL);
+}
+
+// --------------------------------------------------------------
+
+/** Inserts the node at the given position and returns its cell. */
+private Cell insert( Node n, double x, double y ) {
+
+	final int i = coord(x), j = coord(y);
+	Cell c = cells.get(key(i,j));
+	if( c == null )
+	{
+		c = new Cell();
+		cells.put(key(i,j),c);
+		if( cells.size() == 1 )
+		{
+			minx = maxx = i;
+			miny = maxy = j;
+		}
+		minx = Math.min(minx,i);
+		maxx = Math.max(maxx,i);
+		miny = Math.min(miny,j);
+		maxy = Math.max(maxy,j);
+	}
+	if( c.n == c.nodes.length )
+	{
+		c.nodes = Arrays.copyOf(c.nodes,2*c.n);
+		c.x = Arrays.copyOf(c.x,2*c.n);
+		c.y = Arrays.copyOf(c.y,2*c.n);
+	}
+	c.nodes[c.n] = n;
+	c.x[c.n] = x;
+	c.y[c.n++] = y;
+	return c;
+}
+
+// --------------------------------------------------------------
+
+/** Removes the node from the given cell. */
+private static void remove( Cell c, Node n ) {
+
+	for(int e=0; e<c.n; ++e)
+	{
+		if( c.nodes[e] != n ) continue;
+		c.n--;
+		c.nodes[e] = c.nodes[c.n];
+		c.x[e] = c.x[c.n];
+		c.y[e] = c.y[c.n];
+		c.nodes[c.n] = null;
+		return;
+	}
+}
+
+// --------------------------------------------------------------
+
+/**
+* Chooses the size of the cells for the current nodes, and inserts them
+* into a new grid.
+*/
+private void rebuild() {
+
+	final Node[] nodes = where.keySet().toArray(new Node[where.size()]);
+	final double[] x = new double[nodes.length], y = new double[nodes.length];
+	double x0 = Double.POSITIVE_INFINITY, x1 = Double.NEGATIVE_INFINITY;
+	double y0 = Double.POSITIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+	for(int i=0; i<nodes.length; ++i)
+	{
+		final Coordinates c = coordinates(nodes[i]);
+		x[i] = c.getX();
+		y[i] = c.getY();
+		x0 = Math.min(x0,x[i]);
+		x1 = Math.max(x1,x[i]);
+		y0 = Math.min(y0,y[i]);
+		y1 = Math.max(y1,y[i]);
+	}
+	final double w = Math.max(x1-x0,y1-y0);
+	side = (nodes.length == 0 || !(w > 0) ? 1 :
+		w*Math.sqrt((double)OCCUPANCY/nodes.length));
+	cells = new HashMap<Long,Cell>(2*nodes.length/OCCUPANCY+16);
+	for(int i=0; i<nodes.length; ++i)
+		where.put(nodes[i],insert(nodes[i],x[i],y[i]));
+	built = Math.max(nodes.length,16);
+}
+
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.dynamics;
+
+import java.util.Comparator;
+import peersim.config.*;
+import peersim.core.*;
+import peersim.graph.*;
+
+/**
+ * Reorders the nodes in {@link Network} so that nodes that are linked in a
+ * given {@link Linkable} protocol are close to each other in the node array.
+ * Cycle-driven simulation and graph observers access the nodes in index
+ * order, and the neighbours of a node are then likely to be nearby in
+ * memory, which improves cache efficiency on static topologies.
+ * The order is calculated on the undirected version of the overlay by
+ * {@link NodeOrdering}, and it is applied by {@link Network#sort},
+ * so the indexes of the nodes are updated consistently.
+ * <p>
+ * Note that reordering has the same effect on the simulation as
+ * {@link Network#shuffle}: anything that relies on node indexes
+ * (instead of node references) becomes inconsistent. Graph observers
+ * running later at the same time see the new indexes, since
+ * {@link Network#sort} counts as a reordering (see
+ * {@link Network#getReorderings}).
+ */
+public class Reorder implements Control
+{
+
+// --------------------------------------------------------------------------
+// Parameters
+// --------------------------------------------------------------------------
+
+/**
+ * The {@link Linkable} protocol that defines the topology.
+ * @config
+ */
+private static final String PAR_PROT = "protocol";
+
+/**
+ * The ordering to apply. It can be "rcm" (reverse Cuthill-McKee, see
+ * {@link NodeOrdering#reverseCuthillMcKee}), "bfs" (breadth-first search
+ * order, see {@link NodeOrdering#bfs}), "bisection" (recursive bisection,
+ * see {@link NodeOrdering#bisection}) or "partition" (the parts of a
+ * {@link GraphPartitioner} partition one after the other, see
+ * {@link NodeOrdering#byPartition}). Defaults to "rcm".
+ * @config
+ */
+private static final String PAR_ORDER = "order";
+
+/**
+ * The size of the parts that are not split further in the case of
+ * recursive bisection. Defaults to 64.
+ * @config
+ */
+private static final String PAR_LEAF = "leaf";
+
+/**
+ * The number of parts in the case of the "partition" order. Defaults
+ * to 8, independently of the machine, so that the resulting order (and
+ * thus the simulation) is reproducible.
+ * @config
+ */
+private static final String PAR_PARTS = "parts";
+
+// --------------------------------------------------------------------------
+// Fields
+// --------------------------------------------------------------------------
+
+/** The name of this object in the configuration file */
+private final String name;
+
+/** {@link #PAR_PROT} */
+private final int pid;
+
+/** {@link #PAR_ORDER} */
+private final String order;
+
+/** {@link #PAR_LEAF} */
+private final int leaf;
+
+/** {@link #PAR_PARTS} */
+private final int parts;
+
+// --------------------------------------------------------------------------
+// Initialization
+// --------------------------------------------------------------------------
+
+/**
+ * Standard constructor that reads the configuration parameters.
+ * Invoked by the simulation engine.
+ * @param prefix the configuration prefix for this class
+ */
+public Reorder(String prefix)
+{
+	name = prefix;
+	pid = Configuration.getPid(prefix + "." + PAR_PROT);
+	order = Configuration.getString(prefix + "." + PAR_ORDER, "rcm");
+	if (!order.equals("rcm") && !order.equals("bfs") &&
+			!order.equals("bisection") && !order.equals("partition"))
+		throw new IllegalParameterException(prefix + "." + PAR_ORDER,
+			"unknown order '" + order + "'");
+	leaf = Configuration.getInt(prefix + "." + PAR_LEAF, 64);
+	parts = Configuration.getInt(prefix + "." + PAR_PARTS, 8);
+	if (parts < 1)
+		throw new IllegalParameterException(prefix + "." + PAR_PARTS,
+			"must be positive");
+}
+
+// --------------------------------------------------------------------------
+// Methods
+// --------------------------------------------------------------------------
+
+/**
+ * Reorders the network. In the case of the "partition" order the
+ * random decisions of the partitioner are seeded from
+ * {@link CommonState#r}. Prints the average and the maximal index
+ * difference over the links before and after reordering (see
+ * {@link NodeOrdering#indexGap}), separated by spaces.
+ * @return always false
+ */
+public boolean execute()
+{
+	final CSRGraph g = new CSRGraph(
+		new ConstUndirGraph(new OverlayGraph(pid)), true);
+	final int[] o;
+	if (order.equals("rcm"))
+		o = NodeOrdering.reverseCuthillMcKee(g);
+	else if (order.equals("bfs"))
+		o = NodeOrdering.bfs(g);
+	else if (order.equals("bisection"))
+		o = NodeOrdering.bisection(g, leaf);
+	else
+		o = NodeOrdering.byPartition(g, new GraphPartitioner(g).partition(
+			parts, CommonState.r.nextLong()));
+
+	final double[] before = NodeOrdering.indexGap(g, null);
+	final double[] after = NodeOrdering.indexGap(g, o);
+
+	final int[] rank = new int[o.length];
+	for (int k = 0; k < o.length; ++k)
+		rank[o[k]] = k;
+	// indexes are updated only after sorting, so they are the old ones
+	Network.sort(new Comparator<Node>() {
+		public int compare(Node a, Node b) {
+			return rank[a.getIndex()] - rank[b.getIndex()];
+		}
+	});
+
+	System.out.println(name + ": " + before[0] + " " + (int) before[1] +
+		" " + after[0] + " " + (int) after[1]);
+	return false;
+}
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.dynamics;
+
+import peersim.core.*;
+import peersim.config.Configuration;
+
+/**
+ * Maintains the {@link SpatialIndex} of a {@link Coordinates} protocol.
+ * As a control, it rebuilds the index from the network, which is needed
+ * if many nodes have moved. As a node initializer, it adds joining nodes
+ * to the index; it has to come after the initializer that sets their
+ * coordinates. Nodes that leave the network do not have to be removed.
+ */
+public class SpatialIndexer implements Control, NodeInitializer {
+
+//--------------------------------------------------------------------------
+//Parameters
+//--------------------------------------------------------------------------
+
+/**
+ * The {@link Coordinates} protocol to index.
+ * @config
+ */
+private static final String PAR_PROT = "protocol";
+
+//--------------------------------------------------------------------------
+//Fields
+//--------------------------------------------------------------------------
+
+/** The coordinate protocol */
+private final int pid;
+
+//--------------------------------------------------------------------------
+//Initialization
+//--------------------------------------------------------------------------
+
+/**
+ * Standard constructor that reads the configuration parameters. Invoked by the
+ * simulation engine.
+ * @param prefix the configuration prefix for this class
+ */
+public SpatialIndexer(String prefix)
+{
+	pid = Configuration.getPid(prefix + "." + PAR_PROT);
+}
+
+//--------------------------------------------------------------------------
+//Methods
+//--------------------------------------------------------------------------
+
+/**
+ * Updates the positions of all the nodes in the index.
+ * @return always false
+ */
+public boolean execute()
+{
+	final SpatialIndex idx = SpatialIndex.get(pid);
+	for (int i = 0; i < Network.size(); ++i)
+		idx.add(Network.get(i));
+	return false;
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Adds the node to the index.
+ */
+public void initialize(Node n)
+{
+	SpatialIndex.get(pid).add(n);
+}
+
+}
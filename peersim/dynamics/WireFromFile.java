@@ -24,8 +24,11 @@ import java.io.FileReader;
 import java.io.LineNumberReader;
 import java.util.StringTokenizer;
 import peersim.graph.Graph;
+import peersim.graph.GraphIO;
+import peersim.graph.MappedGraph;
 import peersim.core.*;
-import peersim.config.Configuration;
+import peersim.config.*;
+import peersim.util.RangeTask;
 
 /**
 * Takes a {@link Linkable} protocol and adds connections that are stored in a
@@ -37,6 +40,11 @@ import peersim.config.Configuration;
 * All node IDs larger than the actual network size will be discarded, but
 * it does not trigger an error. Lines starting with a "#" character and
 * empty lines are ignored.
+* <p>
+* Alternatively, the file can be in the binary format described at
+* {@link MappedGraph} (see {@value #PAR_FORMAT}), which is mapped into
+* memory and wired without parsing. Text files can be converted with
+* {@link GraphIO#textToBinary}.
 */
 public class WireFromFile extends WireGraph {
 
@@ -59,10 +67,22 @@ private static final String PAR_FILE = "file";
 */
 private static final String PAR_K = "k";
 
+/**
+* The format of the file, either "text" or "binary". Defaults to "text".
+* In the case of the binary format, if {@value #PAR_PARALLEL} is defined
+* and links are added to a {@link Linkable} protocol, the neighbours of
+* the nodes are added in parallel, as in {@link WireGraph#wireCSR}. This
+* is not supported if the links are added in an undirected fashion.
+* @config
+*/
+private static final String PAR_FORMAT = "format";
+
 private final String file;
 
 private final int k;
 
+private final boolean binary;
+
 // ==================== initialization ==============================
 // ==================================================================
 
@@ -77,6 +97,16 @@ public WireFromFile(String prefix) {
 	super(prefix);
 	file = Configuration.getString(prefix+"."+PAR_FILE);
 	k = Configuration.getInt(prefix + "." + PAR_K, Integer.MAX_VALUE);
+	final String format = Configuration.getString(prefix+"."+PAR_FORMAT,
+		"text");
+	if( !format.equals("text") && !format.equals("binary") )
+		throw new IllegalParameterException(prefix+"."+PAR_FORMAT,
+			"unknown format '"+format+"'");
+	binary = format.equals("binary");
+	if( binary && parallel && undir )
+		throw new IllegalParameterException(prefix+"."+PAR_PARALLEL,
+			"parallel wiring is not supported with "+PAR_FORMAT+
+			" binary in the undirected case");
 }
 
 
@@ -90,11 +120,17 @@ public WireFromFile(String prefix) {
 * (IDs start from 0) followed by a list of neighbors, separated by whitespace.
 * All node IDs larger than the actual network size will be discarded, but
 * it does not trigger an error. Lines starting with a "#" character and
-* empty lines are ignored.
+* empty lines are ignored. Binary files are wired by {@link #wireBinary}.
 */
 public void wire(Graph g) {
 try
 {
+	if( binary )
+	{
+		wireBinary(g);
+		return;
+	}
+	
 	FileReader fr = new FileReader(file);
 	LineNumberReader lnr = new LineNumberReader(fr);
 	String line;
@@ -133,4 +169,62 @@ catch( IOException e )
 }
 }
 
+// -------------------------------------------------------------------
+
+/**
+* Wires the graph from a binary file, following the same rules as in the
+* case of text files. The file is accessed through a memory mapping.
+*/
+private void wireBinary(final Graph g) throws IOException {
+
+	final MappedGraph mg = new MappedGraph(file);
+	final int size = Math.min(mg.size(),Network.size());
+	final boolean[] wasOutOfRange = { mg.size() > Network.size() };
+	if( parallel && g instanceof OverlayGraph )
+	{
+		final int prot = ((OverlayGraph)g).protocolID;
+		new RangeTask(1024) {
+			protected void process(int from, int to) {
+				boolean out = false;
+				for(int i=from; i<to; ++i)
+				{
+					final Linkable link =
+						(Linkable)Network.get(i).getProtocol(prot);
+					out |= wireRow(mg,i,null,link);
+				}
+				if( out ) wasOutOfRange[0] = true;
+			}
+		}.run(0,size);
+	}
+	else
+	{
+		for(int i=0; i<size; ++i)
+			wasOutOfRange[0] |= wireRow(mg,i,g,null);
+	}
+	if( wasOutOfRange[0] )
+		System.err.println("WireFromFile warning: in "+file+" "+
+			"some nodes were out of range and so ignored.");
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Adds the first {@value #PAR_K} neighbours of node i in mg, either to
+* g or if it is null, to link.
+* @return true if some neighbours were out of range
+*/
+private boolean wireRow(MappedGraph mg, int i, Graph g, Linkable link) {
+
+	boolean out = false;
+	final long end = Math.min(mg.offset(i+1),mg.offset(i)+k);
+	for(long e=mg.offset(i); e<end; ++e)
+	{
+		final int to = mg.target(e);
+		if( to >= Network.size() ) out = true;
+		else if( g != null ) g.setEdge(i,to);
+		else link.addNeighbor(Network.get(to));
+	}
+	return out;
+}
+
 }
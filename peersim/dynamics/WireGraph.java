@@ -18,9 +18,11 @@
 
 package peersim.dynamics;
 
+import peersim.graph.CSRGraph;
 import peersim.graph.Graph;
 import peersim.core.*;
 import peersim.config.Configuration;
+import peersim.util.RangeTask;
 
 /**
  * This class is the superclass of classes that
@@ -66,6 +68,16 @@ private static final String PAR_UNDIR = "undir";
 */
 private static final String PAR_UNDIR_ALT = "undirected";
 
+/**
+ * If defined, extending classes that support it generate the topology
+ * in parallel as a {@link CSRGraph}, and the links are added to the
+ * nodes in parallel by {@link #wireCSR}. The generated graph follows the same
+ * model but it is different from the sequential one for the same random
+ * seed. Not defined by default.
+ * @config
+ */
+protected static final String PAR_PARALLEL = "parallel";
+
 // --------------------------------------------------------------------------
 // Fields
 // --------------------------------------------------------------------------
@@ -82,6 +94,9 @@ private final boolean pack;
 /** If true, edges are added in an undirected fashion.*/
 public final boolean undir;
 
+/** {@link #PAR_PARALLEL} */
+protected final boolean parallel;
+
 /**
 * If set (not null), this is the graph to wire. If null, the current overlay
 * is wired each time {@link #execute} is called, as specified by {@value
@@ -108,6 +123,7 @@ protected WireGraph(String prefix) {
 	pack = Configuration.contains(prefix + "." + PAR_PACK);
 	undir = (Configuration.contains(prefix + "." + PAR_UNDIR) |
 		Configuration.contains(prefix + "." + PAR_UNDIR_ALT));
+	parallel = Configuration.contains(prefix + "." + PAR_PARALLEL);
 }
 
 
@@ -154,5 +170,42 @@ public final boolean execute() {
 * be implemented by extending classes */
 public abstract void wire(Graph g);
 
+//--------------------------------------------------------------------------
+
+/**
+ * Adds the edges of the given CSR graph to the given graph. If the graph
+ * is an {@link OverlayGraph}, the neighbour lists of the nodes are filled in
+ * parallel using {@link RangeTask}, each node by one thread, so the
+ * {@link Linkable} protocol must allow concurrent calls to
+ * {@link Linkable#addNeighbor} on different nodes (as {@link IdleProtocol}
+ * does). If the overlay graph wires undirected edges, the undirected
+ * version of csr (see {@link CSRGraph#undirected}) is added.
+ * Other graphs are wired sequentially by {@link Graph#setEdge}.
+ * @param g the graph to be wired
+ * @param csr the edges to add, it must have the same size as g
+ */
+public static void wireCSR(Graph g, CSRGraph csr)
+{
+	if (!(g instanceof OverlayGraph)) {
+		for (int i = 0; i < csr.size(); ++i)
+			for (int e = csr.offsets[i]; e < csr.offsets[i + 1]; ++e)
+				g.setEdge(i, csr.targets[e]);
+		return;
+	}
+	final OverlayGraph og = (OverlayGraph) g;
+	final CSRGraph c = (og.wireDirected ? csr : csr.undirected());
+	new RangeTask(1024) {
+		protected void process(int from, int to)
+		{
+			for (int i = from; i < to; ++i) {
+				final Linkable link =
+					(Linkable) Network.get(i).getProtocol(og.protocolID);
+				for (int e = c.offsets[i]; e < c.offsets[i + 1]; ++e)
+					link.addNeighbor(Network.get(c.targets[e]));
+			}
+		}
+	}.run(0, c.size());
+}
+
 }
 
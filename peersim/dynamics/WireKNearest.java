@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.dynamics;
+
+import peersim.graph.*;
+import peersim.core.*;
+import peersim.config.*;
+
+/**
+ * Takes a {@link Linkable} protocol and adds connections from each node to
+ * the k nodes nearest to it, according to a {@link Coordinates} protocol.
+ * The nearest nodes are found by {@link SpatialIndex}, so the wiring
+ * takes about O(n log n) time. Note that no connections are removed, they
+ * are only added. So it can be used in combination with other initializers.
+ */
+public class WireKNearest extends WireGraph {
+
+//--------------------------------------------------------------------------
+//Parameters
+//--------------------------------------------------------------------------
+
+/**
+ * The number of outgoing edges to generate from each node.
+ * In the undirected case, the degree of nodes will be larger, because
+ * the incoming links also become links out of each node.
+ * @config
+ */
+private static final String PAR_DEGREE = "k";
+
+/**
+ * The {@link Coordinates} protocol that defines the positions of the nodes.
+ * @config
+ */
+private static final String PAR_COORD = "coord";
+
+//--------------------------------------------------------------------------
+//Fields
+//--------------------------------------------------------------------------
+
+/**
+ * The number of outgoing edges to generate from each node.
+ */
+private final int k;
+
+/** The coordinate protocol */
+private final int coord;
+
+//--------------------------------------------------------------------------
+//Initialization
+//--------------------------------------------------------------------------
+
+/**
+ * Standard constructor that reads the configuration parameters.
+ * Invoked by the simulation engine.
+ * @param prefix the configuration prefix for this class
+ */
+public WireKNearest(String prefix)
+{
+	super(prefix);
+	k = Configuration.getInt(prefix + "." + PAR_DEGREE);
+	coord = Configuration.getPid(prefix + "." + PAR_COORD);
+}
+
+//--------------------------------------------------------------------------
+//Methods
+//--------------------------------------------------------------------------
+
+/**
+ * Links each node of the graph to its k nearest nodes that are not dead.
+ * The graph has to be an {@link OverlayGraph}.
+ */
+public void wire(Graph g) {
+
+	if( !(g instanceof OverlayGraph) )
+		throw new IllegalArgumentException(
+			"only the overlay of the network can be wired");
+	final SpatialIndex idx = SpatialIndex.get(coord);
+	for(int i=0; i<g.size(); ++i)
+	{
+		for(Node n: idx.nearest((Node)g.getNode(i),k))
+			g.setEdge(i,n.getIndex());
+	}
+}
+
+}
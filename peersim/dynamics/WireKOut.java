@@ -73,10 +73,17 @@ public WireKOut(String prefix)
 //Methods
 //--------------------------------------------------------------------------
 
-/** Calls {@link GraphFactory#wireKOut}. */
+/**
+ * Calls {@link GraphFactory#wireKOut}, or if {@value #PAR_PARALLEL} is
+ * defined, wires the result of {@link GraphFactory#kOut} seeded from
+ * {@link CommonState#r}.
+ */
 public void wire(Graph g) {
 
-	GraphFactory.wireKOut(g,k,CommonState.r);
+	if( parallel )
+		wireCSR(g,GraphFactory.kOut(g.size(),k,CommonState.r.nextLong()));
+	else
+		GraphFactory.wireKOut(g,k,CommonState.r);
 }
 
 }
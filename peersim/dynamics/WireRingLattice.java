@@ -69,10 +69,16 @@ public WireRingLattice(String prefix)
 //Public methods
 //--------------------------------------------------------------------------
 
-/** calls {@link GraphFactory#wireRingLattice}. */
+/**
+ * Calls {@link GraphFactory#wireRingLattice}, or if {@value #PAR_PARALLEL}
+ * is defined, wires the result of {@link GraphFactory#ringLattice}.
+ */
 public void wire(Graph g)
 {
-	GraphFactory.wireRingLattice(g, k);
+	if (parallel)
+		wireCSR(g, GraphFactory.ringLattice(g.size(), k));
+	else
+		GraphFactory.wireRingLattice(g, k);
 }
 
 //--------------------------------------------------------------------------
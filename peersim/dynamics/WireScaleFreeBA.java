@@ -74,10 +74,18 @@ public WireScaleFreeBA(String prefix)
 // ========================================================================
 
 
-/** calls {@link GraphFactory#wireScaleFreeBA}.*/
+/**
+ * Calls {@link GraphFactory#wireScaleFreeBA}, or if {@value #PAR_PARALLEL}
+ * is defined, wires the result of {@link GraphFactory#scaleFreeBA} seeded
+ * from {@link CommonState#r}.
+ */
 public void wire(Graph g) {
 	
-	GraphFactory.wireScaleFreeBA(g,k,CommonState.r );
+	if( parallel )
+		wireCSR(g,GraphFactory.scaleFreeBA(g.size(),k,
+			CommonState.r.nextLong()));
+	else
+		GraphFactory.wireScaleFreeBA(g,k,CommonState.r );
 }
 
 }
@@ -82,10 +82,17 @@ public WireWS(String prefix) {
 // ===================================================================
 
 
-/** calls {@link GraphFactory#wireWS}.*/
+/**
+ * Calls {@link GraphFactory#wireWS}, or if {@value #PAR_PARALLEL} is
+ * defined, wires the result of {@link GraphFactory#ws} seeded from
+ * {@link CommonState#r}.
+ */
 public void wire(Graph g) {
 
-	GraphFactory.wireWS(g,k,beta,CommonState.r);
+	if( parallel )
+		wireCSR(g,GraphFactory.ws(g.size(),k,beta,CommonState.r.nextLong()));
+	else
+		GraphFactory.wireWS(g,k,beta,CommonState.r);
 }
 
 }
@@ -78,6 +78,10 @@ import peersim.core.*;
 * want to use a model of the transport layer so that in the simulation
 * message delay and message omissions can be modeled in a modular way.
 * This functionality is implemented in package {@link peersim.transport}.
+* <p>
+* Messages that extend {@link PooledMessage} are released after they are
+* delivered, so that they can be reused instead of allocating a new
+* message for each send (see {@link MessagePool}).
 * @see Configuration
  */
 public class EDSimulator
@@ -315,6 +319,8 @@ private static boolean executeNext() {
 			prot.processEvent(ev.node, pid, ev.event);
 		}
 	}
+	if (ev.event instanceof PooledMessage)
+		((PooledMessage) ev.event).release();
 	
 	return false;
 }
@@ -381,7 +387,8 @@ public static void nextExperiment()
  *   The number of time units before the event is scheduled.
  *   Has to be non-negative.
  * @param event 
- *   The object associated to this event
+ *   The object associated to this event. If it is a
+ *   {@link PooledMessage}, it is retained until it is delivered.
  * @param node 
  *   The node associated to the event.
  * @param pid 
@@ -400,7 +407,11 @@ public static void add(long delay, Object event, Node node, int pid)
 	
 	long time = CommonState.getTime();
 	if( endtime - time > delay ) // check like this to deal with overflow 
+	{
 		heap.add(time+delay, event, node, (byte) pid);
+		if (event instanceof PooledMessage)
+			((PooledMessage) event).retain();
+	}
 }
 
 }
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.edsim;
+
+import java.util.Arrays;
+
+/**
+ * A pool of reusable messages of one type, see {@link PooledMessage}.
+ * Subclasses define how new messages are created, typically as an
+ * anonymous class:
+ * <pre>
+ * static final MessagePool&lt;MyMessage&gt; POOL =
+ *     new MessagePool&lt;MyMessage&gt;() {
+ *         protected MyMessage create() { return new MyMessage(); }
+ *     };
+ * </pre>
+ * Like the rest of the simulator, pools are not thread-safe.
+ */
+public abstract class MessagePool<T extends PooledMessage>
+{
+
+//---------------------------------------------------------------------
+//Fields
+//---------------------------------------------------------------------
+
+/** The free messages are at indexes 0 to free-1 */
+private PooledMessage[] stack = new PooledMessage[16];
+
+private int free;
+
+/** The maximal number of free messages kept */
+private final int capacity;
+
+/** The number of messages created by the pool */
+private long created;
+
+//---------------------------------------------------------------------
+//Initialization
+//---------------------------------------------------------------------
+
+/** Creates a pool that keeps any number of free messages. */
+public MessagePool()
+{
+	this(Integer.MAX_VALUE);
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Creates a pool that keeps at most the given number of free messages.
+ * Further released messages are left to the garbage collector.
+ */
+public MessagePool(int capacity)
+{
+	if (capacity < 0)
+		throw new IllegalArgumentException("negative capacity");
+	this.capacity = capacity;
+}
+
+//---------------------------------------------------------------------
+//Methods
+//---------------------------------------------------------------------
+
+/** Creates a new message of the type of the pool. */
+protected abstract T create();
+
+//---------------------------------------------------------------------
+
+/**
+ * Returns a free message from the pool, or a new one if the pool is
+ * empty. The fields of reused messages are as left by
+ * {@link PooledMessage#clear}.
+ */
+@SuppressWarnings("unchecked")
+public T acquire()
+{
+	if (free > 0) {
+		final PooledMessage m = stack[--free];
+		stack[free] = null;
+		return (T) m;
+	}
+	final T m = create();
+	m.pool = this;
+	created++;
+	return m;
+}
+
+//---------------------------------------------------------------------
+
+/** Called by {@link PooledMessage#release}. */
+void put(PooledMessage m)
+{
+	m.clear();
+	if (free == capacity)
+		return;
+	if (free == stack.length)
+		stack = Arrays.copyOf(stack, (int) Math.min(capacity,
+			2L * stack.length));
+	stack[free++] = m;
+}
+
+//---------------------------------------------------------------------
+
+/** Returns the number of free messages in the pool. */
+public int size()
+{
+	return free;
+}
+
+//---------------------------------------------------------------------
+
+/** Returns the number of messages created by the pool. */
+public long getCreated()
+{
+	return created;
+}
+
+}
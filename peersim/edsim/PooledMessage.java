@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.edsim;
+
+/**
+ * Base class of messages that are reused through a {@link MessagePool}
+ * instead of being allocated for each send. A message is acquired from
+ * the pool of its type by {@link MessagePool#acquire}, filled in, and
+ * sent as usual. {@link EDSimulator} counts how many times the message is
+ * in the event queue, and after the message is processed by
+ * {@link EDProtocol#processEvent} (or discarded because the destination
+ * node is down) it is released. When it is not in the event queue any
+ * more, it is cleared by {@link #clear} and returned to the pool.
+ * <p>
+ * So the same message can be sent to several nodes, and a message can be
+ * forwarded from {@link EDProtocol#processEvent}. A protocol that keeps a
+ * reference to the message after {@link EDProtocol#processEvent} returns
+ * must call {@link #retain}, and call {@link #release} when it does not
+ * need the message any more. Messages that never reach the event queue,
+ * for example because the transport drops them, are not returned to
+ * the pool; they are simply garbage collected.
+ */
+public abstract class PooledMessage
+{
+
+//---------------------------------------------------------------------
+//Fields
+//---------------------------------------------------------------------
+
+/** The pool this message belongs to, or null */
+MessagePool<?> pool;
+
+/** The number of references from the event queue and protocols */
+int refs;
+
+//---------------------------------------------------------------------
+//Methods
+//---------------------------------------------------------------------
+
+/**
+ * Keeps the message from being returned to the pool until the matching
+ * call to {@link #release}.
+ */
+public final void retain()
+{
+	refs++;
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Releases a reference taken by {@link #retain}. If this was the last
+ * reference, the message is returned to its pool.
+ * @throws IllegalStateException if there are no references
+ */
+public final void release()
+{
+	if (refs <= 0)
+		throw new IllegalStateException("message " + this +
+			" released more times than retained");
+	if (--refs == 0 && pool != null)
+		pool.put(this);
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Called before the message is returned to the pool. Implementations
+ * should set the references to other objects to null, so that they can
+ * be garbage collected. The default implementation does nothing.
+ */
+protected void clear() {}
+
+}
@@ -0,0 +1,339 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.graph;
+
+import java.util.*;
+import peersim.util.RangeTask;
+
+/**
+* An immutable graph stored in compressed sparse row (CSR) format.
+* The neighbours of node i are
+* <code>targets[offsets[i]]</code>, ..., <code>targets[offsets[i+1]-1]</code>.
+* Apart from implementing {@link Graph}, the two arrays are exposed
+* so that algorithms can work on them directly, without boxing and without
+* calling methods of the graph interface. These arrays must not be modified.
+* <p>
+* A CSR graph is normally created as a snapshot of another graph, typically
+* an {@link peersim.core.OverlayGraph} or an undirected view of it.
+* Later changes of the original graph are not reflected.
+*/
+public class CSRGraph implements Graph {
+
+
+// ====================== fields ================================
+// ==============================================================
+
+
+/**
+* The neighbours of node i are stored in {@link #targets} from index
+* <code>offsets[i]</code> (inclusive) to <code>offsets[i+1]</code>
+* (exclusive). Its length is {@link #size()}+1. Must not be modified.
+*/
+public final int[] offsets;
+
+/** The concatenated neighbour lists. Must not be modified. */
+public final int[] targets;
+
+private final boolean directed;
+
+/** True if all neighbour lists are in increasing order */
+private final boolean sorted;
+
+/** Cached result of {@link #transpose} */
+private CSRGraph transpose = null;
+
+
+// ====================== initialization ========================
+// ==============================================================
+
+
+/**
+* Creates a snapshot of the given graph. The order of the neighbours
+* is the same as the iteration order of {@link Graph#getNeighbours}.
+*/
+public CSRGraph( Graph g ) { this(g,false); }
+
+// --------------------------------------------------------------
+
+/**
+* Creates a snapshot of the given graph.
+* @param g the graph to copy
+* @param sort if true, the neighbour lists are sorted, which
+* allows {@link #isEdge} to use binary search.
+*/
+public CSRGraph( Graph g, boolean sort ) {
+
+	final int n = g.size();
+	offsets = new int[n+1];
+	int[] t = new int[Math.max(16,4*n)];
+	int m = 0;
+	for(int i=0; i<n; ++i)
+	{
+		for(int j:g.getNeighbours(i))
+		{
+			if( m == t.length )
+			{
+				long newlen = 3L*t.length/2+1;
+				if( newlen > Integer.MAX_VALUE-8 )
+				{
+					if( t.length == Integer.MAX_VALUE-8 )
+						throw new IllegalArgumentException(
+						"too many edges for a CSR graph");
+					newlen = Integer.MAX_VALUE-8;
+				}
+				t = Arrays.copyOf(t,(int)newlen);
+			}
+			t[m++] = j;
+		}
+		offsets[i+1] = m;
+	}
+	targets = (m==t.length ? t : Arrays.copyOf(t,m));
+	directed = g.directed();
+	if( sort )
+	{
+		for(int i=0; i<n; ++i)
+			Arrays.sort(targets,offsets[i],offsets[i+1]);
+	}
+	sorted = sort || n==0;
+}
+
+// --------------------------------------------------------------
+
+/**
+* Wraps the given arrays without copying them.
+* The arrays must follow the format described at {@link #offsets}
+* and must not be modified later.
+* @param offsets array of length n+1 where n is the number of nodes
+* @param targets the concatenated neighbour lists
+* @param directed if false, the caller guarantees that for each edge (i,j)
+* the edge (j,i) is present as well.
+* @param sorted if true, the caller guarantees that the neighbour lists
+* are in increasing order.
+*/
+public CSRGraph( int[] offsets, int[] targets, boolean directed,
+		boolean sorted ) {
+
+	if( offsets.length == 0 || offsets[offsets.length-1] > targets.length )
+		throw new IllegalArgumentException("inconsistent CSR arrays");
+	this.offsets = offsets;
+	this.targets = targets;
+	this.directed = directed;
+	this.sorted = sorted;
+}
+
+
+// ======================= Graph implementations ================
+// ==============================================================
+
+
+/**
+* Uses binary search if the neighbour lists are sorted, otherwise linear
+* search.
+*/
+public boolean isEdge( int i, int j ) {
+
+	if( sorted )
+		return Arrays.binarySearch(targets,offsets[i],offsets[i+1],j)>=0;
+	for(int k=offsets[i]; k<offsets[i+1]; ++k)
+		if( targets[k] == j ) return true;
+	return false;
+}
+
+// --------------------------------------------------------------
+
+/**
+* Returns an unmodifiable view of the given slice of {@link #targets}.
+* Elements are boxed on access, so for efficiency consider using the
+* arrays directly.
+*/
+public Collection<Integer> getNeighbours( final int i ) {
+
+	final int from = offsets[i];
+	final int len = offsets[i+1]-from;
+	return new AbstractList<Integer>() {
+		public Integer get( int k ) {
+			if( k<0 || k>=len ) throw new IndexOutOfBoundsException();
+			return targets[from+k];
+		}
+		public int size() { return len; }
+	};
+}
+
+// --------------------------------------------------------------
+
+/** Returns null always */
+public Object getNode( int i ) { return null; }
+
+// --------------------------------------------------------------
+
+/** Returns null always */
+public Object getEdge( int i, int j ) { return null; }
+
+// --------------------------------------------------------------
+
+public int size() { return offsets.length-1; }
+
+// --------------------------------------------------------------
+
+public boolean directed() { return directed; }
+
+// --------------------------------------------------------------
+
+/** not supported */
+public boolean setEdge( int i, int j ) {
+
+	throw new UnsupportedOperationException();
+}
+
+// --------------------------------------------------------------
+
+/** not supported */
+public boolean clearEdge( int i, int j ) {
+
+	throw new UnsupportedOperationException();
+}
+
+// --------------------------------------------------------------
+
+public int degree( int i ) { return offsets[i+1]-offsets[i]; }
+
+
+// ======================= other methods ========================
+// ==============================================================
+
+
+/** Returns the number of (directed) edges. */
+public int edges() { return offsets[offsets.length-1]; }
+
+// --------------------------------------------------------------
+
+/** Returns true if all neighbour lists are in increasing order. */
+public boolean isSorted() { return sorted; }
+
+// --------------------------------------------------------------
+
+/**
+* Returns the graph with all edges reversed, that is, the neighbours of
+* node i in the result are the nodes that have an edge to i.
+* The neighbour lists of the result are sorted.
+* If this graph is undirected, then this graph is returned if it is
+* sorted. The result is computed only once and then cached.
+*/
+public synchronized CSRGraph transpose() {
+
+	if( transpose != null ) return transpose;
+	if( !directed && sorted ) return (transpose = this);
+
+	final int n = size();
+	final int[] toff = new int[n+1];
+	final int m = edges();
+	for(int k=0; k<m; ++k) toff[targets[k]+1]++;
+	for(int i=0; i<n; ++i) toff[i+1] += toff[i];
+	final int[] pos = Arrays.copyOf(toff,n);
+	final int[] tt = new int[m];
+	// sources are visited in increasing order so the lists will be sorted
+	for(int i=0; i<n; ++i)
+	for(int k=offsets[i]; k<offsets[i+1]; ++k)
+		tt[pos[targets[k]]++] = i;
+	transpose = new CSRGraph(toff,tt,directed,true);
+	if( directed ) transpose.transpose = this;
+	return transpose;
+}
+
+// --------------------------------------------------------------
+
+/**
+* Returns the undirected version of this graph: the neighbours of node i
+* are the nodes that have an edge from or to i, each listed once, in
+* increasing order. Returns this graph if it is undirected and
+* sorted. The lists are merged in parallel using {@link RangeTask}.
+* @throws IllegalArgumentException if the result has too many edges for
+* a CSR graph
+*/
+public CSRGraph undirected() {
+
+	if( !directed && sorted ) return this;
+
+	final int n = size();
+	final CSRGraph out;
+	if( sorted ) out = this;
+	else
+	{
+		final int[] t = Arrays.copyOf(targets,edges());
+		new RangeTask(4096) {
+			protected void process( int from, int to ) {
+				for(int i=from; i<to; ++i)
+					Arrays.sort(t,offsets[i],offsets[i+1]);
+			}
+		}.run(0,n);
+		out = new CSRGraph(offsets,t,directed,true);
+	}
+	final CSRGraph in = transpose();
+	final int[] uoff = new int[n+1];
+	new RangeTask(4096) {
+		protected void process( int from, int to ) {
+			for(int i=from; i<to; ++i)
+				uoff[i+1] = merge(out,in,i,null,0);
+		}
+	}.run(0,n);
+	long m = 0;
+	for(int i=0; i<n; ++i)
+	{
+		m += uoff[i+1];
+		if( m > Integer.MAX_VALUE-8 ) throw new IllegalArgumentException(
+			"too many edges for a CSR graph");
+		uoff[i+1] = (int)m;
+	}
+	final int[] ut = new int[(int)m];
+	new RangeTask(4096) {
+		protected void process( int from, int to ) {
+			for(int i=from; i<to; ++i) merge(out,in,i,ut,uoff[i]);
+		}
+	}.run(0,n);
+	return new CSRGraph(uoff,ut,false,true);
+}
+
+// --------------------------------------------------------------
+
+/**
+* Merges the sorted neighbour lists of node i in a and b without
+* repetitions into res from position pos. If res is null, only counts.
+* @return the length of the merged list
+*/
+private static int merge( CSRGraph a, CSRGraph b, int i, int[] res,
+		int pos ) {
+
+	int x = a.offsets[i], y = b.offsets[i];
+	final int xe = a.offsets[i+1], ye = b.offsets[i+1];
+	int c = 0, last = -1;
+	while( x < xe || y < ye )
+	{
+		final int v;
+		if( y == ye || (x < xe && a.targets[x] <= b.targets[y]) )
+			v = a.targets[x++];
+		else v = b.targets[y++];
+		if( v == last ) continue;
+		last = v;
+		if( res != null ) res[pos+c] = v;
+		c++;
+	}
+	return c;
+}
+
+}
@@ -32,7 +32,13 @@ public class GraphAlgorithms {
 
 /** output of some algorithms is passed here */
 public int[] root = null;
-private Stack<Integer> stack = new Stack<Integer>();
+/** Tarjan's stack of visited nodes */
+private int[] stack = null;
+/** Nodes of the depth-first search path in Tarjan's algorithm */
+private int[] path = null;
+/** Neighbour iterators of the nodes in {@link #path} */
+private final ArrayList<Iterator<Integer>> pathIt =
+	new ArrayList<Iterator<Integer>>();
 private int counter=0;
 
 private Graph g=null;
@@ -137,36 +143,68 @@ private void bfs( int from ) {
 
 // --------------------------------------------------------------------
 
-/** The recursive part of the Tarjan algorithm. */
+/**
+* The depth-first search of the Tarjan algorithm started from node i.
+* The search is implemented with explicit stacks instead of recursion,
+* so it works with arbitrarily deep graphs.
+*/
 private void tarjanVisit(int i) {
 
+	int sp = 0; // size of the stack of nodes
+	int pp = 0; // length of the path
+	
 	color[i]=counter++;
 	root[i]=i;
-	stack.push(i);
+	stack[sp++]=i;
+	path[pp++]=i;
+	pathIt.add(g.getNeighbours(i).iterator());
 	
-	for(int j:g.getNeighbours(i))
+	while( pp>0 )
 	{
-		if( color[j]==WHITE )
+		final int v = path[pp-1];
+		final Iterator<Integer> it = pathIt.get(pp-1);
+		if( it.hasNext() )
 		{
-			tarjanVisit(j);
+			final int j = it.next();
+			if( color[j]==WHITE )
+			{
+				// descend, j is updated when it is finished
+				color[j]=counter++;
+				root[j]=j;
+				stack[sp++]=j;
+				path[pp++]=j;
+				pathIt.add(g.getNeighbours(j).iterator());
+			}
+			else tarjanUpdate(v,j);
+			continue;
 		}
-		if( color[j]>0 && color[root[j]]<color[root[i]] )
-		// inComponent is false and have to update root
+		
+		// all neighbours of v are done
+		pathIt.remove(--pp);
+		if(root[v]==v) //this node is the root of its cluster
 		{
-			root[i]=root[j];
+			int j;
+			do
+			{
+				j=stack[--sp];
+				color[j]=-color[j];
+				root[j]=v;
+			}
+			while(j!=v);
 		}
+		if( pp>0 ) tarjanUpdate(path[pp-1],v);
 	}
+}
+
+// --------------------------------------------------------------------
+
+/** Updates the root of i after visiting its neighbour j. */
+private void tarjanUpdate(int i, int j) {
 
-	int j;
-	if(root[i]==i) //this node is the root of its cluster
+	if( color[j]>0 && color[root[j]]<color[root[i]] )
+	// inComponent is false and have to update root
 	{
-		do
-		{
-			j=stack.pop();
-			color[j]=-color[j];
-			root[j]=i;
-		}
-		while(j!=i);
+		root[i]=root[j];
 	}
 }
 
@@ -340,17 +378,20 @@ public void flooding( Graph g, int[] b, int k ) {
 /** Returns the strongly connected cluster roots with size as a value.
 * Cluster membership can be seen from the content of the array {@link #root};
 * each node has the root of the strongly connected cluster it belongs to.
-* A word of caution: for large graphs that have a large diameter and that
-* are strongly connected (such as large rings) you can get stack overflow
-* because of the large depth of recursion.
+* The implementation is not recursive, so it can be applied to graphs with
+* a large diameter as well.
+* @see StrongComponents
 */
-//XXX implement a non-recursive version ASAP!!!
 public Map tarjan( Graph g ) {
 	
 	this.g=g;
-	stack.clear();
 	if( root==null || root.length<g.size() ) root = new int[g.size()];
 	if( color==null || color.length<g.size() ) color = new int[g.size()];
+	if( stack==null || stack.length<g.size() )
+	{
+		stack = new int[g.size()];
+		path = new int[g.size()];
+	}
 	for( int i=0; i<g.size(); ++i) color[i]=WHITE;
 	counter = 1;
 	
@@ -19,14 +19,34 @@
 package peersim.graph;
 
 import java.util.*;
+import peersim.util.ExtendedRandom;
+import peersim.util.RangeTask;
 
 /**
 * Contains static methods for wiring certain kinds of graphs. The general
 * contract of all methods is that they accept any graph and add edges
 * as specified in the documentation.
+* <p>
+* Some topologies can also be generated directly as a {@link CSRGraph},
+* without going through {@link Graph#setEdge}. These generators work in
+* parallel using {@link RangeTask}. Their random decisions are drawn from
+* independent streams derived from a seed (see
+* {@link ExtendedRandom#streamSeed}) for each block of nodes, so the
+* result depends only on the parameters and the seed, and not on the number
+* of threads. They produce the same models as the corresponding
+* <code>wire</code> methods, but not the same graphs for a given seed.
 */
 public class GraphFactory {
 
+/** The number of nodes in the blocks of the CSR generators */
+private static final int GRAIN = 4096;
+
+/**
+* If k is at most this, the samples of {@link #kOut} are checked for
+* repetitions by linear search, otherwise by a hash set.
+*/
+private static final int SMALL_K = 32;
+
 /** Disable instance construction */
 private GraphFactory() {}
 
@@ -278,6 +298,241 @@ public static Graph wireScaleFreeBA( Graph g, int k, Random r ) {
 	return g;
 }
 
+// ===================== CSR generators ===========================
+// ==================================================================
+
+/**
+* Generates the ring lattice of {@link #wireRingLattice} on n nodes.
+* Each neighbour list contains exactly k elements: if k is at least n,
+* a list can contain the same node several times or the node itself.
+* @return a directed graph with sorted neighbour lists if k&lt;n
+*/
+public static CSRGraph ringLattice( final int n, final int k ) {
+
+	final int[] offsets = regularOffsets(n,k);
+	final int[] targets = new int[offsets[n]];
+	final int pred = k/2;
+	final int succ = k-pred;
+	new RangeTask(GRAIN) {
+		protected void process( int from, int to ) {
+			for(int i=from; i<to; ++i)
+			{
+				int e = offsets[i];
+				for(int j=-pred; j<=succ; ++j)
+				{
+					if( j==0 ) continue;
+					targets[e++] = (int)(((long)i+j+n)%n);
+				}
+				Arrays.sort(targets,offsets[i],e);
+			}
+		}
+	}.run(0,n);
+	return new CSRGraph(offsets,targets,true,k<n);
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Generates the modified Watts-Strogatz model of {@link #wireWS} on
+* n nodes. Each of the 2*(k/2) links of the ring lattice of a node is
+* rewired independently with probability p to a random other node, so a
+* neighbour list can contain the same node several times.
+* @param seed the base seed of the random streams
+* @return a directed graph
+*/
+public static CSRGraph ws( final int n, final int k, final double p,
+		final long seed ) {
+
+	final int[] offsets = regularOffsets(n,n<2 ? 0 : 2*(k/2));
+	final int[] targets = new int[offsets[n]];
+	new RangeTask(GRAIN) {
+		protected void process( int from, int to ) {
+			final Random r = new ExtendedRandom(
+				ExtendedRandom.streamSeed(seed,from));
+			for(int i=from; i<to; ++i)
+			{
+				int e = offsets[i];
+				for(int j=-k/2; j<=k/2 && e<offsets[i+1]; ++j)
+				{
+					if( j==0 ) continue;
+					int t = (int)(((long)i+j+n)%n);
+					if( r.nextDouble() < p )
+					{
+						t = r.nextInt(n-1);
+						if( t >= i ) t++;
+					}
+					targets[e++] = t;
+				}
+			}
+		}
+	}.run(0,n);
+	return new CSRGraph(offsets,targets,true,false);
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Generates the random graph of {@link #wireKOut} on n nodes: each node
+* has links to k different random other nodes. If k is larger than n-1,
+* then it is set to n-1. The samples are drawn by Floyd's algorithm, which
+* needs exactly k random numbers for each node.
+* @param seed the base seed of the random streams
+* @return a directed graph with sorted neighbour lists
+*/
+public static CSRGraph kOut( final int n, int k, final long seed ) {
+
+	if( k > n-1 ) k = Math.max(0,n-1);
+	final int kk = k;
+	final int[] offsets = regularOffsets(n,k);
+	final int[] targets = new int[offsets[n]];
+	new RangeTask(GRAIN) {
+		protected void process( int from, int to ) {
+			final Random r = new ExtendedRandom(
+				ExtendedRandom.streamSeed(seed,from));
+			final IntHashSet set = (kk > SMALL_K ? new IntHashSet(2*kk) : null);
+			for(int i=from; i<to; ++i)
+			{
+				final int start = offsets[i];
+				int e = start;
+				// k samples from 0..n-2, the node itself is skipped later
+				for(int j=n-1-kk; j<n-1; ++j)
+				{
+					int t = r.nextInt(j+1);
+					boolean seen;
+					if( set != null ) seen = !set.add(t);
+					else
+					{
+						seen = false;
+						for(int l=start; l<e && !seen; ++l)
+							seen = (targets[l] == t);
+					}
+					if( seen )
+					{
+						t = j; // j was not drawn yet
+						if( set != null ) set.add(t);
+					}
+					targets[e++] = t;
+				}
+				if( set != null ) set.clear();
+				for(int l=start; l<e; ++l)
+					if( targets[l] >= i ) targets[l]++;
+				Arrays.sort(targets,start,e);
+			}
+		}
+	}.run(0,n);
+	return new CSRGraph(offsets,targets,true,true);
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Generates a Barabasi-Albert graph on n nodes using the edge copy method of
+* Batagelj and Brandes, as in {@link #wireScaleFreeBA}: the first k nodes
+* have no links, node k is linked to all of them, and each later node is
+* linked to k targets, each drawn by picking a uniform random end of the
+* links generated so far. Unlike in {@link #wireScaleFreeBA}, the k draws
+* of a node are independent, and repeated targets are kept only once, so
+* a few nodes can have less than k links.
+* <p>
+* The random end picked by each draw is a fixed function of the seed and
+* the number of the link, and the link that owns that end is resolved by
+* following the chain of copies backwards. This way all links can be
+* generated in parallel, and the expected work per link is constant.
+* @param seed the seed of the draws
+* @return a directed graph with sorted neighbour lists
+*/
+public static CSRGraph scaleFreeBA( final int n, final int k,
+		final long seed ) {
+
+	if( n <= k || k < 1 ) return new CSRGraph(new int[n+1],new int[0],
+		true,true);
+	final int[] counts = new int[n+1];
+	final int[] targets = new int[edges(n-k,k)];
+	new RangeTask(GRAIN) {
+		protected void process( int from, int to ) {
+			for(int i=Math.max(from,k); i<to; ++i)
+			{
+				final int start = (i-k)*k;
+				for(int j=0; j<k; ++j)
+					targets[start+j] = baTarget(start+j,k,seed);
+				Arrays.sort(targets,start,start+k);
+				int e = start;
+				for(int j=start; j<start+k; ++j)
+					if( j==start || targets[j] != targets[j-1] )
+						targets[e++] = targets[j];
+				counts[i+1] = e-start;
+			}
+		}
+	}.run(0,n);
+	// compact the lists
+	int m = 0;
+	for(int i=k; i<n; ++i)
+	{
+		final int c = counts[i+1];
+		System.arraycopy(targets,(i-k)*k,targets,m,c);
+		m += c;
+	}
+	for(int i=0; i<n; ++i) counts[i+1] += counts[i];
+	return new CSRGraph(counts,(m == targets.length ? targets :
+		Arrays.copyOf(targets,m)),true,true);
+}
+
+
+// ===================== private methods ============================
+// ==================================================================
+
+
+/**
+* Returns the offsets of a graph on n nodes where each node has d
+* neighbours.
+* @throws IllegalArgumentException if the number of edges is too large for
+* a {@link CSRGraph}
+*/
+private static int[] regularOffsets( int n, int d ) {
+
+	edges(n,d);
+	final int[] offsets = new int[n+1];
+	for(int i=0; i<n; ++i) offsets[i+1] = offsets[i]+d;
+	return offsets;
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Returns n*d.
+* @throws IllegalArgumentException if this is too large for the number
+* of edges of a {@link CSRGraph}
+*/
+private static int edges( int n, int d ) {
+
+	if( (long)n*d > Integer.MAX_VALUE-8 )
+		throw new IllegalArgumentException(
+			"too many edges for a CSR graph: "+((long)n*d));
+	return n*d;
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Returns the target of link e in {@link #scaleFreeBA}. Link e belongs
+* to node k+e/k, and has ends 2e (the source) and 2e+1 (the target).
+* The first k links are from node k to nodes 0,...,k-1. Link e draws the
+* end with index h(e) mod 2(e-e%k), where h(e) is derived from the seed.
+* If this end is a target end, it is resolved the same way.
+*/
+private static int baTarget( long e, int k, long seed ) {
+
+	while( e >= k )
+	{
+		final long len = 2*(e-e%k);
+		final long h = ExtendedRandom.streamSeed(seed,e)>>>1;
+		final long end = h%len;
+		if( (end&1) == 0 ) return (int)(k+(end>>>1)/k);
+		e = end>>>1;
+	}
+	return (int)e;
+}
+
 // -------------------------------------------------------------------
 /*
 public static void main(String[] pars) {
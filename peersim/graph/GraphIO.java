@@ -20,6 +20,7 @@ package peersim.graph;
 
 import java.util.*;
 import java.io.*;
+import peersim.util.MappedBuffer;
 
 /**
 * Implements static methods to load and write graphs.
@@ -291,5 +292,279 @@ throws IOException {
 }
 
 
+// ------------------------------------------------------------------
+
+/**
+* Writes the graph in the binary format described at {@link MappedGraph},
+* without weights and labels.
+*/
+public static void writeBinary( Graph g, String file ) throws IOException {
+
+	writeBinary(g,null,null,file);
+}
+
+// ------------------------------------------------------------------
+
+/**
+* Writes the graph in the binary format described at {@link MappedGraph}.
+* The neighbour lists are written in the iteration order of
+* {@link Graph#getNeighbours}, and they are marked as sorted if g is a
+* sorted {@link CSRGraph} or a sorted {@link MappedGraph}.
+* @param weights if not null, the weights of the edges in the order
+* of the neighbour lists
+* @param labels if not null, the labels of the nodes
+*/
+public static void writeBinary( Graph g, float[] weights, long[] labels,
+		String file ) throws IOException {
+
+	final int n = g.size();
+	long m = 0;
+	for(int i=0; i<n; ++i) m += g.degree(i);
+	if( weights != null && weights.length != m )
+		throw new IllegalArgumentException("there are "+m+
+			" edges but "+weights.length+" weights");
+	if( labels != null && labels.length != n )
+		throw new IllegalArgumentException("there are "+n+
+			" nodes but "+labels.length+" labels");
+	final boolean sorted = (g instanceof CSRGraph &&
+		((CSRGraph)g).isSorted()) ||
+		(g instanceof MappedGraph && ((MappedGraph)g).isSorted());
+	final int flags = (g.directed() ? MappedGraph.DIRECTED : 0) |
+		(sorted ? MappedGraph.SORTED : 0) |
+		(weights != null ? MappedGraph.WEIGHTS : 0) |
+		(labels != null ? MappedGraph.LABELS : 0);
+	final long[] layout = MappedGraph.layout(n,m,flags);
+	final MappedBuffer buf = createBinary(file,n,m,flags);
+
+	long e = 0;
+	for(int i=0; i<n; ++i)
+	{
+		buf.putLong(layout[0]+8L*i,e);
+		if( g instanceof CSRGraph )
+		{
+			final CSRGraph c = (CSRGraph)g;
+			for(int k=c.offsets[i]; k<c.offsets[i+1]; ++k)
+				buf.putInt(layout[1]+4*(e++),c.targets[k]);
+		}
+		else for(int j:g.getNeighbours(i)) buf.putInt(layout[1]+4*(e++),j);
+	}
+	buf.putLong(layout[0]+8L*n,e);
+	if( weights != null )
+		for(int k=0; k<m; ++k) buf.putFloat(layout[2]+4L*k,weights[k]);
+	if( labels != null )
+		for(int i=0; i<n; ++i) buf.putLong(layout[3]+8L*i,labels[i]);
+	buf.force();
+}
+
+// ------------------------------------------------------------------
+
+/**
+* Converts a graph from text to the binary format described at
+* {@link MappedGraph}. The text format is the one read by
+* {@link peersim.dynamics.WireFromFile}: each line begins with a node ID
+* followed by the IDs of its neighbours, separated by whitespace. Lines
+* starting with a "#" character and empty lines are ignored. This includes
+* the edge list format (see {@link #writeEdgeList}) and the neighbour list
+* format (see {@link #writeNeighborList}). IDs must be non-negative
+* integers.
+* <p>
+* The file is read twice, and the edges are never stored in memory: the
+* first pass counts the degrees, the second one writes the targets
+* directly to their place in the mapped output file.
+* Repeated edges are written as many times as they occur.
+* @param in the text file
+* @param out the binary file
+* @param undir if true, the reverse of each edge is added and the graph is
+* marked undirected
+* @param labels if true, the IDs that occur in the file are mapped to
+* indexes 0,1,... in increasing order, and the IDs are written as labels.
+* Otherwise the IDs are used as indexes, so the number of nodes is the
+* largest ID plus one.
+*/
+public static void textToBinary( String in, String out, final boolean undir,
+		final boolean labels ) throws IOException {
+
+	// pass 1: degrees by ID
+	final int[][] deg = { new int[1024] };
+	final BitSet seen = new BitSet();
+	parseText(in,new EdgeVisitor() {
+		void node( int a ) {
+			if( a >= deg[0].length ) deg[0] = Arrays.copyOf(deg[0],
+				(int)Math.min(Integer.MAX_VALUE-8,
+				Math.max(2L*deg[0].length,a+1L)));
+			seen.set(a);
+		}
+		void edge( int a, int b ) {
+			node(b);
+			deg[0][a]++;
+			if( undir ) deg[0][b]++;
+		}
+	});
+
+	final int ids = seen.length();
+	final int[] index;
+	final int n;
+	if( labels )
+	{
+		index = new int[ids];
+		int k = 0;
+		for(int a=seen.nextSetBit(0); a>=0; a=seen.nextSetBit(a+1))
+			index[a] = k++;
+		n = k;
+	}
+	else
+	{
+		index = null;
+		n = ids;
+	}
+	final long[] pos = new long[n+1];
+	for(int a=seen.nextSetBit(0); a>=0; a=seen.nextSetBit(a+1))
+		pos[(labels ? index[a] : a)+1] = deg[0][a];
+	deg[0] = null;
+	for(int i=0; i<n; ++i) pos[i+1] += pos[i];
+	final long m = pos[n];
+
+	final int flags = (undir ? 0 : MappedGraph.DIRECTED) |
+		(labels ? MappedGraph.LABELS : 0);
+	final long[] layout = MappedGraph.layout(n,m,flags);
+	final MappedBuffer buf = createBinary(out,n,m,flags);
+	for(int i=0; i<=n; ++i) buf.putLong(layout[0]+8L*i,pos[i]);
+	if( labels )
+		for(int a=seen.nextSetBit(0); a>=0; a=seen.nextSetBit(a+1))
+			buf.putLong(layout[3]+8L*index[a],a);
+
+	// pass 2: targets
+	parseText(in,new EdgeVisitor() {
+		void node( int a ) {}
+		void edge( int a, int b ) {
+			if( labels )
+			{
+				a = index[a];
+				b = index[b];
+			}
+			buf.putInt(layout[1]+4*(pos[a]++),b);
+			if( undir ) buf.putInt(layout[1]+4*(pos[b]++),a);
+		}
+	});
+	buf.force();
+}
+
+// ------------------------------------------------------------------
+
+/**
+* Converts text graph files to the binary format, see
+* {@link #textToBinary}.
+* Usage: <code>java peersim.graph.GraphIO [-undir] [-labels] in out</code>
+*/
+public static void main( String[] args ) throws IOException {
+
+	boolean undir = false, labels = false;
+	int k = 0;
+	for(; k<args.length && args[k].startsWith("-"); ++k)
+	{
+		if( args[k].equals("-undir") ) undir = true;
+		else if( args[k].equals("-labels") ) labels = true;
+		else k = args.length;
+	}
+	if( args.length-k != 2 )
+	{
+		System.err.println("Usage: java peersim.graph.GraphIO "+
+			"[-undir] [-labels] textfile binaryfile");
+		System.exit(1);
+	}
+	textToBinary(args[k],args[k+1],undir,labels);
+}
+
+
+// ================== private static methods ========================
+// ==================================================================
+
+
+/** Receives the nodes and edges found by {@link #parseText}. */
+private static abstract class EdgeVisitor {
+
+	/** Called for the first ID in each line. */
+	abstract void node( int a );
+
+	/** Called for every other ID b in a line that starts with a. */
+	abstract void edge( int a, int b );
+}
+
+// ------------------------------------------------------------------
+
+/**
+* Parses the text format of {@link #textToBinary} byte by byte.
+*/
+private static void parseText( String file, EdgeVisitor v )
+throws IOException {
+
+	final InputStream is = new FileInputStream(file);
+	try
+	{
+		final byte[] b = new byte[1<<16];
+		int len = 0, p = 0;
+		long line = 1;
+		int from = -1; // first ID in the line
+		long x = -1; // number being parsed
+		boolean comment = false, start = true;
+		int c;
+		do
+		{
+			if( p == len )
+			{
+				len = is.read(b);
+				p = 0;
+			}
+			c = (len < 0 ? -1 : b[p++] & 0xff);
+			if( c >= '0' && c <= '9' && !comment )
+			{
+				x = (x < 0 ? 0 : 10*x) + (c-'0');
+				if( x > Integer.MAX_VALUE ) throw new IOException(
+					file+":"+line+": ID too large");
+				start = false;
+				continue;
+			}
+			if( x >= 0 )
+			{
+				if( from < 0 )
+				{
+					from = (int)x;
+					v.node(from);
+				}
+				else v.edge(from,(int)x);
+				x = -1;
+			}
+			if( c == '\n' || c < 0 )
+			{
+				line++;
+				from = -1;
+				comment = false;
+				start = true;
+			}
+			else if( c == '#' && start ) comment = true;
+			else if( !comment && c != ' ' && c != '\t' && c != '\r' )
+				throw new IOException(file+":"+line+
+					": unexpected character '"+(char)c+"'");
+		}
+		while( c >= 0 );
+	}
+	finally { is.close(); }
+}
+
+// ------------------------------------------------------------------
+
+/** Creates a binary graph file and writes its header. */
+private static MappedBuffer createBinary( String file, int n, long m,
+		int flags ) throws IOException {
+
+	final MappedBuffer buf = new MappedBuffer(file,
+		MappedGraph.layout(n,m,flags)[4]);
+	buf.putInt(0,MappedGraph.MAGIC);
+	buf.putInt(4,flags);
+	buf.putLong(8,n);
+	buf.putLong(16,m);
+	return buf;
+}
+
 }
 
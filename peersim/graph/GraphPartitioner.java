@@ -0,0 +1,481 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.graph;
+
+import java.util.Arrays;
+import peersim.util.ExtendedRandom;
+
+/**
+* Multilevel k-way graph partitioner. It assigns the nodes to k parts of
+* roughly equal size so that few edges go between different parts.
+* This is what external tools are used for through
+* {@link GraphIO#writeChaco}, but done in-process, in the same way as those
+* tools do it:
+* <ul>
+* <li>Coarsening: the graph is repeatedly shrunk by merging the endpoints
+* of the edges of a heavy-edge matching. Coarse nodes and edges have
+* weights: the number of original nodes and edges they represent.</li>
+* <li>Initial partitioning: the coarsest graph is partitioned by greedy
+* graph growing: parts are grown one by one from a random node, always
+* adding the node most strongly connected to the part.
+* The best of a few attempts is kept.</li>
+* <li>Uncoarsening: the partition is projected back to finer and finer
+* graphs, and at each level it is improved by greedy k-way refinement:
+* boundary nodes are moved to the neighbouring part that reduces the
+* cut the most, subject to the balance constraint.</li>
+* </ul>
+* Directed graphs are partitioned as if they were undirected.
+* Self loops are ignored.
+*/
+public class GraphPartitioner {
+
+
+// =================== constants ======================================
+// ====================================================================
+
+
+/** Coarsening stops at about this many nodes per part */
+private static final int COARSEST = 30;
+
+/** Number of attempts of the initial partitioning */
+private static final int TRIES = 4;
+
+/** Maximal number of refinement passes at each level */
+private static final int PASSES = 8;
+
+
+// =================== private fields =================================
+// ====================================================================
+
+
+/** A weighted undirected graph in CSR format */
+private static class Level {
+
+	int n;
+	int[] off;
+	int[] adj;
+	/** edge weights */
+	int[] ew;
+	/** node weights */
+	int[] vw;
+	/** the coarse node of each node in the next coarser level */
+	int[] cmap;
+	Level coarser;
+	long weight;
+}
+
+/** The original graph as a level */
+private final Level top;
+
+/** The allowed imbalance */
+private double imbalance = 0.03;
+
+private ExtendedRandom r;
+
+
+// =================== initialization =================================
+// ====================================================================
+
+
+/**
+* Prepares the partitioning of the given graph. The graph is copied, so
+* it can be modified later.
+*/
+public GraphPartitioner( CSRGraph g ) {
+
+	final int n = g.size();
+	final CSRGraph gt = (g.directed() ? g.transpose() : null);
+	top = new Level();
+	top.n = n;
+	top.off = new int[n+1];
+	final int[] adj = new int[g.edges()*(gt==null?1:2)];
+	final int[] mark = new int[n];
+	Arrays.fill(mark,-1);
+	int m = 0;
+	for(int i=0; i<n; ++i)
+	{
+		for(int pass=0; pass<2; ++pass)
+		{
+			final CSRGraph h = (pass==0 ? g : gt);
+			if( h == null ) continue;
+			for(int e=h.offsets[i]; e<h.offsets[i+1]; ++e)
+			{
+				final int j = h.targets[e];
+				if( j == i || mark[j] == i ) continue;
+				mark[j] = i;
+				adj[m++] = j;
+			}
+		}
+		top.off[i+1] = m;
+	}
+	top.adj = Arrays.copyOf(adj,m);
+	top.ew = new int[m];
+	Arrays.fill(top.ew,1);
+	top.vw = new int[n];
+	Arrays.fill(top.vw,1);
+	top.weight = n;
+}
+
+
+// =================== public methods =================================
+// ====================================================================
+
+
+/**
+* Sets the allowed imbalance: the weight of each part can be at most
+* (1+imbalance) times the average. Defaults to 0.03.
+*/
+public void setImbalance( double imbalance ) {
+
+	if( imbalance < 0 ) throw new IllegalArgumentException(
+		"imbalance must not be negative: "+imbalance);
+	this.imbalance = imbalance;
+}
+
+// --------------------------------------------------------------------
+
+/**
+* Partitions the graph into k parts.
+* @param k the number of parts
+* @param seed the seed of the random decisions
+* @return element i is the part of node i, between 0 and k-1
+*/
+public int[] partition( int k, long seed ) {
+
+	if( k < 1 ) throw new IllegalArgumentException(
+		"number of parts must be positive: "+k);
+	r = new ExtendedRandom(seed);
+	if( k == 1 || top.n == 0 ) return new int[top.n];
+
+	// coarsening
+	final int stop = Math.max(COARSEST*k,100);
+	Level l = top;
+	while( l.n > stop )
+	{
+		final Level c = coarsen(l,(int)Math.max(1,3*l.weight/(2*stop)));
+		if( c.n > 0.95*l.n ) break;
+		l.coarser = c;
+		l = c;
+	}
+
+	// initial partition
+	int[] part = null;
+	long best = Long.MAX_VALUE;
+	for(int t=0; t<TRIES; ++t)
+	{
+		final int[] p = grow(l,k);
+		refine(l,p,k);
+		final long c = cut(l,p);
+		if( c < best )
+		{
+			best = c;
+			part = p;
+		}
+	}
+
+	// uncoarsening
+	while( l != top )
+	{
+		Level f = top;
+		while( f.coarser != l ) f = f.coarser;
+		final int[] fp = new int[f.n];
+		for(int i=0; i<f.n; ++i) fp[i] = part[f.cmap[i]];
+		refine(f,fp,k);
+		f.coarser = null;
+		f.cmap = null;
+		part = fp;
+		l = f;
+	}
+	return part;
+}
+
+// --------------------------------------------------------------------
+
+/**
+* Returns the number of edges of the graph that connect nodes in
+* different parts. If the graph is undirected, each edge is counted once,
+* otherwise each directed edge is counted.
+*/
+public static long cut( CSRGraph g, int[] part ) {
+
+	long c = 0;
+	for(int i=0; i<g.size(); ++i)
+	for(int e=g.offsets[i]; e<g.offsets[i+1]; ++e)
+		if( part[i] != part[g.targets[e]] ) c++;
+	return (g.directed() ? c : c/2);
+}
+
+
+// =================== private methods ================================
+// ====================================================================
+
+
+/**
+* Returns the coarser graph defined by a heavy-edge matching of l.
+* Nodes are visited in random order, and each unmatched node is matched
+* to the unmatched neighbour to which it has the heaviest edge.
+* @param maxw coarse nodes are not heavier than this, unless
+* they are not merged
+*/
+private Level coarsen( Level l, int maxw ) {
+
+	final int n = l.n;
+	final int[] match = new int[n];
+	Arrays.fill(match,-1);
+	for(int u:permutation(n))
+	{
+		if( match[u] != -1 ) continue;
+		int best = u, bw = 0;
+		for(int e=l.off[u]; e<l.off[u+1]; ++e)
+		{
+			final int v = l.adj[e];
+			if( match[v] == -1 && v != u && l.ew[e] > bw &&
+				l.vw[u]+l.vw[v] <= maxw )
+			{
+				best = v;
+				bw = l.ew[e];
+			}
+		}
+		match[u] = best;
+		match[best] = u;
+	}
+
+	final int[] cmap = new int[n];
+	final int[] first = new int[n];
+	Arrays.fill(cmap,-1);
+	int cn = 0;
+	for(int u=0; u<n; ++u)
+	{
+		if( cmap[u] != -1 ) continue;
+		cmap[u] = cmap[match[u]] = cn;
+		first[cn++] = u;
+	}
+
+	final Level c = new Level();
+	c.n = cn;
+	c.off = new int[cn+1];
+	c.vw = new int[cn];
+	c.weight = l.weight;
+	int[] adj = new int[l.adj.length];
+	int[] ew = new int[l.adj.length];
+	final int[] mark = new int[cn];
+	final int[] pos = new int[cn];
+	Arrays.fill(mark,-1);
+	int m = 0;
+	for(int x=0; x<cn; ++x)
+	{
+		final int u = first[x];
+		for(int k=0; k<2; ++k)
+		{
+			final int w = (k==0 ? u : match[u]);
+			if( k==1 && w==u ) break;
+			c.vw[x] += l.vw[w];
+			for(int e=l.off[w]; e<l.off[w+1]; ++e)
+			{
+				final int y = cmap[l.adj[e]];
+				if( y == x ) continue;
+				if( mark[y] != x )
+				{
+					mark[y] = x;
+					pos[y] = m;
+					adj[m] = y;
+					ew[m++] = l.ew[e];
+				}
+				else ew[pos[y]] += l.ew[e];
+			}
+		}
+		c.off[x+1] = m;
+	}
+	c.adj = Arrays.copyOf(adj,m);
+	c.ew = Arrays.copyOf(ew,m);
+	l.cmap = cmap;
+	return c;
+}
+
+// --------------------------------------------------------------------
+
+/**
+* Greedy graph growing. Parts 0,...,k-2 are grown one after the other
+* from a random unassigned node, always adding the unassigned node with
+* the heaviest connection to the part, until the part reaches the average
+* weight. The rest of the nodes go to part k-1.
+*/
+private int[] grow( Level l, int k ) {
+
+	final int n = l.n;
+	final int[] part = new int[n];
+	Arrays.fill(part,-1);
+	final long[] conn = new long[n];
+	final int[] frontier = new int[n];
+	final boolean[] inFrontier = new boolean[n];
+	final int[] perm = permutation(n);
+	int next = 0; // position in perm to look for seeds
+	long assigned = 0;
+	for(int p=0; p<k-1; ++p)
+	{
+		final double target = (double)(l.weight-assigned)/(k-p);
+		long w = 0;
+		int fs = 0;
+		while( w < target )
+		{
+			// pick the frontier node with the heaviest connection
+			int bi = -1;
+			for(int i=0; i<fs; ++i)
+				if( bi == -1 || conn[frontier[i]] > conn[frontier[bi]] )
+					bi = i;
+			int v;
+			if( bi >= 0 )
+			{
+				v = frontier[bi];
+				frontier[bi] = frontier[--fs];
+				inFrontier[v] = false;
+			}
+			else
+			{
+				while( next < n && part[perm[next]] != -1 ) next++;
+				if( next == n ) break;
+				v = perm[next];
+			}
+			part[v] = p;
+			w += l.vw[v];
+			for(int e=l.off[v]; e<l.off[v+1]; ++e)
+			{
+				final int u = l.adj[e];
+				if( part[u] != -1 ) continue;
+				conn[u] += l.ew[e];
+				if( !inFrontier[u] )
+				{
+					inFrontier[u] = true;
+					frontier[fs++] = u;
+				}
+			}
+		}
+		for(int i=0; i<fs; ++i)
+		{
+			conn[frontier[i]] = 0;
+			inFrontier[frontier[i]] = false;
+		}
+		assigned += w;
+	}
+	for(int i=0; i<n; ++i) if( part[i] == -1 ) part[i] = k-1;
+	return part;
+}
+
+// --------------------------------------------------------------------
+
+/**
+* Greedy k-way refinement. In each pass the nodes are visited in random
+* order. A node is moved to the part that reduces the cut the most, if the
+* part does not become heavier than allowed. Moves that do not change
+* the cut are made if they improve the balance. Nodes of parts that are
+* heavier than allowed are moved even if the cut increases.
+*/
+private void refine( Level l, int[] part, int k ) {
+
+	final long maxw = (long)Math.ceil((1+imbalance)*l.weight/k);
+	final long[] pw = new long[k];
+	for(int i=0; i<l.n; ++i) pw[part[i]] += l.vw[i];
+	final long[] conn = new long[k];
+	final int[] touched = new int[k];
+	for(int pass=0; pass<PASSES; ++pass)
+	{
+		int moved = 0;
+		for(int u:permutation(l.n))
+		{
+			final int own = part[u];
+			int nt = 0;
+			for(int e=l.off[u]; e<l.off[u+1]; ++e)
+			{
+				final int q = part[l.adj[e]];
+				if( conn[q] == 0 ) touched[nt++] = q;
+				conn[q] += l.ew[e];
+			}
+			final boolean over = pw[own] > maxw;
+			int best = own;
+			long bestGain = 0;
+			for(int i=0; i<nt; ++i)
+			{
+				final int q = touched[i];
+				if( q == own || pw[q]+l.vw[u] > maxw ) continue;
+				final long gain = conn[q]-conn[own];
+				final boolean better;
+				if( best != own )
+					better = gain > bestGain ||
+						(gain == bestGain && pw[q] < pw[best]);
+				else if( over )
+					better = true;
+				else
+					better = gain > 0 ||
+						(gain == 0 && pw[q]+l.vw[u] < pw[own]);
+				if( better )
+				{
+					best = q;
+					bestGain = gain;
+				}
+			}
+			if( over && best == own )
+			{
+				// no neighbouring part can take it: try the lightest
+				int q = 0;
+				for(int i=1; i<k; ++i) if( pw[i] < pw[q] ) q = i;
+				if( q != own && pw[q]+l.vw[u] <= maxw ) best = q;
+			}
+			for(int i=0; i<nt; ++i) conn[touched[i]] = 0;
+			if( best != own )
+			{
+				pw[own] -= l.vw[u];
+				pw[best] += l.vw[u];
+				part[u] = best;
+				moved++;
+			}
+		}
+		if( moved == 0 ) break;
+	}
+}
+
+// --------------------------------------------------------------------
+
+/** Returns the weight of the cut edges of the partition of level l. */
+private static long cut( Level l, int[] part ) {
+
+	long c = 0;
+	for(int i=0; i<l.n; ++i)
+	for(int e=l.off[i]; e<l.off[i+1]; ++e)
+		if( part[i] != part[l.adj[e]] ) c += l.ew[e];
+	return c/2;
+}
+
+// --------------------------------------------------------------------
+
+/** Returns a random permutation of 0,...,n-1. */
+private int[] permutation( int n ) {
+
+	final int[] p = new int[n];
+	for(int i=0; i<n; ++i) p[i] = i;
+	for(int i=n; i>1; i--)
+	{
+		final int j = r.nextInt(i);
+		final int t = p[j];
+		p[j] = p[i-1];
+		p[i-1] = t;
+	}
+	return p;
+}
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.graph;
+
+import java.util.ArrayList;
+
+/**
+* Speeds up {@link ConstUndirGraph#isEdge} by storing the neighbours of
+* each node in an {@link IntHashSet}, so isEdge takes constant expected
+* time. Unlike {@link FastUndirGraph}, which stores an adjacency matrix,
+* its memory consumption is linear in the number of edges, so it can be
+* used with large graphs too.
+*/
+public class HashUndirGraph extends ConstUndirGraph
+{
+
+/** The neighbours of each node in the undirected graph */
+private IntHashSet[] adj;
+
+
+// ======================= initializarion ==========================
+// =================================================================
+
+
+/** Calls super constructor */
+public HashUndirGraph(Graph graph)
+{
+	super(graph);
+}
+
+// -----------------------------------------------------------------
+
+protected void initGraph()
+{
+	final int max = g.size();
+	adj = new IntHashSet[max];
+	for (int i=0; i<max; ++i)
+	{
+		if (in != null) in[i] = new ArrayList<Integer>();
+		adj[i] = new IntHashSet(g.degree(i));
+	}
+
+	for(int i=0; i<max; ++i)
+	{
+		for(Integer out:g.getNeighbours(i))
+		{
+			int j=out.intValue();
+			if( in != null && ! g.isEdge(j,i) )
+				in[j].add(i);
+			adj[i].add(j);
+			adj[j].add(i);
+		}
+	}
+}
+
+
+// ============================ Graph functions ====================
+// =================================================================
+
+
+public boolean isEdge(int i, int j)
+{
+	return adj[i].contains(j);
+}
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.graph;
+
+import java.util.*;
+import peersim.util.ExtendedRandom;
+import peersim.util.RangeTask;
+
+/**
+* Approximates the neighbourhood function of a {@link CSRGraph} using the
+* HyperANF algorithm of Boldi, Rosa and Vigna.
+* The neighbourhood function N(t) is the number of pairs of nodes (x,y)
+* such that y is reachable from x in at most t steps. Each node has a
+* HyperLogLog counter that estimates the size of its ball of radius t.
+* Initially the counter of a node contains only the node itself, and in
+* iteration t+1 it becomes the union of its own counter and the counters of
+* its neighbours from iteration t. A union of HyperLogLog counters is the
+* register-wise maximum, so each iteration is one pass over the edges.
+* Nodes are processed in parallel using {@link RangeTask}, and a node is
+* recomputed only if it or one of its neighbours changed in the previous
+* iteration.
+* <p>
+* Each counter has 2<sup>p</sup> one-byte registers, where p is the
+* precision. The relative standard error of one counter is about
+* 1.04/2<sup>p/2</sup>; the error of N(t) is normally much smaller.
+*/
+public class HyperANF {
+
+
+// =================== constants ======================================
+// ====================================================================
+
+
+/** Number of nodes processed by one subtask */
+private static final int GRAIN = 1024;
+
+
+// =================== private fields =================================
+// ====================================================================
+
+
+private final CSRGraph g;
+
+private final int n;
+
+/** the precision */
+private final int p;
+
+/** number of registers per counter */
+private final int m;
+
+/** registers of the current iteration, m for each node */
+private byte[] cur;
+
+/** registers of the next iteration */
+private byte[] next;
+
+/** nodes whose counter changed in the last iteration */
+private boolean[] changed;
+
+/** nodes whose counter changed in the current iteration */
+private boolean[] changedNext;
+
+/** estimated ball size of each node in the current iteration */
+private final double[] size;
+
+/** The values of the neighbourhood function */
+private final ArrayList<Double> nf = new ArrayList<Double>();
+
+/** True if the last run stopped because the counters did not change */
+private boolean converged;
+
+private final RangeTask iteration = new RangeTask(GRAIN) {
+	protected void process( int from, int to ) { iterate(from,to); }
+};
+
+
+// =================== initialization =================================
+// ====================================================================
+
+
+/**
+* @param g the graph. Balls are formed by following the edges in their
+* direction.
+* @param p the precision, between 4 and 16. The memory used is
+* 2<sup>p+1</sup> bytes per node.
+*/
+public HyperANF( CSRGraph g, int p ) {
+
+	if( p < 4 || p > 16 ) throw new IllegalArgumentException(
+		"precision must be between 4 and 16: "+p);
+	if( (long)g.size() << p > Integer.MAX_VALUE-8 )
+		throw new IllegalArgumentException(
+		"too many nodes for precision "+p);
+	this.g = g;
+	this.p = p;
+	n = g.size();
+	m = 1<<p;
+	size = new double[n];
+}
+
+
+// =================== public methods =================================
+// ====================================================================
+
+
+/**
+* Calculates the neighbourhood function. After the call the results can
+* be read using {@link #neighbourhoodFunction}, {@link #averageDistance} and
+* {@link #effectiveDiameter}.
+* @param maxd the maximal number of iterations. The function is calculated
+* for t=0,...,maxd, or until the counters do not change any more. In the
+* former case the run might not have converged, see {@link #converged}.
+* @param seed the seed of the hash function
+*/
+public void run( int maxd, long seed ) {
+
+	cur = new byte[n*m];
+	next = new byte[n*m];
+	changed = new boolean[n];
+	changedNext = new boolean[n];
+	nf.clear();
+	converged = false;
+
+	for(int i=0; i<n; ++i)
+	{
+		final long h = ExtendedRandom.streamSeed(seed,i);
+		final int reg = (int)(h >>> (64-p));
+		final int rank = Math.min(Long.numberOfLeadingZeros(h<<p),64-p)+1;
+		cur[i*m+reg] = (byte)rank;
+		changed[i] = true;
+		size[i] = estimate(cur,i);
+	}
+	nf.add(sum());
+
+	for(int t=0; t<maxd; ++t)
+	{
+		iteration.run(0,n);
+		boolean any = false;
+		for(int i=0; i<n && !any; ++i) any = changedNext[i];
+		if( !any )
+		{
+			converged = true;
+			break;
+		}
+		byte[] tmp = cur;
+		cur = next;
+		next = tmp;
+		boolean[] tmpc = changed;
+		changed = changedNext;
+		changedNext = tmpc;
+		nf.add(sum());
+	}
+	cur = next = null;
+	changed = changedNext = null;
+}
+
+// --------------------------------------------------------------------
+
+/**
+* Returns the estimated neighbourhood function of the last run. Element t
+* is the estimated number of pairs (x,y) such that y is reachable from x
+* in at most t steps, including pairs with x=y. If the run converged, the
+* last value is the estimate for all reachable pairs.
+*/
+public double[] neighbourhoodFunction() {
+
+	final double[] res = new double[nf.size()];
+	for(int t=0; t<res.length; ++t) res[t] = nf.get(t);
+	return res;
+}
+
+// --------------------------------------------------------------------
+
+/**
+* Returns true if the last run stopped because the counters did not change
+* any more, that is, all reachable pairs were found. Returns false if it
+* was stopped by the maximal number of iterations.
+*/
+public boolean converged() { return converged; }
+
+// --------------------------------------------------------------------
+
+/**
+* Returns the estimated average distance between the pairs of distinct
+* nodes that are reachable from each other, based on the last run.
+* Returns NaN if no such pairs were found, or if the run did not converge,
+* since then the distances of the pairs not reached are not known.
+*/
+public double averageDistance() {
+
+	if( !converged ) return Double.NaN;
+	double sum = 0;
+	for(int t=1; t<nf.size(); ++t) sum += t*(nf.get(t)-nf.get(t-1));
+	return sum/(nf.get(nf.size()-1)-nf.get(0));
+}
+
+// --------------------------------------------------------------------
+
+/**
+* Returns the estimated effective diameter based on the last run, that is,
+* the smallest distance within which the given fraction of the reachable
+* pairs of distinct nodes are found.
+* The value is interpolated linearly between integer distances.
+* Returns NaN if no pairs of distinct nodes are reachable, or if the run
+* did not converge.
+* @param q the fraction of pairs, for example 0.9
+*/
+public double effectiveDiameter( double q ) {
+
+	if( !converged ) return Double.NaN;
+	final double n0 = nf.get(0);
+	final double all = nf.get(nf.size()-1)-n0;
+	if( !(all > 0) ) return Double.NaN;
+	for(int t=1; t<nf.size(); ++t)
+	{
+		final double f = (nf.get(t)-n0)/all;
+		if( f >= q )
+		{
+			final double f0 = (nf.get(t-1)-n0)/all;
+			return t-1+(q-f0)/(f-f0);
+		}
+	}
+	return nf.size()-1;
+}
+
+
+// =================== private methods ================================
+// ====================================================================
+
+
+/** Computes the counters of the next iteration for nodes in [from,to). */
+private void iterate( int from, int to ) {
+
+	final int[] off = g.offsets;
+	final int[] tar = g.targets;
+	for(int v=from; v<to; ++v)
+	{
+		final int vi = v*m;
+		boolean todo = changed[v];
+		for(int e=off[v]; e<off[v+1] && !todo; ++e) todo = changed[tar[e]];
+		System.arraycopy(cur,vi,next,vi,m);
+		changedNext[v] = false;
+		if( !todo ) continue;
+		boolean ch = false;
+		for(int e=off[v]; e<off[v+1]; ++e)
+		{
+			final int ui = tar[e]*m;
+			for(int j=0; j<m; ++j)
+			{
+				if( cur[ui+j] > next[vi+j] )
+				{
+					next[vi+j] = cur[ui+j];
+					ch = true;
+				}
+			}
+		}
+		if( ch )
+		{
+			changedNext[v] = true;
+			size[v] = estimate(next,v);
+		}
+	}
+}
+
+// --------------------------------------------------------------------
+
+/** The sum of the estimated ball sizes, that is, N(t). */
+private double sum() {
+
+	double s = 0;
+	for(int i=0; i<n; ++i) s += size[i];
+	return s;
+}
+
+// --------------------------------------------------------------------
+
+/**
+* The HyperLogLog estimate of the counter of node v in the given
+* registers, with the small range correction (linear counting).
+*/
+private double estimate( byte[] reg, int v ) {
+
+	final int vi = v*m;
+	double z = 0;
+	int zeros = 0;
+	for(int j=0; j<m; ++j)
+	{
+		z += Double.longBitsToDouble((1023L-reg[vi+j])<<52); // 2^-reg
+		if( reg[vi+j] == 0 ) zeros++;
+	}
+	final double alpha;
+	if( m == 16 ) alpha = 0.673;
+	else if( m == 32 ) alpha = 0.697;
+	else if( m == 64 ) alpha = 0.709;
+	else alpha = 0.7213/(1+1.079/m);
+	final double e = alpha*m*m/z;
+	if( e <= 2.5*m && zeros > 0 ) return m*Math.log((double)m/zeros);
+	return e;
+}
+
+}
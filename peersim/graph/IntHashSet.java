@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.graph;
+
+import java.util.*;
+
+/**
+* A set of integers stored in an open addressing hash table with linear
+* probing. The integers are stored in a plain int array, so it needs
+* much less memory than a <code>HashSet&lt;Integer&gt;</code>, and
+* the methods that take primitive arguments ({@link #add(int)},
+* {@link #contains(int)}, {@link #remove(int)}) do not box.
+* It is also a {@link Set}, so it can be returned as a neighbour
+* collection of a {@link Graph}; in that case elements are boxed on
+* access. The iteration order is the order of the hash table.
+*/
+public class IntHashSet extends AbstractSet<Integer> {
+
+
+// ======================= fields ====================================
+// ===================================================================
+
+
+/** Marks a free slot. The set can contain it, see {@link #hasFree}. */
+private static final int FREE = Integer.MIN_VALUE;
+
+/** The table, its length is a power of two */
+private int[] table;
+
+/** Number of elements in the table, not counting {@link #FREE} */
+private int n = 0;
+
+/** True if the set contains the value {@link #FREE} */
+private boolean hasFree = false;
+
+/** Incremented by modifications, to detect concurrent modification */
+private int modCount = 0;
+
+
+// ======================= initialization ============================
+// ===================================================================
+
+
+/** Creates an empty set. */
+public IntHashSet() { this(4); }
+
+// -------------------------------------------------------------------
+
+/**
+* Creates an empty set.
+* @param expected the number of elements that can be stored without
+* resizing the table.
+*/
+public IntHashSet( int expected ) {
+
+	table = new int[capacity(expected)];
+	Arrays.fill(table,FREE);
+}
+
+
+// ======================= public methods ============================
+// ===================================================================
+
+
+/** Adds x to the set, returns true if it was not in the set. */
+public boolean add( int x ) {
+
+	if( x == FREE )
+	{
+		if( hasFree ) return false;
+		modCount++;
+		return (hasFree = true);
+	}
+	int i = slot(x);
+	while( table[i] != FREE )
+	{
+		if( table[i] == x ) return false;
+		i = (i+1) & (table.length-1);
+	}
+	table[i] = x;
+	n++;
+	modCount++;
+	if( 2*n > table.length ) rehash(2*table.length);
+	return true;
+}
+
+// -------------------------------------------------------------------
+
+/** Returns true if x is in the set. */
+public boolean contains( int x ) {
+
+	if( x == FREE ) return hasFree;
+	int i = slot(x);
+	while( table[i] != FREE )
+	{
+		if( table[i] == x ) return true;
+		i = (i+1) & (table.length-1);
+	}
+	return false;
+}
+
+// -------------------------------------------------------------------
+
+/** Removes x from the set, returns true if it was in the set. */
+public boolean remove( int x ) {
+
+	if( x == FREE )
+	{
+		if( !hasFree ) return false;
+		hasFree = false;
+		modCount++;
+		return true;
+	}
+	final int mask = table.length-1;
+	int i = slot(x);
+	while( table[i] != x )
+	{
+		if( table[i] == FREE ) return false;
+		i = (i+1) & mask;
+	}
+	// backward shift: move later elements of the run into the gap
+	int j = i;
+	while( true )
+	{
+		j = (j+1) & mask;
+		if( table[j] == FREE ) break;
+		final int k = slot(table[j]);
+		// move if the home slot of table[j] is not in (i,j]
+		if( (i<=j) ? (k<=i || k>j) : (k<=i && k>j) )
+		{
+			table[i] = table[j];
+			i = j;
+		}
+	}
+	table[i] = FREE;
+	n--;
+	modCount++;
+	return true;
+}
+
+// -------------------------------------------------------------------
+
+/** Returns the elements in an array, in iteration order. */
+public int[] toIntArray() {
+
+	final int[] a = new int[size()];
+	int k = 0;
+	if( hasFree ) a[k++] = FREE;
+	for(int x:table) if( x != FREE ) a[k++] = x;
+	return a;
+}
+
+// -------------------------------------------------------------------
+
+public int size() { return n+(hasFree?1:0); }
+
+// -------------------------------------------------------------------
+
+public void clear() {
+
+	Arrays.fill(table,FREE);
+	n = 0;
+	hasFree = false;
+	modCount++;
+}
+
+// -------------------------------------------------------------------
+
+public boolean add( Integer x ) { return add(x.intValue()); }
+
+// -------------------------------------------------------------------
+
+public boolean contains( Object x ) {
+
+	return (x instanceof Integer) && contains(((Integer)x).intValue());
+}
+
+// -------------------------------------------------------------------
+
+public boolean remove( Object x ) {
+
+	return (x instanceof Integer) && remove(((Integer)x).intValue());
+}
+
+// -------------------------------------------------------------------
+
+public Iterator<Integer> iterator() {
+
+	return new Iterator<Integer>() {
+		/** next slot to check, -1 means {@link #FREE} comes next */
+		int next = (hasFree ? -1 : 0);
+		int expected = modCount;
+		public boolean hasNext() {
+			if( next < 0 ) return true;
+			while( next < table.length && table[next] == FREE ) next++;
+			return next < table.length;
+		}
+		public Integer next() {
+			if( expected != modCount )
+				throw new ConcurrentModificationException();
+			if( !hasNext() ) throw new NoSuchElementException();
+			final int k = next++;
+			return (k < 0 ? FREE : table[k]);
+		}
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	};
+}
+
+
+// ======================= private methods ===========================
+// ===================================================================
+
+
+/** Returns the home slot of x. */
+private int slot( int x ) {
+
+	return (x * 0x9E3779B9) >>> (32-Integer.numberOfTrailingZeros(
+		table.length)) & (table.length-1);
+}
+
+// -------------------------------------------------------------------
+
+/** The table length for the given number of elements. */
+private static int capacity( int expected ) {
+
+	int c = 4;
+	while( c < 2*expected ) c <<= 1;
+	return c;
+}
+
+// -------------------------------------------------------------------
+
+private void rehash( int len ) {
+
+	final int[] old = table;
+	table = new int[len];
+	Arrays.fill(table,FREE);
+	for(int x:old)
+	{
+		if( x == FREE ) continue;
+		int i = slot(x);
+		while( table[i] != FREE ) i = (i+1) & (table.length-1);
+		table[i] = x;
+	}
+}
+
+}
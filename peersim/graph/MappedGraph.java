@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.graph;
+
+import java.io.IOException;
+import java.util.*;
+import peersim.util.MappedBuffer;
+
+/**
+* A read-only graph stored in a binary file in compressed sparse row
+* format, accessed through a memory mapping (see {@link MappedBuffer}).
+* Nothing is loaded in advance, so opening is instantaneous even for huge
+* graphs, and the pages of the file are loaded by the operating system
+* on demand. Files are written by {@link GraphIO#writeBinary} or
+* converted from text by {@link GraphIO#textToBinary}.
+* <p>
+* The file format is as follows. All numbers are little-endian.
+* <ul>
+* <li>Header of {@value #HEADER} bytes: the 4 bytes "PSG1",
+* the flags (int), the number of nodes n (long), the number of edges m
+* (long) and a reserved long that is 0. The flags are the sum of
+* {@value #DIRECTED} if the graph is directed, {@value #SORTED} if the
+* neighbour lists are in increasing order, {@value #WEIGHTS} if there are
+* edge weights and {@value #LABELS} if there are node labels.</li>
+* <li>Offsets: n+1 longs. The neighbours of node i are the targets from
+* index offsets[i] (inclusive) to offsets[i+1] (exclusive).</li>
+* <li>Targets: m ints.</li>
+* <li>Weights, if present: m floats, the weight of each edge in the same
+* order as the targets.</li>
+* <li>Labels, if present: n longs starting at the next position divisible
+* by 8, for example the IDs of the nodes in the original data.</li>
+* </ul>
+* If the graph is undirected, both (i,j) and (j,i) are stored.
+*/
+public class MappedGraph implements Graph {
+
+
+// ====================== fields ================================
+// ==============================================================
+
+
+/** The length of the header in bytes */
+public static final int HEADER = 32;
+
+/** Flag of directed graphs */
+public static final int DIRECTED = 1;
+
+/** Flag of graphs with sorted neighbour lists */
+public static final int SORTED = 2;
+
+/** Flag of graphs with edge weights */
+public static final int WEIGHTS = 4;
+
+/** Flag of graphs with node labels */
+public static final int LABELS = 8;
+
+/** The first four bytes of the files */
+static final int MAGIC = 'P' | ('S'<<8) | ('G'<<16) | ('1'<<24);
+
+private final MappedBuffer buf;
+
+private final int flags;
+
+private final int n;
+
+private final long m;
+
+/** Positions of the sections of the file */
+private final long[] layout;
+
+
+// ====================== initialization ========================
+// ==============================================================
+
+
+/**
+* Maps the given file.
+* @throws IOException if the file cannot be read or it is not in the
+* right format
+*/
+public MappedGraph( String file ) throws IOException {
+
+	buf = new MappedBuffer(file);
+	if( buf.size() < HEADER || buf.getInt(0) != MAGIC )
+		throw new IOException(file+": not a binary graph file");
+	flags = buf.getInt(4);
+	final long nodes = buf.getLong(8);
+	m = buf.getLong(16);
+	if( nodes < 0 || nodes >= Integer.MAX_VALUE || m < 0 )
+		throw new IOException(file+": invalid header");
+	n = (int)nodes;
+	layout = layout(n,m,flags);
+	if( buf.size() < layout[4] )
+		throw new IOException(file+": truncated file");
+}
+
+
+// ======================= Graph implementations ================
+// ==============================================================
+
+
+/**
+* Uses binary search if the neighbour lists are sorted, otherwise linear
+* search.
+*/
+public boolean isEdge( int i, int j ) {
+
+	long lo = offset(i), hi = offset(i+1);
+	if( (flags & SORTED) == 0 )
+	{
+		for(long e=lo; e<hi; ++e)
+			if( target(e) == j ) return true;
+		return false;
+	}
+	while( lo < hi )
+	{
+		final long mid = (lo+hi)>>>1;
+		final int t = target(mid);
+		if( t == j ) return true;
+		if( t < j ) lo = mid+1;
+		else hi = mid;
+	}
+	return false;
+}
+
+// --------------------------------------------------------------
+
+/**
+* Returns an unmodifiable view of the neighbour list of i.
+* Elements are read from the file and boxed on access, so for efficiency
+* consider using {@link #offset} and {@link #target}.
+*/
+public Collection<Integer> getNeighbours( int i ) {
+
+	final long from = offset(i);
+	final int len = (int)(offset(i+1)-from);
+	return new AbstractList<Integer>() {
+		public Integer get( int k ) {
+			if( k<0 || k>=len ) throw new IndexOutOfBoundsException();
+			return target(from+k);
+		}
+		public int size() { return len; }
+	};
+}
+
+// --------------------------------------------------------------
+
+/**
+* Returns the label of the node as a Long if there are labels,
+* otherwise null.
+*/
+public Object getNode( int i ) {
+
+	return ((flags & LABELS) == 0 ? null : Long.valueOf(label(i)));
+}
+
+// --------------------------------------------------------------
+
+/** Returns null always */
+public Object getEdge( int i, int j ) { return null; }
+
+// --------------------------------------------------------------
+
+public int size() { return n; }
+
+// --------------------------------------------------------------
+
+public boolean directed() { return (flags & DIRECTED) != 0; }
+
+// --------------------------------------------------------------
+
+/** not supported */
+public boolean setEdge( int i, int j ) {
+
+	throw new UnsupportedOperationException();
+}
+
+// --------------------------------------------------------------
+
+/** not supported */
+public boolean clearEdge( int i, int j ) {
+
+	throw new UnsupportedOperationException();
+}
+
+// --------------------------------------------------------------
+
+public int degree( int i ) { return (int)(offset(i+1)-offset(i)); }
+
+
+// ======================= other methods ========================
+// ==============================================================
+
+
+/** Returns the number of (directed) edges. */
+public long edges() { return m; }
+
+// --------------------------------------------------------------
+
+/** Returns the index of the first neighbour of node i. */
+public long offset( int i ) { return buf.getLong(HEADER+8L*i); }
+
+// --------------------------------------------------------------
+
+/** Returns the target of edge e, where e is in [0,{@link #edges}). */
+public int target( long e ) { return buf.getInt(layout[1]+4*e); }
+
+// --------------------------------------------------------------
+
+/** Returns true if the neighbour lists are in increasing order. */
+public boolean isSorted() { return (flags & SORTED) != 0; }
+
+// --------------------------------------------------------------
+
+/** Returns true if the file contains edge weights. */
+public boolean hasWeights() { return (flags & WEIGHTS) != 0; }
+
+// --------------------------------------------------------------
+
+/**
+* Returns the weight of edge e, where e is in [0,{@link #edges}).
+* @throws IllegalStateException if there are no weights
+*/
+public float weight( long e ) {
+
+	if( !hasWeights() ) throw new IllegalStateException("no weights");
+	return buf.getFloat(layout[2]+4*e);
+}
+
+// --------------------------------------------------------------
+
+/** Returns true if the file contains node labels. */
+public boolean hasLabels() { return (flags & LABELS) != 0; }
+
+// --------------------------------------------------------------
+
+/**
+* Returns the label of node i.
+* @throws IllegalStateException if there are no labels
+*/
+public long label( int i ) {
+
+	if( !hasLabels() ) throw new IllegalStateException("no labels");
+	return buf.getLong(layout[3]+8L*i);
+}
+
+// --------------------------------------------------------------
+
+/**
+* Copies the graph into memory. Weights and labels are not copied.
+* @throws IllegalArgumentException if the graph has too many edges for a
+* CSR graph
+*/
+public CSRGraph toCSR() {
+
+	if( m > Integer.MAX_VALUE-8 ) throw new IllegalArgumentException(
+		"too many edges for a CSR graph");
+	final int[] offsets = new int[n+1];
+	for(int i=0; i<=n; ++i) offsets[i] = (int)offset(i);
+	final int[] targets = new int[(int)m];
+	for(int e=0; e<m; ++e) targets[e] = target(e);
+	return new CSRGraph(offsets,targets,directed(),isSorted());
+}
+
+// --------------------------------------------------------------
+
+/**
+* Returns the positions of the offsets, the targets, the weights
+* and the labels, and the length of the file with the given parameters.
+* The positions of missing sections are where they would start.
+*/
+static long[] layout( int n, long m, int flags ) {
+
+	final long offsets = HEADER;
+	final long targets = offsets+8L*(n+1);
+	final long weights = targets+4*m;
+	long labels = weights+((flags & WEIGHTS) != 0 ? 4*m : 0);
+	labels = (labels+7) & ~7L;
+	final long end = labels+((flags & LABELS) != 0 ? 8L*n : 0);
+	return new long[] { offsets, targets, weights, labels, end };
+}
+
+}
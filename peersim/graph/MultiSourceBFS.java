@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.graph;
+
+import java.util.*;
+import peersim.util.RangeTask;
+
+/**
+* Multi-source breadth-first search (MS-BFS) over a {@link CSRGraph}.
+* Breadth-first searches from many sources are run at the same time,
+* each source using one bit (lane) of a bitmask.
+* For each node a mask of the sources that have already reached the node
+* (seen) and a mask of the sources that reached it in the last level (visit)
+* are stored. In each level every node collects the visit masks of its
+* incoming neighbours, so one pass over the edges advances all the
+* searches by one level. Nodes are processed in parallel using
+* {@link RangeTask}.
+* <p>
+* The result is the number of nodes at each distance from each source, the
+* same that {@link GraphAlgorithms#flooding} returns for one source.
+* An instance can be used for many runs over the same graph, but
+* it must not be used by several threads at the same time.
+*/
+public class MultiSourceBFS {
+
+
+// =================== fields =========================================
+// ====================================================================
+
+
+/** Number of nodes processed by one subtask */
+private static final int GRAIN = 4096;
+
+private final CSRGraph gt;
+
+private final int n;
+
+/** number of long words per node */
+private final int w;
+
+private final long[] seen;
+
+private final long[] visit;
+
+private final long[] next;
+
+/** Element i is the number of nodes at distance i, for each lane. */
+private final ArrayList<int[]> ball = new ArrayList<int[]>();
+
+/** Number of new nodes found in the current level, for each lane. */
+private int[] levelCount;
+
+/** Number of lanes used in the last run */
+private int k = 0;
+
+/** The bits of the used lanes in each word, in the last run */
+private final long[] used;
+
+private final RangeTask level = new RangeTask(GRAIN) {
+	protected void process( int from, int to ) { level(from,to); }
+};
+
+
+// =================== initialization =================================
+// ====================================================================
+
+
+/**
+* @param g the graph to search. If it is directed, its transpose
+* is computed as well (see {@link CSRGraph#transpose}).
+* @param lanes the maximal number of sources searched at the same time.
+* It is rounded up to a multiple of 64. The memory used is three times
+* <code>lanes</code> bits per node.
+*/
+public MultiSourceBFS( CSRGraph g, int lanes ) {
+
+	if( lanes < 1 ) throw new IllegalArgumentException(
+		"number of lanes must be positive: "+lanes);
+	gt = (g.directed() ? g.transpose() : g);
+	n = g.size();
+	w = (lanes+63)>>>6;
+	final long size = (long)n*w;
+	if( size > Integer.MAX_VALUE-8 ) throw new IllegalArgumentException(
+		"too many lanes for "+n+" nodes: "+w*64L+" lanes need arrays of "+
+		size+" elements");
+	seen = new long[(int)size];
+	visit = new long[(int)size];
+	next = new long[(int)size];
+	used = new long[w];
+}
+
+
+// =================== public methods =================================
+// ====================================================================
+
+
+/** Returns the maximal number of sources that can be searched at once. */
+public int lanes() { return w*64; }
+
+// --------------------------------------------------------------------
+
+/**
+* Runs breadth-first search from the given sources at the same time.
+* After the call the result can be read using {@link #count}.
+* @param sources the sources, lane i will belong to
+* <code>sources[i]</code>. Its length must not be larger than
+* {@link #lanes()}.
+* @param maxd the search stops after this many levels (that is,
+* distances 0,...,maxd-1 are counted). If it is larger than the largest
+* distance, then the search stops when no more nodes can be reached.
+*/
+public void run( int[] sources, int maxd ) {
+
+	k = sources.length;
+	if( k > lanes() ) throw new IllegalArgumentException(
+		"too many sources: "+k+">"+lanes());
+	Arrays.fill(seen,0);
+	Arrays.fill(visit,0);
+	ball.clear();
+	for(int j=0; j<w; ++j)
+	{
+		final int rest = k-(j<<6);
+		if( rest >= 64 ) used[j] = -1L;
+		else if( rest <= 0 ) used[j] = 0;
+		else used[j] = (1L<<rest)-1;
+	}
+	if( maxd < 1 ) return;
+
+	int[] counts = new int[k];
+	for(int l=0; l<k; ++l)
+	{
+		final int i = sources[l]*w + (l>>>6);
+		counts[l] = 1;
+		seen[i] |= 1L<<l;
+		visit[i] |= 1L<<l;
+	}
+	ball.add(counts);
+
+	while( ball.size() < maxd )
+	{
+		levelCount = new int[k];
+		level.run(0,n);
+		System.arraycopy(next,0,visit,0,visit.length);
+		boolean found = false;
+		for(int l=0; l<k && !found; ++l) found = (levelCount[l]>0);
+		if( !found ) break;
+		ball.add(levelCount);
+	}
+	levelCount = null;
+}
+
+// --------------------------------------------------------------------
+
+/**
+* Returns the number of nodes at distance d from the source of the given
+* lane, in the last run. It is zero if d is not smaller than
+* {@link #levels}.
+*/
+public int count( int lane, int d ) {
+
+	if( lane < 0 || lane >= k ) throw new IndexOutOfBoundsException();
+	return ( d < ball.size() ? ball.get(d)[lane] : 0 );
+}
+
+// --------------------------------------------------------------------
+
+/**
+* Returns the number of levels of the last run: all nodes reached are
+* at distance smaller than this.
+*/
+public int levels() { return ball.size(); }
+
+// --------------------------------------------------------------------
+
+/**
+* Returns the number of nodes reached from the source of the given lane
+* in the last run, including the source itself.
+*/
+public int reached( int lane ) {
+
+	int sum = 0;
+	for(int d=0; d<ball.size(); ++d) sum += count(lane,d);
+	return sum;
+}
+
+
+// =================== private methods ================================
+// ====================================================================
+
+
+/** Advances all searches by one level for the nodes in [from,to). */
+private void level( int from, int to ) {
+
+	final int[] off = gt.offsets;
+	final int[] tar = gt.targets;
+	final long[] acc = new long[w];
+	final int[] cnt = new int[k];
+	for(int v=from; v<to; ++v)
+	{
+		final int vi = v*w;
+		boolean done = true;
+		for(int j=0; j<w; ++j)
+		{
+			acc[j] = 0;
+			if( (used[j] & ~seen[vi+j]) != 0 ) done = false;
+		}
+		if( done )
+		{
+			for(int j=0; j<w; ++j) next[vi+j] = 0;
+			continue;
+		}
+		for(int e=off[v]; e<off[v+1]; ++e)
+		{
+			final int ui = tar[e]*w;
+			for(int j=0; j<w; ++j) acc[j] |= visit[ui+j];
+		}
+		for(int j=0; j<w; ++j)
+		{
+			long bits = acc[j] & ~seen[vi+j] & used[j];
+			next[vi+j] = bits;
+			seen[vi+j] |= bits;
+			while( bits != 0 )
+			{
+				cnt[(j<<6)+Long.numberOfTrailingZeros(bits)]++;
+				bits &= bits-1;
+			}
+		}
+	}
+	synchronized(this)
+	{
+		for(int l=0; l<k; ++l) levelCount[l] += cnt[l];
+	}
+}
+
+}
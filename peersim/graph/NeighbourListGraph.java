@@ -25,27 +25,61 @@ import java.util.*;
 * No multiple edges are allowed. The implementation also supports the
 * growing of the graph. This is very useful when the number of nodes is
 * not known in advance or when we construct a graph reading a file.
+* <p>
+* The graph is stored in primitive arrays, so that large graphs can be
+* handled without the overhead of boxing. The neighbours of a node are
+* stored in an int array that grows geometrically. Up to {@value #SMALL}
+* neighbours the array is a plain list, and above that it is an open
+* addressing hash table, so edges can be added, removed and tested in
+* constant expected time even for nodes of very large degree. The objects
+* associated with the nodes are indexed by an open addressing hash table
+* as well.
 */
 public class NeighbourListGraph implements Graph, java.io.Serializable {
 
 // =================== private fields ============================
 // ===============================================================
 
-/** Contains the objects associated with the node indeces.*/
-private final ArrayList<Object> nodes;
+/**
+* Neighbour arrays of at most this length are lists, longer ones are hash
+* tables.
+*/
+private static final int SMALL = 16;
+
+/** Marks free slots in the hash tables of neighbours */
+private static final int FREE = -1;
+
+private static final int[] EMPTY = new int[0];
+
+/**
+* Contains the objects associated with the node indices. Null if the size
+* was specified at construction time.
+*/
+private Object[] nodes;
+
+/**
+* Hash table of the objects associated with nodes, using linear probing.
+* Slot k is empty if keyindex[k] is -1, otherwise it contains the object
+* of node keyindex[k]. Null if the size was specified at construction time.
+*/
+private int[] keyindex;
+
+/** The index of the node associated with null, or -1 */
+private int nullindex = -1;
 
 /**
-* Contains the indices of the nodes. The vector "nodes" contains this
-* information implicitly but this way we can find indexes in log time at
-* the cost of memory (node that the edge lists typically use much more memory
-* than this anyway). Note that the nodes vector is still necessary to
-* provide constant access to nodes based on indexes.
+* The neighbours of each node. If the length of the array is at most
+* {@value #SMALL}, the neighbours are the first {@link #degree} elements.
+* Otherwise the array is a hash table with linear probing, in which
+* free slots contain {@value #FREE}.
 */
-private final HashMap<Object,Integer> nodeindex;
+private int[][] neighbors;
+
+/** The degree of each node */
+private int[] degree;
 
-/** Contains sets of node indexes. If "nodes" is not null, indices are 
-* defined by "nodes", otherwise they correspond to 0,1,... */
-private final ArrayList<Set<Integer>> neighbors;
+/** The number of nodes */
+private int size;
 
 /** Indicates if the graph is directed. */
 private final boolean directed;
@@ -60,9 +94,12 @@ private final boolean directed;
 */
 public NeighbourListGraph( boolean directed ) {
 
-	nodes = new ArrayList<Object>(1000);	
-	neighbors = new ArrayList<Set<Integer>>(1000);
-	nodeindex = new HashMap<Object,Integer>(1000);
+	nodes = new Object[1024];
+	keyindex = new int[2048];
+	Arrays.fill(keyindex,-1);
+	neighbors = new int[1024][];
+	degree = new int[1024];
+	size = 0;
 	this.directed = directed;
 }
 
@@ -77,9 +114,11 @@ public NeighbourListGraph( boolean directed ) {
 public NeighbourListGraph( int size, boolean directed ) {
 
 	nodes = null;
-	neighbors = new ArrayList<Set<Integer>>(size);
-	for(int i=0; i<size; ++i) neighbors.add(new HashSet<Integer>());
-	nodeindex = null;
+	keyindex = null;
+	neighbors = new int[size][];
+	Arrays.fill(neighbors,EMPTY);
+	degree = new int[size];
+	this.size = size;
 	this.directed = directed;
 }
 
@@ -95,15 +134,27 @@ public NeighbourListGraph( int size, boolean directed ) {
 */
 public int addNode( Object o ) {
 
-	Integer index = nodeindex.get(o);
-	if( index == null )
+	if( nodes == null ) throw new NullPointerException(
+		"the size of the graph was specified at construction time");
+	if( o == null )
 	{
-		index = nodes.size();
-		nodes.add(o);
-		neighbors.add(new HashSet<Integer>());
-		nodeindex.put(o,index);
+		if( nullindex < 0 ) nullindex = newNode(null);
+		return nullindex;
 	}
-
+	int k = slot(o,keyindex);
+	if( keyindex[k] >= 0 ) return keyindex[k];
+	final int index = newNode(o);
+	if( 2*(size+1) > keyindex.length )
+	{
+		// rehash
+		final int[] old = keyindex;
+		keyindex = new int[2*old.length];
+		Arrays.fill(keyindex,-1);
+		for(int x:old)
+			if( x >= 0 ) keyindex[slot(nodes[x],keyindex)] = x;
+		k = slot(o,keyindex);
+	}
+	keyindex[k] = index;
 	return index;
 }
 
@@ -114,8 +165,10 @@ public int addNode( Object o ) {
 
 public boolean setEdge( int i, int j ) {
 	
-	boolean ret = neighbors.get(i).add(j);
-	if( ret && !directed ) neighbors.get(j).add(i);
+	check(i);
+	check(j);
+	boolean ret = add(i,j);
+	if( ret && !directed ) add(j,i);
 	return ret;
 }
 
@@ -123,8 +176,10 @@ public boolean setEdge( int i, int j ) {
 
 public boolean clearEdge( int i, int j ) {
 	
-	boolean ret = neighbors.get(i).remove(j);
-	if( ret && !directed ) neighbors.get(j).remove(i);
+	check(i);
+	check(j);
+	boolean ret = remove(i,j);
+	if( ret && !directed ) remove(j,i);
 	return ret;
 }
 
@@ -132,21 +187,64 @@ public boolean clearEdge( int i, int j ) {
 
 public boolean isEdge(int i, int j) {
 	
-	return neighbors.get(i).contains(j);
+	check(i);
+	final int[] a = neighbors[i];
+	if( a.length <= SMALL )
+	{
+		for(int k=0; k<degree[i]; ++k) if( a[k] == j ) return true;
+		return false;
+	}
+	return a[find(a,j)] == j;
 }
 
 // ---------------------------------------------------------------
 
-public Collection<Integer> getNeighbours(int i) {
+/**
+* Returns an unmodifiable view of the neighbours of the node.
+* Elements are boxed on access. The view reflects later changes, but it
+* must not be iterated while the neighbours of the node are modified.
+*/
+public Collection<Integer> getNeighbours(final int i) {
 	
-	return Collections.unmodifiableCollection(neighbors.get(i));
+	check(i);
+	return new AbstractCollection<Integer>() {
+		public int size() { return degree[i]; }
+		public boolean contains( Object o ) {
+			return o instanceof Integer && isEdge(i,(Integer)o);
+		}
+		public Iterator<Integer> iterator() {
+			final int[] a = neighbors[i];
+			final int len = (a.length <= SMALL ? degree[i] : a.length);
+			return new Iterator<Integer>() {
+				private int k = skip(0);
+				private int skip( int k ) {
+					while( k < len && a[k] == FREE ) ++k;
+					return k;
+				}
+				public boolean hasNext() { return k < len; }
+				public Integer next() {
+					if( k >= len ) throw new NoSuchElementException();
+					final int x = a[k];
+					k = skip(k+1);
+					return x;
+				}
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+	};
 }
 
 // ---------------------------------------------------------------
 
 /** If the graph was gradually grown using {@link #addNode}, returns the
 * object associated with the node, otherwise null */
-public Object getNode(int i) { return (nodes==null?null:nodes.get(i)); }
+public Object getNode(int i) {
+
+	check(i);
+	return (nodes==null?null:nodes[i]);
+}
 	
 // ---------------------------------------------------------------
 
@@ -157,7 +255,7 @@ public Object getEdge(int i, int j) { return null; }
 
 // ---------------------------------------------------------------
 
-public int size() { return neighbors.size(); }
+public int size() { return size; }
 
 // --------------------------------------------------------------------
 	
@@ -165,9 +263,170 @@ public boolean directed() { return directed; }
 
 // --------------------------------------------------------------------
 
-public int degree(int i) { return neighbors.get(i).size(); }
+public int degree(int i) {
+
+	check(i);
+	return degree[i];
+}
+
+
+// =================== private methods ============================
+// ================================================================
+
+
+/**
+* Throws the same exception as accessing a list of the given size
+* at index i would.
+*/
+private void check( int i ) {
+
+	if( i < 0 || i >= size ) throw new IndexOutOfBoundsException(
+		"Index: "+i+", Size: "+size);
+}
+
+// ---------------------------------------------------------------
+
+/** Adds a node associated with o without indexing o. */
+private int newNode( Object o ) {
+
+	if( size == nodes.length )
+	{
+		final int len = 2*size;
+		nodes = Arrays.copyOf(nodes,len);
+		neighbors = Arrays.copyOf(neighbors,len);
+		degree = Arrays.copyOf(degree,len);
+	}
+	nodes[size] = o;
+	neighbors[size] = EMPTY;
+	degree[size] = 0;
+	return size++;
+}
+
+// ---------------------------------------------------------------
+
+/**
+* Returns the slot of the non-null object o in the given table of node
+* indexes: either the slot that contains it, or the empty slot where it
+* should be inserted.
+*/
+private int slot( Object o, int[] table ) {
+
+	final int mask = table.length-1;
+	for(int k=hash(o.hashCode(),table.length);; k=(k+1)&mask)
+		if( table[k] < 0 || o.equals(nodes[table[k]]) ) return k;
+}
+
+// ---------------------------------------------------------------
+
+/**
+* Multiplicative hashing: returns the highest bits of x times the golden
+* ratio, as many as needed for a table of the given length, which is a
+* power of two larger than 1.
+*/
+private static int hash( int x, int len ) {
+
+	return (x*0x9E3779B9) >>> Integer.numberOfLeadingZeros(len-1);
+}
+
+// ---------------------------------------------------------------
+
+/** Returns the slot of x in the hash table a or the free slot to use. */
+private static int find( int[] a, int x ) {
+
+	final int mask = a.length-1;
+	for(int k=hash(x,a.length);; k=(k+1)&mask)
+		if( a[k] == x || a[k] == FREE ) return k;
+}
+
+// ---------------------------------------------------------------
+
+/** Adds j to the neighbours of i if it is not there yet. */
+private boolean add( int i, int j ) {
+
+	int[] a = neighbors[i];
+	final int d = degree[i];
+	if( a.length <= SMALL )
+	{
+		for(int k=0; k<d; ++k) if( a[k] == j ) return false;
+		if( d < a.length )
+		{
+			a[d] = j;
+			degree[i]++;
+			return true;
+		}
+		if( a.length < SMALL )
+		{
+			neighbors[i] = a = Arrays.copyOf(a,Math.max(2,2*a.length));
+			a[d] = j;
+			degree[i]++;
+			return true;
+		}
+		neighbors[i] = a = rehash(a,d,4*SMALL);
+	}
+	else if( 2*(d+1) > a.length )
+	{
+		final int k = find(a,j);
+		if( a[k] == j ) return false;
+		neighbors[i] = a = rehash(a,a.length,2*a.length);
+	}
+	final int k = find(a,j);
+	if( a[k] == j ) return false;
+	a[k] = j;
+	degree[i]++;
+	return true;
+}
+
+// ---------------------------------------------------------------
+
+/**
+* Returns a hash table of the given capacity containing the non-free
+* elements of a from index 0 to len.
+*/
+private static int[] rehash( int[] a, int len, int capacity ) {
+
+	final int[] t = new int[capacity];
+	Arrays.fill(t,FREE);
+	for(int k=0; k<len; ++k)
+		if( a[k] != FREE ) t[find(t,a[k])] = a[k];
+	return t;
 }
 
+// ---------------------------------------------------------------
 
+/** Removes j from the neighbours of i if it is there. */
+private boolean remove( int i, int j ) {
 
+	final int[] a = neighbors[i];
+	final int d = degree[i];
+	if( a.length <= SMALL )
+	{
+		for(int k=0; k<d; ++k)
+		{
+			if( a[k] != j ) continue;
+			// keep the order of the others
+			System.arraycopy(a,k+1,a,k,d-k-1);
+			degree[i]--;
+			return true;
+		}
+		return false;
+	}
+	int k = find(a,j);
+	if( a[k] != j ) return false;
+	// backward shift deletion
+	final int mask = a.length-1;
+	for(int l=(k+1)&mask; a[l] != FREE; l=(l+1)&mask)
+	{
+		final int home = hash(a[l],a.length);
+		// move a[l] to k if k is cyclically in [home,l)
+		if( ((l-home)&mask) >= ((l-k)&mask) )
+		{
+			a[k] = a[l];
+			k = l;
+		}
+	}
+	a[k] = FREE;
+	degree[i]--;
+	return true;
+}
 
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.graph;
+
+/**
+* Orderings of the nodes of a graph that place linked nodes close to each
+* other. If the nodes are stored in this order, then accessing the
+* neighbours of a node tends to access nearby memory.
+* All methods return an array <code>order</code> in which
+* <code>order[k]</code> is the node that should be at position k.
+* The graph should be undirected (for example a {@link CSRGraph} of a
+* {@link ConstUndirGraph}); in the case of a directed graph only the
+* outgoing edges are followed.
+* Graphs that are not connected are ordered component by component.
+*/
+public class NodeOrdering {
+
+/** No instances */
+private NodeOrdering() {}
+
+
+// ======================= public methods ============================
+// ===================================================================
+
+
+/**
+* Returns the breadth-first search order, starting each component from
+* its lowest index node, visiting neighbours in the order of the
+* neighbour lists.
+*/
+public static int[] bfs( CSRGraph g ) {
+
+	final int n = g.size();
+	final int[] order = new int[n];
+	final boolean[] seen = new boolean[n];
+	int k = 0;
+	for(int s=0; s<n; ++s)
+	{
+		if( seen[s] ) continue;
+		k = bfs(g,s,order,k,seen,null,0,false);
+	}
+	return order;
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Returns the reverse Cuthill-McKee order. Each component is searched
+* breadth-first from a pseudo-peripheral node, visiting the neighbours of
+* each node in increasing order of degree, and the resulting order is
+* reversed. This order tends to minimize the bandwidth of the adjacency
+* matrix, that is, the largest index difference between linked nodes.
+*/
+public static int[] reverseCuthillMcKee( CSRGraph g ) {
+
+	final int n = g.size();
+	final int[] order = new int[n];
+	final boolean[] seen = new boolean[n];
+	final int[] tmp = new int[n];
+	final boolean[] tmpSeen = new boolean[n];
+	int k = 0;
+	for(int s=0; s<n; ++s)
+	{
+		if( seen[s] ) continue;
+		final int start = peripheral(g,s,null,0,tmp,tmpSeen);
+		k = bfs(g,start,order,k,seen,null,0,true);
+	}
+	for(int i=0, j=n-1; i<j; ++i, --j)
+	{
+		final int t = order[i];
+		order[i] = order[j];
+		order[j] = t;
+	}
+	return order;
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Returns an order based on recursive bisection. The nodes are split in
+* two halves: the first half of a breadth-first search order from a
+* pseudo-peripheral node, and the rest. The halves are placed one
+* after the other and are split recursively the same way, until they have
+* at most <code>leaf</code> nodes. Nodes that are linked tend to stay in
+* the same part, so this order keeps nearby nodes in nearby memory at
+* all scales.
+* @param leaf parts of at most this size are not split further
+*/
+public static int[] bisection( CSRGraph g, int leaf ) {
+
+	final int n = g.size();
+	leaf = Math.max(1,leaf);
+	final int[] order = bfs(g);
+	final int[] part = new int[n]; // the part each node is in
+	final int[] buf = new int[n];
+	final boolean[] seen = new boolean[n];
+	final int[] tmp = new int[n];
+	final boolean[] tmpSeen = new boolean[n];
+	int label = 0;
+	// parts are ranges of order, stored as (from,to) pairs in st
+	int[] st = new int[128];
+	int sp = 0;
+	st[sp++] = 0;
+	st[sp++] = n;
+	while( sp > 0 )
+	{
+		final int to = st[--sp];
+		final int from = st[--sp];
+		if( to-from <= leaf ) continue;
+		label++;
+		for(int i=from; i<to; ++i) part[order[i]] = label;
+
+		// breadth-first search within the part; restarts on components
+		int k = from;
+		for(int i=from; i<to; ++i)
+		{
+			final int s = order[i];
+			if( seen[s] ) continue;
+			final int start = peripheral(g,s,part,label,tmp,tmpSeen);
+			k = bfs(g,start,buf,k,seen,part,label,false);
+		}
+		System.arraycopy(buf,from,order,from,to-from);
+		for(int i=from; i<to; ++i) seen[order[i]] = false;
+
+		final int mid = (from+to)>>>1;
+		if( sp+4 > st.length )
+		{
+			final int[] ns = new int[2*st.length];
+			System.arraycopy(st,0,ns,0,sp);
+			st = ns;
+		}
+		st[sp++] = mid;
+		st[sp++] = to;
+		st[sp++] = from;
+		st[sp++] = mid;
+	}
+	return order;
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Returns an order in which the nodes of each part of a partition are
+* placed together, the parts in increasing order. Within a part the
+* nodes are in breadth-first search order (see {@link #bfs}).
+* @param part the part of each node, see
+* {@link GraphPartitioner#partition}
+*/
+public static int[] byPartition( CSRGraph g, int[] part ) {
+
+	final int n = g.size();
+	int k = 0;
+	for(int i=0; i<n; ++i) k = Math.max(k,part[i]+1);
+	final int[] start = new int[k+1];
+	for(int i=0; i<n; ++i) start[part[i]+1]++;
+	for(int p=0; p<k; ++p) start[p+1] += start[p];
+	final int[] order = new int[n];
+	for(int v:bfs(g)) order[start[part[v]]++] = v;
+	return order;
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Returns the average and the maximal absolute index difference over the
+* edges of the graph, if the nodes are placed according to the given
+* order. If order is null, the current indexes are used. These are simple
+* proxies for the number of cache misses when accessing the neighbours
+* of the nodes in index order.
+* @return an array containing the average and the maximum, or NaN and 0 if
+* the graph has no edges
+*/
+public static double[] indexGap( CSRGraph g, int[] order ) {
+
+	final int n = g.size();
+	final int[] pos = new int[n];
+	for(int i=0; i<n; ++i) pos[order==null ? i : order[i]] = i;
+	long sum = 0;
+	int max = 0;
+	for(int i=0; i<n; ++i)
+	for(int e=g.offsets[i]; e<g.offsets[i+1]; ++e)
+	{
+		final int gap = Math.abs(pos[i]-pos[g.targets[e]]);
+		sum += gap;
+		if( gap > max ) max = gap;
+	}
+	final int m = g.edges();
+	return new double[] { (m == 0 ? Double.NaN : (double)sum/m), max };
+}
+
+
+// ======================= private methods ===========================
+// ===================================================================
+
+
+/**
+* Breadth-first search from s, appending the visited nodes to order from
+* position k, and marking them in seen. If part is not null, only nodes
+* with the given label in part are visited. If byDegree is true,
+* the neighbours of each node are visited in increasing order of degree.
+* @return the position after the last visited node
+*/
+private static int bfs( CSRGraph g, int s, int[] order, int k,
+		boolean[] seen, int[] part, int label, boolean byDegree ) {
+
+	int head = k;
+	order[k++] = s;
+	seen[s] = true;
+	while( head < k )
+	{
+		final int v = order[head++];
+		final int first = k;
+		for(int e=g.offsets[v]; e<g.offsets[v+1]; ++e)
+		{
+			final int u = g.targets[e];
+			if( seen[u] || (part != null && part[u] != label) ) continue;
+			seen[u] = true;
+			order[k++] = u;
+		}
+		if( byDegree )
+		{
+			// insertion sort, neighbour lists are usually short
+			for(int i=first+1; i<k; ++i)
+			{
+				final int u = order[i];
+				final int d = g.degree(u);
+				int j = i-1;
+				while( j >= first && g.degree(order[j]) > d )
+				{
+					order[j+1] = order[j];
+					j--;
+				}
+				order[j+1] = u;
+			}
+		}
+	}
+	return k;
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Finds a pseudo-peripheral node in the component of s (restricted to the
+* given label in part if part is not null), by repeated breadth-first
+* searches from a node of minimal degree in the last level of the previous
+* search, until the eccentricity stops growing.
+* @param tmp working array of size n
+* @param seen working array of size n, all false. It is
+* all false when the method returns.
+*/
+private static int peripheral( CSRGraph g, int s, int[] part, int label,
+		int[] tmp, boolean[] seen ) {
+
+	int ecc = -1;
+	for(int round=0; round<8; ++round)
+	{
+		int k = 0;
+		tmp[k++] = s;
+		seen[s] = true;
+		int levelStart = 0, levelEnd = 1, level = 0;
+		while( true )
+		{
+			for(int head=levelStart; head<levelEnd; ++head)
+			{
+				final int v = tmp[head];
+				for(int e=g.offsets[v]; e<g.offsets[v+1]; ++e)
+				{
+					final int u = g.targets[e];
+					if( seen[u] || (part != null && part[u] != label) )
+						continue;
+					seen[u] = true;
+					tmp[k++] = u;
+				}
+			}
+			if( k == levelEnd ) break;
+			levelStart = levelEnd;
+			levelEnd = k;
+			level++;
+		}
+		for(int i=0; i<k; ++i) seen[tmp[i]] = false;
+		if( level <= ecc ) break;
+		ecc = level;
+		int last = tmp[levelStart];
+		for(int i=levelStart+1; i<levelEnd; ++i)
+			if( g.degree(tmp[i]) < g.degree(last) ) last = tmp[i];
+		s = last;
+	}
+	return s;
+}
+
+}
@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.graph;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import peersim.util.RangeTask;
+
+/**
+* Parallel breadth-first search over a {@link CSRGraph}, producing the same
+* distances as {@link GraphAlgorithms#dist}.
+* It implements the direction-optimizing algorithm of Beamer et al.
+* The frontier is stored as a bitset. While the frontier is small, it is
+* expanded top-down: each frontier node claims its unvisited neighbours.
+* When the frontier becomes large, the search switches to bottom-up mode
+* in which each unvisited node looks for a parent in the frontier among its
+* incoming neighbours, and can stop at the first one it finds. Each
+* level is processed in parallel using {@link RangeTask}.
+* <p>
+* An instance can be used for many searches over the same graph, but
+* it must not be used by several threads at the same time.
+*/
+public class ParallelBFS {
+
+
+// =================== constants ======================================
+// ====================================================================
+
+
+/**
+* Switch to bottom-up if the number of edges to check from the frontier is
+* larger than the number of unexplored edges divided by this value.
+*/
+private static final int ALPHA = 14;
+
+/**
+* Switch back to top-down if the size of the frontier is smaller than the
+* number of nodes divided by this value.
+*/
+private static final int BETA = 24;
+
+/** Number of bitset words processed by one subtask */
+private static final int GRAIN = 256;
+
+
+// =================== public fields ==================================
+// ====================================================================
+
+
+/**
+* Output of {@link #dist}: <code>d[j]</code> is the length of the
+* shortest path to j, or -1 if j is not reachable.
+*/
+public final int[] d;
+
+
+// =================== private fields =================================
+// ====================================================================
+
+
+private final CSRGraph g;
+
+/** incoming edges, used in bottom-up steps */
+private final CSRGraph gt;
+
+private final int n;
+
+private final int words;
+
+private final AtomicLongArray visited;
+
+private final AtomicLongArray next;
+
+private final long[] frontier;
+
+/** current level during a search */
+private int level;
+
+/** number of nodes added to the next frontier in the current level */
+private final AtomicLong nf = new AtomicLong();
+
+/** sum of the degrees of the nodes added to the next frontier */
+private final AtomicLong mf = new AtomicLong();
+
+private final RangeTask init = new RangeTask(GRAIN*64) {
+	protected void process( int from, int to ) {
+		for(int i=from; i<to; ++i) d[i]=-1;
+	}
+};
+
+private final RangeTask topDown = new RangeTask(GRAIN) {
+	protected void process( int from, int to ) { topDown(from,to); }
+};
+
+private final RangeTask bottomUp = new RangeTask(GRAIN) {
+	protected void process( int from, int to ) { bottomUp(from,to); }
+};
+
+
+// =================== initialization =================================
+// ====================================================================
+
+
+/**
+* @param g the graph to search. If it is directed, its transpose
+* is computed as well (see {@link CSRGraph#transpose}).
+*/
+public ParallelBFS( CSRGraph g ) {
+
+	this.g = g;
+	this.gt = (g.directed() ? g.transpose() : g);
+	n = g.size();
+	words = (n+63)>>>6;
+	d = new int[n];
+	visited = new AtomicLongArray(words);
+	next = new AtomicLongArray(words);
+	frontier = new long[words];
+}
+
+
+// =================== public methods =================================
+// ====================================================================
+
+
+/**
+* In <code>{@link #d}[j]</code> returns the length of the shortest path
+* between i and j. The value -1 indicates that j is not accessible from i.
+*/
+public void dist( int i ) {
+
+	init.run(0,n);
+	for(int w=0; w<words; ++w)
+	{
+		visited.set(w,0);
+		next.set(w,0);
+		frontier[w]=0;
+	}
+	d[i] = 0;
+	visited.set(i>>>6, 1L<<i);
+	frontier[i>>>6] = 1L<<i;
+
+	long frontierSize = 1;
+	long frontierEdges = g.degree(i);
+	long unexplored = g.edges()-frontierEdges;
+	boolean bu = false;
+	level = 0;
+	while( frontierSize > 0 )
+	{
+		if( !bu && frontierEdges > unexplored/ALPHA ) bu = true;
+		else if( bu && frontierSize < n/BETA ) bu = false;
+
+		nf.set(0);
+		mf.set(0);
+		if( bu ) bottomUp.run(0,words);
+		else topDown.run(0,words);
+
+		frontierSize = nf.get();
+		frontierEdges = mf.get();
+		unexplored -= frontierEdges;
+		for(int w=0; w<words; ++w)
+		{
+			frontier[w] = next.get(w);
+			next.set(w,0);
+		}
+		level++;
+	}
+}
+
+// --------------------------------------------------------------------
+
+/**
+* Performs flooding from given node, with the same result as
+* {@link GraphAlgorithms#flooding}.
+* As a result <code>b[i]</code> contains the number of nodes
+* reached in exactly i steps, and always <code>b[0]=1</code>.
+* If the maximal distance from k is lower than <code>b.length</code>,
+* then the remaining elements of b are zero.
+*/
+public void flooding( int[] b, int k ) {
+
+	dist(k);
+
+	for(int i=0; i<b.length; ++i) b[i]=0;
+	for(int i=0; i<n; ++i)
+	{
+		if( d[i] >= 0 && d[i] < b.length ) b[d[i]]++;
+	}
+}
+
+
+// =================== private methods ================================
+// ====================================================================
+
+
+/** Expands the frontier nodes in the given range of words. */
+private void topDown( int from, int to ) {
+
+	final int[] off = g.offsets;
+	final int[] tar = g.targets;
+	final int nextLevel = level+1;
+	long cnt = 0, edges = 0;
+	for(int w=from; w<to; ++w)
+	{
+		long bits = frontier[w];
+		while( bits != 0 )
+		{
+			final int u = (w<<6)+Long.numberOfTrailingZeros(bits);
+			bits &= bits-1;
+			for(int e=off[u]; e<off[u+1]; ++e)
+			{
+				final int v = tar[e];
+				final int vw = v>>>6;
+				final long mask = 1L<<v;
+				if( (visited.get(vw)&mask) != 0 ) continue;
+				if( setBit(visited,vw,mask) )
+				{
+					d[v] = nextLevel;
+					setBit(next,vw,mask);
+					cnt++;
+					edges += off[v+1]-off[v];
+				}
+			}
+		}
+	}
+	nf.addAndGet(cnt);
+	mf.addAndGet(edges);
+}
+
+// --------------------------------------------------------------------
+
+/**
+* Looks for parents in the frontier for the unvisited nodes in the given
+* range of words. Only this call writes these words of the bitsets.
+*/
+private void bottomUp( int from, int to ) {
+
+	final int[] off = gt.offsets;
+	final int[] tar = gt.targets;
+	final int nextLevel = level+1;
+	long cnt = 0, edges = 0;
+	for(int w=from; w<to; ++w)
+	{
+		final long vis = visited.get(w);
+		long todo = ~vis;
+		if( w == words-1 && (n&63) != 0 ) todo &= (1L<<n)-1;
+		long found = 0;
+		while( todo != 0 )
+		{
+			final int v = (w<<6)+Long.numberOfTrailingZeros(todo);
+			final long mask = todo & -todo;
+			todo &= todo-1;
+			for(int e=off[v]; e<off[v+1]; ++e)
+			{
+				final int u = tar[e];
+				if( (frontier[u>>>6] & (1L<<u)) != 0 )
+				{
+					d[v] = nextLevel;
+					found |= mask;
+					cnt++;
+					edges += g.degree(v);
+					break;
+				}
+			}
+		}
+		if( found != 0 )
+		{
+			visited.set(w,vis|found);
+			next.set(w,found);
+		}
+	}
+	nf.addAndGet(cnt);
+	mf.addAndGet(edges);
+}
+
+// --------------------------------------------------------------------
+
+/** Atomically sets the bit, returns true if it was not set before. */
+private static boolean setBit( AtomicLongArray a, int w, long mask ) {
+
+	while( true )
+	{
+		final long old = a.get(w);
+		if( (old&mask) != 0 ) return false;
+		if( a.compareAndSet(w,old,old|mask) ) return true;
+	}
+}
+
+}
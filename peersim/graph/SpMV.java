@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.graph;
+
+import peersim.util.RangeTask;
+
+/**
+* Parallel sparse matrix-vector multiplication with the adjacency matrix of
+* a {@link CSRGraph}. The adjacency matrix A has
+* <code>A[i][j]=1</code> if there is an edge from i to j.
+* Both A and its transpose can be applied; each row of the result is
+* computed by one thread (pull style), using the transpose of the graph for
+* the transpose of the matrix, so no synchronization is needed.
+* Rows are processed in parallel using {@link RangeTask}.
+* <p>
+* A few vector operations are provided as well. Their results do not
+* depend on the number of threads, because partial sums are computed over
+* fixed blocks and added up in order.
+* <p>
+* An instance must not be used by several threads at the same time.
+*/
+public class SpMV {
+
+
+// =================== constants ======================================
+// ====================================================================
+
+
+/** Number of rows processed by one subtask */
+private static final int GRAIN = 4096;
+
+
+// =================== private fields =================================
+// ====================================================================
+
+
+private final CSRGraph g;
+
+private final int n;
+
+/** Operands of the current operation, used by the tasks */
+private double[] x, y;
+
+/** Rows of the current operation */
+private CSRGraph rows;
+
+/** Partial sums of {@link #dot} over blocks of {@link #GRAIN} elements */
+private final double[] partial;
+
+private final RangeTask mult = new RangeTask(GRAIN) {
+	protected void process( int from, int to ) {
+		final int[] off = rows.offsets;
+		final int[] tar = rows.targets;
+		for(int i=from; i<to; ++i)
+		{
+			double s = 0;
+			for(int e=off[i]; e<off[i+1]; ++e) s += x[tar[e]];
+			y[i] = s;
+		}
+	}
+};
+
+private final RangeTask dot = new RangeTask(1) {
+	protected void process( int from, int to ) {
+		for(int b=from; b<to; ++b)
+		{
+			final int end = Math.min(n,(b+1)*GRAIN);
+			double s = 0;
+			for(int i=b*GRAIN; i<end; ++i) s += x[i]*y[i];
+			partial[b] = s;
+		}
+	}
+};
+
+
+// =================== initialization =================================
+// ====================================================================
+
+
+/**
+* @param g the graph. If it is directed, its transpose is computed as well
+* when first needed (see {@link CSRGraph#transpose}).
+*/
+public SpMV( CSRGraph g ) {
+
+	this.g = g;
+	n = g.size();
+	partial = new double[(n+GRAIN-1)/GRAIN];
+}
+
+
+// =================== public methods =================================
+// ====================================================================
+
+
+/** Returns the graph of the matrix. */
+public CSRGraph graph() { return g; }
+
+// --------------------------------------------------------------------
+
+/**
+* Computes y = A x, that is, <code>y[i]</code> is the sum of
+* <code>x[j]</code> over the neighbours j of i. The arrays must be
+* different and have a length of at least the size of the graph.
+*/
+public void multiply( double[] x, double[] y ) { run(g,x,y); }
+
+// --------------------------------------------------------------------
+
+/**
+* Computes y = A<sup>T</sup> x, that is, <code>y[i]</code> is the sum of
+* <code>x[j]</code> over the nodes j that have an edge to i.
+* The arrays must be different and have a length of at least the size of
+* the graph.
+*/
+public void multiplyTranspose( double[] x, double[] y ) {
+
+	run(g.transpose(),x,y);
+}
+
+// --------------------------------------------------------------------
+
+/** Returns the scalar product of the first n elements of a and b. */
+public double dot( double[] a, double[] b ) {
+
+	x = a;
+	y = b;
+	dot.run(0,partial.length);
+	x = y = null;
+	double s = 0;
+	for(double p:partial) s += p;
+	return s;
+}
+
+// --------------------------------------------------------------------
+
+/** Returns the euclidean norm of the first n elements of a. */
+public double norm( double[] a ) { return Math.sqrt(dot(a,a)); }
+
+
+// =================== private methods ================================
+// ====================================================================
+
+
+private void run( CSRGraph rows, double[] x, double[] y ) {
+
+	if( x == y ) throw new IllegalArgumentException(
+		"input and output must be different");
+	this.rows = rows;
+	this.x = x;
+	this.y = y;
+	mult.run(0,n);
+	this.rows = null;
+	this.x = this.y = null;
+}
+
+}
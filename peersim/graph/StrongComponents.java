@@ -0,0 +1,407 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.graph;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import peersim.util.RangeTask;
+
+/**
+* Calculates the strongly connected clusters of a {@link CSRGraph}.
+* Two algorithms are provided. {@link #tarjan} is an iterative version of
+* Tarjan's algorithm, which is sequential but works on the arrays of the
+* graph directly. {@link #forwardBackward} is a parallel algorithm for large
+* graphs. Both return the same clusters; the cluster indexes are different.
+* <p>
+* The implementation is NOT thread safe, the parallel algorithm uses its
+* own threads.
+*/
+public class StrongComponents {
+
+
+// =================== constants ======================================
+// ====================================================================
+
+
+/**
+* Partitions smaller than this are processed by Tarjan's algorithm in
+* {@link #forwardBackward}.
+*/
+private static final int SMALL = 2048;
+
+
+// =================== public fields ==================================
+// ====================================================================
+
+
+/**
+* Output of the algorithms: each node has the root of the strongly
+* connected cluster it belongs to. The root is a member of the cluster.
+*/
+public int[] root = null;
+
+
+// =================== private fields =================================
+// ====================================================================
+
+
+private CSRGraph g;
+
+/** Incoming edges of {@link #g} */
+private CSRGraph gt;
+
+/**
+* The partition label of each node in {@link #forwardBackward}.
+* Only nodes that have the same label can be in the same cluster.
+* Nodes of finished clusters have label -1.
+*/
+private int[] part;
+
+/** Visiting order in Tarjan's algorithm, 0 if not visited */
+private int[] index;
+
+/** Lowest index reachable in Tarjan's algorithm */
+private int[] low;
+
+private final AtomicInteger labels = new AtomicInteger();
+
+
+// =================== public methods =================================
+// ====================================================================
+
+
+/**
+* Returns the strongly connected cluster roots with size as a value,
+* using an iterative implementation of Tarjan's algorithm.
+* Cluster membership can be seen from the content of the array
+* {@link #root}. The root of a cluster is the first node of the cluster
+* visited by the depth-first search, just like in
+* {@link GraphAlgorithms#tarjan}, so the two give the same result if
+* the order of neighbours is the same.
+*/
+public Map<Integer,Integer> tarjan( CSRGraph g ) {
+
+	init(g);
+	final int n = g.size();
+	int[] all = new int[n];
+	for(int i=0; i<n; ++i) all[i]=i;
+	tarjan(all,0);
+	return sizes();
+}
+
+// --------------------------------------------------------------------
+
+/**
+* Returns the strongly connected cluster roots with size as a value,
+* using a parallel forward-backward algorithm.
+* Cluster membership can be seen from the content of the array
+* {@link #root}.
+* <p>
+* First, nodes that have no incoming or no outgoing edges are removed
+* repeatedly (trimming), each of them forms a cluster on its own.
+* The rest of the nodes form a partition, which is processed as follows.
+* A pivot node is selected, and the nodes reachable from the pivot
+* (forward set) and the nodes from which the pivot can be reached (backward
+* set) are calculated within the partition. Their intersection is a
+* strongly connected cluster, and all other clusters are contained
+* entirely in either the forward set, the backward set, or in the
+* remaining nodes, so these three sets can be processed independently.
+* All the partitions of the same generation are processed in parallel,
+* and partitions that are small are processed by Tarjan's algorithm.
+*/
+public Map<Integer,Integer> forwardBackward( CSRGraph g ) {
+
+	init(g);
+	final int n = g.size();
+	gt = g.transpose();
+	part = new int[n];
+	labels.set(1);
+
+	trim();
+
+	int cnt = 0;
+	for(int i=0; i<n; ++i) if( part[i]==0 ) cnt++;
+	int[] rest = new int[cnt];
+	cnt = 0;
+	for(int i=0; i<n; ++i) if( part[i]==0 ) rest[cnt++]=i;
+
+	List<int[]> current = new ArrayList<int[]>();
+	if( rest.length > 0 ) current.add(rest);
+	while( !current.isEmpty() )
+	{
+		final List<int[]> work = current;
+		final List<int[]> produced = new ArrayList<int[]>();
+		new RangeTask(1) {
+			protected void process( int from, int to ) {
+				for(int i=from; i<to; ++i)
+				{
+					List<int[]> res = split(work.get(i));
+					synchronized(produced) { produced.addAll(res); }
+				}
+			}
+		}.run(0,work.size());
+		current = produced;
+	}
+
+	part = null;
+	return sizes();
+}
+
+
+// =================== private methods ================================
+// ====================================================================
+
+
+private void init( CSRGraph g ) {
+
+	this.g = g;
+	final int n = g.size();
+	if( root==null || root.length<n ) root = new int[n];
+	index = new int[n];
+	low = new int[n];
+}
+
+// --------------------------------------------------------------------
+
+/** Counts the cluster sizes based on {@link #root}. */
+private Map<Integer,Integer> sizes() {
+
+	final int n = g.size();
+	final int[] cnt = new int[n];
+	for(int i=0; i<n; ++i) cnt[root[i]]++;
+	Map<Integer,Integer> m = new HashMap<Integer,Integer>();
+	for(int i=0; i<n; ++i) if( cnt[i]>0 ) m.put(i,cnt[i]);
+	index = null;
+	low = null;
+	return m;
+}
+
+// --------------------------------------------------------------------
+
+/**
+* Tarjan's algorithm restricted to the given nodes, which all have the
+* given label in {@link #part} (if {@link #part} is not null). Edges to
+* nodes with a different label are ignored. Different calls must work on
+* disjoint sets of nodes, and then they can run in parallel.
+*/
+private void tarjan( int[] nodes, int label ) {
+
+	final int[] off = g.offsets;
+	final int[] tar = g.targets;
+	final int m = nodes.length;
+	final int[] stack = new int[m];
+	final int[] path = new int[m];
+	final int[] pos = new int[m]; // next edge to check on the path
+	final boolean[] onStack = new boolean[m];
+	// local indexes are stored in index[] and low[], counting from 1
+	int counter = 0, sp = 0, pp = 0;
+
+	for(int s=0; s<m; ++s)
+	{
+		if( index[nodes[s]] != 0 ) continue;
+		index[nodes[s]] = low[nodes[s]] = ++counter;
+		stack[sp++] = nodes[s];
+		onStack[counter-1] = true;
+		path[pp] = nodes[s];
+		pos[pp++] = off[nodes[s]];
+		while( pp > 0 )
+		{
+			final int v = path[pp-1];
+			if( pos[pp-1] < off[v+1] )
+			{
+				final int u = tar[pos[pp-1]++];
+				if( part != null && part[u] != label ) continue;
+				if( index[u] == 0 )
+				{
+					index[u] = low[u] = ++counter;
+					stack[sp++] = u;
+					onStack[counter-1] = true;
+					path[pp] = u;
+					pos[pp++] = off[u];
+				}
+				else if( onStack[index[u]-1] && index[u] < low[v] )
+					low[v] = index[u];
+				continue;
+			}
+			pp--;
+			if( low[v] == index[v] )
+			{
+				int u;
+				do
+				{
+					u = stack[--sp];
+					onStack[index[u]-1] = false;
+					root[u] = v;
+					if( part != null ) part[u] = -1;
+				}
+				while( u != v );
+			}
+			if( pp > 0 && low[v] < low[path[pp-1]] )
+				low[path[pp-1]] = low[v];
+		}
+	}
+}
+
+// --------------------------------------------------------------------
+
+/**
+* Removes nodes that have no incoming or no outgoing edges within the
+* remaining nodes, repeatedly. These nodes are clusters in themselves.
+*/
+private void trim() {
+
+	final int n = g.size();
+	final int[] in = new int[n];
+	final int[] out = new int[n];
+	final int[] queue = new int[n];
+	int qh = 0, qt = 0;
+	for(int i=0; i<n; ++i)
+	{
+		out[i] = g.degree(i);
+		in[i] = gt.degree(i);
+		if( in[i]==0 || out[i]==0 )
+		{
+			part[i] = -1;
+			queue[qt++] = i;
+		}
+	}
+	while( qh < qt )
+	{
+		final int v = queue[qh++];
+		root[v] = v;
+		for(int e=g.offsets[v]; e<g.offsets[v+1]; ++e)
+		{
+			final int u = g.targets[e];
+			if( part[u] == 0 && --in[u] == 0 )
+			{
+				part[u] = -1;
+				queue[qt++] = u;
+			}
+		}
+		for(int e=gt.offsets[v]; e<gt.offsets[v+1]; ++e)
+		{
+			final int u = gt.targets[e];
+			if( part[u] == 0 && --out[u] == 0 )
+			{
+				part[u] = -1;
+				queue[qt++] = u;
+			}
+		}
+	}
+}
+
+// --------------------------------------------------------------------
+
+/**
+* Processes one partition. All nodes must have the same label. Returns
+* the partitions that remain to be processed.
+*/
+private List<int[]> split( int[] nodes ) {
+
+	List<int[]> res = new ArrayList<int[]>(3);
+	if( nodes.length == 0 ) return res;
+	final int label = part[nodes[0]];
+	if( nodes.length < SMALL )
+	{
+		tarjan(nodes,label);
+		return res;
+	}
+
+	// the pivot is the node with the most in and out edges
+	int pivot = nodes[0];
+	long best = -1;
+	for(int v:nodes)
+	{
+		final long x = (long)g.degree(v)*gt.degree(v);
+		if( x > best )
+		{
+			best = x;
+			pivot = v;
+		}
+	}
+
+	final int fw = labels.getAndIncrement();
+	final int bw = labels.getAndIncrement();
+	final int[] queue = new int[nodes.length];
+
+	// forward set gets label fw
+	int qh = 0, qt = 0;
+	part[pivot] = fw;
+	queue[qt++] = pivot;
+	while( qh < qt )
+	{
+		final int v = queue[qh++];
+		for(int e=g.offsets[v]; e<g.offsets[v+1]; ++e)
+		{
+			final int u = g.targets[e];
+			if( part[u] == label )
+			{
+				part[u] = fw;
+				queue[qt++] = u;
+			}
+		}
+	}
+
+	// backward set: the intersection is the cluster, the rest gets bw
+	qh = qt = 0;
+	part[pivot] = -1;
+	root[pivot] = pivot;
+	queue[qt++] = pivot;
+	while( qh < qt )
+	{
+		final int v = queue[qh++];
+		for(int e=gt.offsets[v]; e<gt.offsets[v+1]; ++e)
+		{
+			final int u = gt.targets[e];
+			if( part[u] == fw )
+			{
+				part[u] = -1;
+				root[u] = pivot;
+				queue[qt++] = u;
+			}
+			else if( part[u] == label )
+			{
+				part[u] = bw;
+				queue[qt++] = u;
+			}
+		}
+	}
+
+	int nf = 0, nb = 0, nr = 0;
+	for(int v:nodes)
+	{
+		if( part[v] == fw ) nf++;
+		else if( part[v] == bw ) nb++;
+		else if( part[v] == label ) nr++;
+	}
+	final int[] f = new int[nf], b = new int[nb], r = new int[nr];
+	nf = nb = nr = 0;
+	for(int v:nodes)
+	{
+		if( part[v] == fw ) f[nf++] = v;
+		else if( part[v] == bw ) b[nb++] = v;
+		else if( part[v] == label ) r[nr++] = v;
+	}
+	if( nf > 0 ) res.add(f);
+	if( nb > 0 ) res.add(b);
+	if( nr > 0 ) res.add(r);
+	return res;
+}
+
+}
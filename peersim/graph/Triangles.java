@@ -0,0 +1,417 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.graph;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import peersim.util.ExtendedRandom;
+import peersim.util.IncrementalStats;
+import peersim.util.RangeTask;
+
+/**
+* Triangle counting and clustering coefficients over an undirected
+* {@link CSRGraph}.
+* <p>
+* The exact algorithm ({@link #count}) orients each edge from the node with
+* the lower degree to the node with the higher degree (ties broken by
+* index), so every node has at most about the square root of the number of
+* edges outgoing neighbours. Each triangle is found exactly once, by
+* intersecting the sorted outgoing lists of the endpoints of its edges.
+* Nodes are processed in parallel using {@link RangeTask}.
+* <p>
+* The sampling methods estimate clustering from random wedges (paths of
+* length two), checking whether the wedge is closed by an edge. They need
+* only the degrees and the sorted neighbour lists, and their cost does not
+* depend on the size of the graph. The result is an
+* {@link IncrementalStats} over the outcomes of the samples (1 for closed
+* and 0 for open wedges), so the estimate is the average, and the half
+* width of its 95% confidence interval is given by {@link #confidence}.
+* <p>
+* Self loops are ignored, so on graphs without self loops the results
+* are the same as those of {@link GraphAlgorithms#clustering}.
+*/
+public class Triangles {
+
+
+// =================== constants ======================================
+// ====================================================================
+
+
+/** Number of nodes processed by one subtask */
+private static final int GRAIN = 1024;
+
+/** Number of samples drawn from one random stream */
+private static final int BLOCK = 4096;
+
+
+// =================== private fields =================================
+// ====================================================================
+
+
+private final CSRGraph g;
+
+private final int n;
+
+/** Degrees without self loops */
+private final int[] deg;
+
+/** Number of triangles of each node, null before {@link #count} */
+private int[] tri = null;
+
+private long total = 0;
+
+
+// =================== initialization =================================
+// ====================================================================
+
+
+/**
+* @param g an undirected graph. If its neighbour lists are not sorted, a
+* sorted copy is made.
+* @throws IllegalArgumentException if g is directed
+*/
+public Triangles( CSRGraph g ) {
+
+	if( g.directed() ) throw new IllegalArgumentException(
+		"graph is directed");
+	this.g = (g.isSorted() ? g : new CSRGraph(g,true));
+	n = g.size();
+	deg = new int[n];
+	final int[] off = this.g.offsets;
+	final int[] tar = this.g.targets;
+	new RangeTask(GRAIN*16) {
+		protected void process( int from, int to ) {
+			for(int i=from; i<to; ++i)
+			{
+				int d = off[i+1]-off[i];
+				for(int e=off[i]; e<off[i+1]; ++e)
+					if( tar[e]==i ) d--;
+				deg[i] = d;
+			}
+		}
+	}.run(0,n);
+}
+
+
+// =================== public methods =================================
+// ====================================================================
+
+
+/**
+* Counts the triangles of the graph exactly, in parallel. After the call
+* the number of triangles of the nodes and the clustering coefficients
+* can be read using {@link #triangles(int)} and {@link #clustering}.
+* @return the number of triangles in the graph
+*/
+public long count() {
+
+	final int[] off = g.offsets;
+	final int[] tar = g.targets;
+
+	// orientation: the outgoing neighbours of i are those of higher rank
+	final int[] ooff = new int[n+1];
+	new RangeTask(GRAIN*16) {
+		protected void process( int from, int to ) {
+			for(int i=from; i<to; ++i)
+			{
+				int c = 0;
+				for(int e=off[i]; e<off[i+1]; ++e)
+					if( higher(tar[e],i) ) c++;
+				ooff[i+1] = c;
+			}
+		}
+	}.run(0,n);
+	for(int i=0; i<n; ++i) ooff[i+1] += ooff[i];
+	final int[] otar = new int[ooff[n]];
+	new RangeTask(GRAIN*16) {
+		protected void process( int from, int to ) {
+			for(int i=from; i<to; ++i)
+			{
+				int k = ooff[i];
+				for(int e=off[i]; e<off[i+1]; ++e)
+					if( higher(tar[e],i) ) otar[k++] = tar[e];
+			}
+		}
+	}.run(0,n);
+
+	final AtomicIntegerArray t = new AtomicIntegerArray(n);
+	final AtomicLong sum = new AtomicLong();
+	new RangeTask(GRAIN) {
+		protected void process( int from, int to ) {
+			long cnt = 0;
+			for(int u=from; u<to; ++u)
+			for(int e=ooff[u]; e<ooff[u+1]; ++e)
+			{
+				final int v = otar[e];
+				// merge intersection of the outgoing lists of u and v
+				int a = ooff[u], b = ooff[v];
+				while( a < ooff[u+1] && b < ooff[v+1] )
+				{
+					if( otar[a] < otar[b] ) a++;
+					else if( otar[a] > otar[b] ) b++;
+					else
+					{
+						t.incrementAndGet(u);
+						t.incrementAndGet(v);
+						t.incrementAndGet(otar[a]);
+						cnt++;
+						a++;
+						b++;
+					}
+				}
+			}
+			sum.addAndGet(cnt);
+		}
+	}.run(0,n);
+
+	tri = new int[n];
+	for(int i=0; i<n; ++i) tri[i] = t.get(i);
+	total = sum.get();
+	return total;
+}
+
+// --------------------------------------------------------------------
+
+/**
+* Returns the number of triangles that contain node i.
+* {@link #count} must have been called.
+*/
+public int triangles( int i ) {
+
+	if( tri == null ) throw new IllegalStateException(
+		"triangles are not counted");
+	return tri[i];
+}
+
+// --------------------------------------------------------------------
+
+/**
+* Returns the number of triangles in the graph.
+* {@link #count} must have been called.
+*/
+public long triangles() {
+
+	if( tri == null ) throw new IllegalStateException(
+		"triangles are not counted");
+	return total;
+}
+
+// --------------------------------------------------------------------
+
+/**
+* Returns the clustering coefficient of node i, with the same conventions
+* as {@link GraphAlgorithms#clustering}: if the number of neighbours is 1,
+* returns 1. For zero neighbours returns NAN.
+* {@link #count} must have been called.
+*/
+public double clustering( int i ) {
+
+	final int d = deg[i];
+	if( d == 1 ) return 1.0;
+	return ((triangles(i)*2.0)/d)/(d-1);
+}
+
+// --------------------------------------------------------------------
+
+/**
+* Returns the global clustering coefficient (transitivity) of the graph,
+* which is the fraction of wedges that are closed. This is three times
+* the number of triangles divided by the number of wedges.
+* {@link #count} must have been called.
+*/
+public double transitivity() {
+
+	return 3.0*triangles()/wedges();
+}
+
+// --------------------------------------------------------------------
+
+/** Returns the number of wedges (paths of length two) in the graph. */
+public long wedges() {
+
+	long w = 0;
+	for(int i=0; i<n; ++i) w += (long)deg[i]*(deg[i]-1)/2;
+	return w;
+}
+
+// --------------------------------------------------------------------
+
+/**
+* Estimates the average clustering coefficient of the nodes
+* 0,...,k-1, where nodes with no neighbours are excluded.
+* In each sample a node is drawn uniformly at random. If it has one
+* neighbour, the outcome is 1, like in {@link #clustering}. Otherwise a
+* random pair of its neighbours is drawn, and the outcome is 1 if they are
+* linked. The expected outcome is the clustering coefficient of the
+* drawn node, so the average of the outcomes estimates the average
+* clustering coefficient.
+* The samples are drawn in parallel in blocks, each block seeded by
+* {@link ExtendedRandom#streamSeed}, so the result depends only on the
+* parameters.
+* @param k the number of nodes considered (at most the size of the graph)
+* @param samples the number of samples
+* @param seed the seed of the random streams
+* @return the outcomes of the samples. It is empty if all nodes have
+* zero neighbours.
+*/
+public IncrementalStats sampleClustering( int k, int samples, long seed ) {
+
+	k = Math.min(k,n);
+	int cnt = 0;
+	for(int i=0; i<k; ++i) if( deg[i] > 0 ) cnt++;
+	final int[] nodes = new int[cnt];
+	cnt = 0;
+	for(int i=0; i<k; ++i) if( deg[i] > 0 ) nodes[cnt++] = i;
+	if( cnt == 0 ) return new IncrementalStats();
+	return sample(samples,seed,null,nodes);
+}
+
+// --------------------------------------------------------------------
+
+/**
+* Estimates the global clustering coefficient (transitivity) of the
+* graph. In each sample a wedge is drawn uniformly at random, and the
+* outcome is 1 if it is closed. The samples are drawn the same way as in
+* {@link #sampleClustering}.
+* @param samples the number of samples
+* @param seed the seed of the random streams
+* @return the outcomes of the samples. It is empty if there are no
+* wedges.
+*/
+public IncrementalStats sampleTransitivity( int samples, long seed ) {
+
+	// cumulative number of wedges, to draw the center of the wedge
+	final long[] cum = new long[n];
+	long w = 0;
+	for(int i=0; i<n; ++i)
+	{
+		w += (long)deg[i]*(deg[i]-1)/2;
+		cum[i] = w;
+	}
+	if( w == 0 ) return new IncrementalStats();
+	return sample(samples,seed,cum,null);
+}
+
+// --------------------------------------------------------------------
+
+/**
+* Returns the half width of the 95% confidence interval of the average
+* of the given samples, using the normal approximation.
+*/
+public static double confidence( IncrementalStats stats ) {
+
+	if( stats.getN() < 2 ) return Double.NaN;
+	return 1.96*Math.sqrt(stats.getVar()/stats.getN());
+}
+
+
+// =================== private methods ================================
+// ====================================================================
+
+
+/** Returns true if node j is ranked higher than node i. */
+private boolean higher( int j, int i ) {
+
+	return deg[j] > deg[i] || (deg[j] == deg[i] && j > i);
+}
+
+// --------------------------------------------------------------------
+
+/**
+* Draws the samples. If cum is not null, wedge centers are drawn
+* proportionally to the number of their wedges, otherwise uniformly from
+* the given nodes.
+*/
+private IncrementalStats sample( final int samples, final long seed,
+		final long[] cum, final int[] nodes ) {
+
+	final AtomicLong closed = new AtomicLong();
+	final int blocks = (samples+BLOCK-1)/BLOCK;
+	new RangeTask(1) {
+		protected void process( int from, int to ) {
+			long c = 0;
+			for(int b=from; b<to; ++b)
+			{
+				ExtendedRandom r =
+				new ExtendedRandom(ExtendedRandom.streamSeed(seed,b));
+				final int s = Math.min(BLOCK,samples-b*BLOCK);
+				for(int j=0; j<s; ++j)
+				{
+					final int i = (cum == null ?
+						nodes[r.nextInt(nodes.length)] :
+						center(cum,r.nextLong(cum[n-1])));
+					if( closed(i,r) ) c++;
+				}
+			}
+			closed.addAndGet(c);
+		}
+	}.run(0,blocks);
+
+	IncrementalStats stats = new IncrementalStats();
+	final long c = closed.get();
+	if( c > 0 ) stats.add(1,(int)c);
+	if( samples > c ) stats.add(0,(int)(samples-c));
+	return stats;
+}
+
+// --------------------------------------------------------------------
+
+/** Returns the first node i such that x &lt; cum[i]. */
+private static int center( long[] cum, long x ) {
+
+	int lo = 0, hi = cum.length-1;
+	while( lo < hi )
+	{
+		final int mid = (lo+hi)>>>1;
+		if( cum[mid] > x ) hi = mid;
+		else lo = mid+1;
+	}
+	return lo;
+}
+
+// --------------------------------------------------------------------
+
+/**
+* Draws a random pair of neighbours of node i and returns true if they are
+* linked. If i has one neighbour, returns true.
+*/
+private boolean closed( int i, ExtendedRandom r ) {
+
+	final int d = deg[i];
+	if( d == 1 ) return true;
+	final int a = r.nextInt(d);
+	int b = r.nextInt(d-1);
+	if( b >= a ) b++;
+	return g.isEdge(neighbour(i,a),neighbour(i,b));
+}
+
+// --------------------------------------------------------------------
+
+/** Returns the k-th neighbour of i, not counting i itself. */
+private int neighbour( int i, int k ) {
+
+	final int[] off = g.offsets;
+	final int[] tar = g.targets;
+	// lists are sorted, so a self loop is at the position of i
+	final int p = off[i]+k;
+	if( deg[i] == off[i+1]-off[i] || tar[p] < i ) return tar[p];
+	return tar[p+1];
+}
+
+}
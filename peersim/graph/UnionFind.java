@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.graph;
+
+import java.util.Arrays;
+
+/**
+* A disjoint-set (union-find) structure over the elements 0,...,n-1,
+* which can grow by adding new elements. It uses union by size and path
+* halving, so all operations take practically constant time.
+* Besides the sets themselves, it keeps track of the number of sets, the
+* size of the largest set and the number of sets of each size, so these
+* can be read in constant time. Since sets are never split, they are
+* useful for tracking connected clusters of a graph to which only edges
+* are added.
+*/
+public class UnionFind {
+
+
+// ======================= fields ====================================
+// ===================================================================
+
+
+/** Parent of each element; roots point to themselves */
+private int[] parent;
+
+/** Size of the set, valid only for roots */
+private int[] size;
+
+/** Element i is the number of sets of size i */
+private int[] sizeCount;
+
+/** Number of elements */
+private int n = 0;
+
+private int sets = 0;
+
+private int max = 0;
+
+
+// ======================= initialization ============================
+// ===================================================================
+
+
+/**
+* Creates an empty structure.
+* @param capacity the initial capacity, elements can be added without
+* reallocation up to this number.
+*/
+public UnionFind( int capacity ) {
+
+	capacity = Math.max(1,capacity);
+	parent = new int[capacity];
+	size = new int[capacity];
+	sizeCount = new int[capacity+1];
+}
+
+// -------------------------------------------------------------------
+
+/** Removes all elements. */
+public void clear() {
+
+	Arrays.fill(sizeCount,0,max+1,0);
+	n = 0;
+	sets = 0;
+	max = 0;
+}
+
+
+// ======================= public methods ============================
+// ===================================================================
+
+
+/**
+* Adds a new element that forms a set by itself.
+* @return the new element, which is the number of elements before the call
+*/
+public int add() {
+
+	if( n == parent.length )
+	{
+		final int cap = 3*parent.length/2+1;
+		parent = Arrays.copyOf(parent,cap);
+		size = Arrays.copyOf(size,cap);
+		sizeCount = Arrays.copyOf(sizeCount,cap+1);
+	}
+	parent[n] = n;
+	size[n] = 1;
+	sizeCount[1]++;
+	sets++;
+	if( max < 1 ) max = 1;
+	return n++;
+}
+
+// -------------------------------------------------------------------
+
+/** Returns the representative element of the set containing i. */
+public int find( int i ) {
+
+	if( i<0 || i>=n ) throw new IndexOutOfBoundsException(""+i);
+	while( parent[i] != i )
+	{
+		parent[i] = parent[parent[i]];
+		i = parent[i];
+	}
+	return i;
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Merges the sets containing i and j.
+* @return true if they were different sets
+*/
+public boolean union( int i, int j ) {
+
+	i = find(i);
+	j = find(j);
+	if( i == j ) return false;
+	if( size[i] < size[j] )
+	{
+		final int tmp = i;
+		i = j;
+		j = tmp;
+	}
+	sizeCount[size[i]]--;
+	sizeCount[size[j]]--;
+	parent[j] = i;
+	size[i] += size[j];
+	sizeCount[size[i]]++;
+	if( size[i] > max ) max = size[i];
+	sets--;
+	return true;
+}
+
+// -------------------------------------------------------------------
+
+/** Returns true if i and j are in the same set. */
+public boolean connected( int i, int j ) { return find(i)==find(j); }
+
+// -------------------------------------------------------------------
+
+/** Returns the number of elements. */
+public int size() { return n; }
+
+// -------------------------------------------------------------------
+
+/** Returns the number of sets. */
+public int sets() { return sets; }
+
+// -------------------------------------------------------------------
+
+/** Returns the size of the largest set, or 0 if there are no elements. */
+public int maxSize() { return max; }
+
+// -------------------------------------------------------------------
+
+/** Returns the size of the set containing i. */
+public int setSize( int i ) { return size[find(i)]; }
+
+// -------------------------------------------------------------------
+
+/**
+* Returns the number of sets that have exactly s elements. Together with
+* {@link #maxSize} this describes the size distribution of the sets.
+*/
+public int sizeCount( int s ) {
+
+	return ( s>=0 && s<=max ? sizeCount[s] : 0 );
+}
+
+}
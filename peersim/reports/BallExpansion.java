@@ -20,6 +20,8 @@ package peersim.reports;
 
 import peersim.config.*;
 import peersim.core.*;
+import peersim.graph.MultiSourceBFS;
+import peersim.graph.ParallelBFS;
 import peersim.util.*;
 
 /**
@@ -65,12 +67,25 @@ private static final String PAR_N = "n";
  */
 private static final String PAR_STATS = "stats";
 
+/**
+ * If defined, the searches from the {@value #PAR_N} nodes are run at the
+ * same time in batches, using {@link MultiSourceBFS}, with the given
+ * number of sources per batch. It should be a multiple of 64, for example
+ * 64 or 256. The output is the same as without this parameter. Not
+ * defined by default.
+ * @config
+ */
+private static final String PAR_MSBFS = "msbfs";
+
 private final int maxd;
 
 private final int n;
 
 private final boolean stats;
 
+/** {@link #PAR_MSBFS}, or 0 if not defined */
+private final int lanes;
+
 /** working variable */
 private final int[] b;
 
@@ -90,6 +105,10 @@ public BallExpansion(String name)
 	maxd = Configuration.getInt(name + "." + PAR_MAXD, Network.size());
 	n = Configuration.getInt(name + "." + PAR_N, 1000);
 	stats = Configuration.contains(name + "." + PAR_STATS);
+	lanes = Configuration.getInt(name + "." + PAR_MSBFS, 0);
+	if (Configuration.contains(name + "." + PAR_MSBFS) && lanes < 1)
+		throw new IllegalParameterException(name + "." + PAR_MSBFS,
+			"must be positive");
 	b = new int[maxd];
 }
 
@@ -114,6 +133,11 @@ public BallExpansion(String name)
 * necessary.
 * Finally, note that the {@value #PAR_N} nodes are not guaranteed to be the
 * same nodes over consecutive calls to this method.
+* <p>
+* If parameter {@value GraphObserver#PAR_PARALLEL} is defined, the
+* distances are calculated by {@link ParallelBFS}, and if parameter
+* {@value #PAR_MSBFS} is defined, by {@link MultiSourceBFS}.
+* The output is the same.
 * @return always false
 */
 public boolean execute() {
@@ -121,17 +145,33 @@ public boolean execute() {
 	updateGraph();
 	System.out.print(name + ": ");
 	rp.reset(g.size());
+	if (lanes > 0)
+	{
+		multiSource();
+		return false;
+	}
+	final ParallelBFS bfs = (parallel ? new ParallelBFS(getCSR()) : null);
 	if (stats)
 	{
 		IncrementalStats is = new IncrementalStats();
 		for (int i = 0; i < n && i < g.size(); ++i)
 		{
-			ga.dist(g, rp.next());
+			final int[] d;
+			if (parallel)
+			{
+				bfs.dist(rp.next());
+				d = bfs.d;
+			}
+			else
+			{
+				ga.dist(g, rp.next());
+				d = ga.d;
+			}
 			for (int j=0; j<g.size(); j++)
 			{
-				if (ga.d[j] > 0)
-					is.add(ga.d[j]);
-				else if (ga.d[j] == -1)
+				if (d[j] > 0)
+					is.add(d[j]);
+				else if (d[j] == -1)
 					is.add(Double.POSITIVE_INFINITY);
 				// deliberately left ga.d[j]==0 out, as we don't
 				// want to count trivial distance to oneself.
@@ -144,7 +184,8 @@ public boolean execute() {
 		System.out.println();
 		for (int i = 0; i < n && i < g.size(); ++i)
 		{
-			ga.flooding(g, b, rp.next());
+			if (parallel) bfs.flooding(b, rp.next());
+			else ga.flooding(g, b, rp.next());
 			int j = 0;
 			while (j < b.length && b[j] > 0)
 			{
@@ -156,4 +197,50 @@ public boolean execute() {
 	return false;
 }
 
+// ---------------------------------------------------------------------
+
+/**
+* Implements {@link #execute} using {@link MultiSourceBFS}. The nodes are
+* taken from {@link #rp} in the same order, and the output is printed in
+* this order too.
+*/
+private void multiSource() {
+
+	final MultiSourceBFS bfs = new MultiSourceBFS(getCSR(), lanes);
+	final int size = g.size();
+	final int all = Math.min(n, size);
+	IncrementalStats is = (stats ? new IncrementalStats() : null);
+	if (!stats) System.out.println();
+	for (int i = 0; i < all; i += bfs.lanes())
+	{
+		final int[] sources = new int[Math.min(bfs.lanes(), all - i)];
+		for (int l = 0; l < sources.length; ++l) sources[l] = rp.next();
+		bfs.run(sources, (stats ? size : maxd));
+		for (int l = 0; l < sources.length; ++l)
+		{
+			if (stats)
+			{
+				for (int d = 1; d < bfs.levels(); ++d)
+				{
+					if (bfs.count(l, d) > 0)
+						is.add(d, bfs.count(l, d));
+				}
+				final int unreached = size - bfs.reached(l);
+				if (unreached > 0)
+					is.add(Double.POSITIVE_INFINITY, unreached);
+			}
+			else
+			{
+				int j = 0;
+				while (j < b.length && bfs.count(l, j) > 0)
+				{
+					System.out.print(bfs.count(l, j++) + " ");
+				}
+				System.out.println();
+			}
+		}
+	}
+	if (stats) System.out.println(is);
+}
+
 }
@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.reports;
+
+import java.util.*;
+import peersim.config.*;
+import peersim.core.*;
+import peersim.graph.CSRGraph;
+import peersim.graph.SpMV;
+import peersim.util.IncrementalStats;
+
+/**
+ * Control to observe the centrality of the nodes in the overlay.
+ * PageRank or eigenvector centrality is calculated by power iteration,
+ * using the parallel {@link SpMV} kernel over the {@link CSRGraph}
+ * snapshot of the graph. Links are followed in their direction, so a node
+ * is central if central nodes link to it. The centrality values are
+ * normalized so that they sum to one.
+ */
+public class Centrality extends GraphObserver
+{
+
+// ===================== fields =======================================
+// ====================================================================
+
+/**
+ * The type of centrality: "pagerank" or "eigenvector". Defaults to
+ * "pagerank".
+ * @config
+ */
+private static final String PAR_TYPE = "type";
+
+/**
+ * The damping factor of PageRank, that is, the probability that the
+ * random surfer follows a link instead of jumping to a random node.
+ * Defaults to 0.85.
+ * @config
+ */
+private static final String PAR_DAMPING = "damping";
+
+/**
+ * The iteration stops if the sum of the absolute changes of the values
+ * is smaller than this. Defaults to 1e-9.
+ * @config
+ */
+private static final String PAR_TOL = "tol";
+
+/**
+ * The maximal number of iterations. Defaults to 1000.
+ * @config
+ */
+private static final String PAR_MAXITER = "maxiter";
+
+/**
+ * If defined, the IDs and centrality values of the given number of nodes
+ * with the highest centrality are printed as well. Not defined by default.
+ * @config
+ */
+private static final String PAR_TOP = "top";
+
+private final boolean pagerank;
+
+private final double damping;
+
+private final double tol;
+
+private final int maxiter;
+
+private final int top;
+
+// ===================== initialization ================================
+// =====================================================================
+
+/**
+ * Standard constructor that reads the configuration parameters.
+ * Invoked by the simulation engine.
+ * @param name the configuration prefix for this class
+ */
+public Centrality(String name)
+{
+	super(name);
+	final String type = Configuration.getString(name + "." + PAR_TYPE,
+		"pagerank");
+	if (type.equals("pagerank"))
+		pagerank = true;
+	else if (type.equals("eigenvector"))
+		pagerank = false;
+	else
+		throw new IllegalParameterException(name + "." + PAR_TYPE,
+			"unknown centrality type '" + type + "'");
+	damping = Configuration.getDouble(name + "." + PAR_DAMPING, 0.85);
+	if (damping < 0 || damping >= 1)
+		throw new IllegalParameterException(name + "." + PAR_DAMPING,
+			"must be in [0,1)");
+	tol = Configuration.getDouble(name + "." + PAR_TOL, 1e-9);
+	maxiter = Configuration.getInt(name + "." + PAR_MAXITER, 1000);
+	top = Configuration.getInt(name + "." + PAR_TOP, 0);
+}
+
+// ====================== methods ======================================
+// =====================================================================
+
+/**
+* Prints statistics about the centrality values of the nodes. The output
+* is produced by {@link IncrementalStats#toString}, over the centrality
+* values, followed by the number of iterations performed.
+* If {@value #PAR_TOP} is defined, then the given number of lines follow,
+* each containing the ID and the centrality of a node, in decreasing
+* order of centrality.
+* @return always false
+*/
+public boolean execute()
+{
+	updateGraph();
+	final SpMV spmv = new SpMV(getCSR());
+	final int size = g.size();
+	final double[] x = new double[size];
+	final int iter = (pagerank ? pageRank(spmv, x) : eigenvector(spmv, x));
+
+	IncrementalStats stats = new IncrementalStats();
+	for (int i = 0; i < size; ++i)
+		stats.add(x[i]);
+	System.out.println(name + ": " + stats + " " + iter);
+
+	if (top > 0) {
+		Integer[] order = new Integer[size];
+		for (int i = 0; i < size; ++i)
+			order[i] = i;
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return Double.compare(x[b], x[a]);
+			}
+		});
+		for (int k = 0; k < top && k < size; ++k) {
+			final Node node = (Node) g.getNode(order[k]);
+			System.out.println(node.getID() + " " + x[order[k]]);
+		}
+	}
+	return false;
+}
+
+// ---------------------------------------------------------------------
+
+/**
+* Calculates PageRank into x. The rank of nodes without outgoing links is
+* distributed evenly among all nodes.
+* @return the number of iterations
+*/
+private int pageRank(SpMV spmv, double[] x)
+{
+	final CSRGraph csr = spmv.graph();
+	final int size = x.length;
+	final double[] y = new double[size];
+	final double[] z = new double[size];
+	Arrays.fill(x, 1.0 / size);
+	int iter = 0;
+	while (iter < maxiter) {
+		iter++;
+		double dangling = 0;
+		for (int i = 0; i < size; ++i) {
+			final int d = csr.degree(i);
+			if (d == 0) {
+				dangling += x[i];
+				y[i] = 0;
+			} else {
+				y[i] = x[i] / d;
+			}
+		}
+		spmv.multiplyTranspose(y, z);
+		final double jump = (1 - damping + damping * dangling) / size;
+		double diff = 0;
+		for (int i = 0; i < size; ++i) {
+			final double v = damping * z[i] + jump;
+			diff += Math.abs(v - x[i]);
+			x[i] = v;
+		}
+		if (diff < tol)
+			break;
+	}
+	return iter;
+}
+
+// ---------------------------------------------------------------------
+
+/**
+* Calculates eigenvector centrality into x, using power iteration with
+* the matrix A<sup>T</sup>+I. The shift does not change the eigenvectors
+* but makes sure the iteration does not oscillate on bipartite graphs.
+* @return the number of iterations
+*/
+private int eigenvector(SpMV spmv, double[] x)
+{
+	final int size = x.length;
+	final double[] y = new double[size];
+	Arrays.fill(x, 1.0 / size);
+	int iter = 0;
+	while (iter < maxiter) {
+		iter++;
+		spmv.multiplyTranspose(x, y);
+		double sum = 0;
+		for (int i = 0; i < size; ++i) {
+			y[i] += x[i];
+			sum += y[i];
+		}
+		double diff = 0;
+		for (int i = 0; i < size; ++i) {
+			final double v = y[i] / sum;
+			diff += Math.abs(v - x[i]);
+			x[i] = v;
+		}
+		if (diff < tol)
+			break;
+	}
+	return iter;
+}
+
+}
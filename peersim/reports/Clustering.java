@@ -19,12 +19,15 @@
 package peersim.reports;
 
 import peersim.config.Configuration;
+import peersim.core.CommonState;
 import peersim.graph.GraphAlgorithms;
+import peersim.graph.Triangles;
 import peersim.util.IncrementalStats;
 
 /**
  * Control to observe the clustering coefficient.
  * @see GraphAlgorithms#clustering
+ * @see Triangles
  */
 public class Clustering extends GraphObserver
 {
@@ -38,8 +41,21 @@ public class Clustering extends GraphObserver
  */
 private static final String PAR_N = "n";
 
+/**
+ * If defined, the average clustering coefficient of the nodes is estimated
+ * from this many random samples using {@link Triangles#sampleClustering},
+ * instead of calculating the coefficients exactly.
+ * The random streams are seeded from {@link CommonState#r}.
+ * Not defined by default.
+ * @config
+ */
+private static final String PAR_SAMPLES = "samples";
+
 private final int n;
 
+/** {@link #PAR_SAMPLES} */
+private final int samples;
+
 // ===================== initialization ================================
 // =====================================================================
 
@@ -52,6 +68,7 @@ public Clustering(String name)
 {
 	super(name);
 	n = Configuration.getInt(name + "." + PAR_N, Integer.MAX_VALUE);
+	samples = Configuration.getInt(name + "." + PAR_SAMPLES, 0);
 }
 
 // ====================== methods ======================================
@@ -64,14 +81,36 @@ public Clustering(String name)
 * produced by {@link IncrementalStats#toString}, over the values of
 * the clustering coefficients of the given number of nodes.
 * Clustering coefficients are calculated by {@link GraphAlgorithms#clustering}.
+* If {@value GraphObserver#PAR_PARALLEL} is defined, they are calculated
+* by {@link Triangles#count} instead, with the same result.
+* <p>
+* If {@value #PAR_SAMPLES} is defined, the average clustering coefficient
+* of the given nodes that have at least one neighbour is estimated. In this
+* case the output is the estimate, followed by the half width of its 95%
+* confidence interval and the number of samples.
 * @return always false
 */
 public boolean execute()
 {
 	IncrementalStats stats = new IncrementalStats();
 	updateGraph();
-	for (int i = 0; i < n && i < g.size(); ++i) {
-		stats.add(GraphAlgorithms.clustering(g, i));
+	if (samples > 0) {
+		Triangles t = new Triangles(getCSR());
+		stats = t.sampleClustering(n, samples, CommonState.r.nextLong());
+		System.out.println(name + ": " + stats.getAverage() + " " +
+			Triangles.confidence(stats) + " " + stats.getN());
+		return false;
+	}
+	if (parallel) {
+		Triangles t = new Triangles(getCSR());
+		t.count();
+		for (int i = 0; i < n && i < g.size(); ++i) {
+			stats.add(t.clustering(i));
+		}
+	} else {
+		for (int i = 0; i < n && i < g.size(); ++i) {
+			stats.add(GraphAlgorithms.clustering(g, i));
+		}
 	}
 	System.out.println(name + ": " + stats);
 	return false;
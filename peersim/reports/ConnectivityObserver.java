@@ -21,6 +21,7 @@ package peersim.reports;
 import java.util.Iterator;
 import java.util.Map;
 import peersim.config.Configuration;
+import peersim.graph.StrongComponents;
 import peersim.util.IncrementalStats;
 
 /**
@@ -92,6 +93,10 @@ public ConnectivityObserver(String name)
 * a map, that holds cluster IDs mapped to cluster sizes.
 * The meaning of the cluster IDs is not specified, but is printed for
 * debugging purposes.
+* If parameter {@value GraphObserver#PAR_PARALLEL} is defined, strongly
+* connected clusters are calculated by
+* {@link StrongComponents#forwardBackward}. The cluster sizes are the same
+* but the cluster IDs are different.
 * @return always false
 * @see peersim.graph.GraphAlgorithms#tarjan
 * @see peersim.graph.GraphAlgorithms#weaklyConnectedClusters
@@ -103,6 +108,8 @@ public boolean execute()
 	
 	if(type.equals("wcc"))
 		clst=ga.weaklyConnectedClusters(g);
+	else if(type.equals("scc") && parallel)
+		clst=new StrongComponents().forwardBackward(getCSR());
 	else if(type.equals("scc"))
 		clst=ga.tarjan(g);
 	else
@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.reports;
+
+import java.util.Arrays;
+import peersim.config.Configuration;
+import peersim.core.*;
+import peersim.graph.UnionFind;
+import peersim.util.IncrementalStats;
+
+/**
+ * Reports the weakly connected clusters of an overlay, like
+ * {@link ConnectivityObserver}, but instead of recalculating the clusters
+ * from scratch at each execution, it keeps a {@link UnionFind} structure up
+ * to date incrementally.
+ * <p>
+ * Links added through {@link Linkable#addNeighbor} are appended to the
+ * neighbor list, so as long as a protocol only adds links, only the links
+ * beyond the previously observed degree of each node, and the nodes
+ * added to the end of the network by {@link Network#add}, have to be
+ * processed. Many protocols also remove or replace links, however (for
+ * example newscast rewrites its cache in place). To detect this, a hash
+ * of the previously observed neighbor list of each node is kept, and
+ * compared with the hash of the same number of neighbors at the next
+ * execution. This reads all the links but does no further work on them.
+ * If a change is detected that cannot be handled incrementally, the
+ * clusters are rebuilt from scratch. These changes are: a node
+ * was removed or the network was reordered, the fail state of a
+ * node changed, or a previously observed neighbor of a node was removed
+ * or replaced.
+ * <p>
+ * Like in {@link peersim.core.OverlayGraph}, only nodes that are up are
+ * connected by links, but all nodes are counted in the clusters.
+ */
+public class ConnectivityTracker implements Control
+{
+
+//--------------------------------------------------------------------------
+//Parameters
+//--------------------------------------------------------------------------
+
+/**
+ * The {@link Linkable} protocol to observe.
+ * @config
+ */
+private static final String PAR_PROT = "protocol";
+
+/**
+ * The parameter used to request cluster size statistics. If defined, the
+ * output is produced by {@link IncrementalStats#toString} over the sizes of
+ * the clusters. Otherwise the number of clusters and the size of the
+ * largest cluster is printed. Not set by default.
+ * @config
+ */
+private static final String PAR_STATS = "stats";
+
+/**
+ * If positive, the clusters are rebuilt from scratch at every given number
+ * of executions, irrespective of the changes detected. Defaults to 0,
+ * which means rebuilds happen only when necessary.
+ * @config
+ */
+private static final String PAR_REBUILD = "rebuild";
+
+//--------------------------------------------------------------------------
+//Fields
+//--------------------------------------------------------------------------
+
+/** The name of this observer in the configuration */
+private final String name;
+
+/** {@link #PAR_PROT} */
+private final int pid;
+
+/** {@link #PAR_STATS} */
+private final boolean sizestats;
+
+/** {@link #PAR_REBUILD} */
+private final int rebuild;
+
+/** The clusters; element i is the node with index i */
+private final UnionFind uf = new UnionFind(Network.size());
+
+/** The nodes observed at the last execution */
+private Node[] nodes = new Node[0];
+
+/** The fail state of the nodes at the last execution */
+private boolean[] up = new boolean[0];
+
+/** The degree of the nodes at the last execution */
+private int[] degree = new int[0];
+
+/** The hash of the neighbor lists at the last execution, see {@link #hash} */
+private long[] hash = new long[0];
+
+/** Number of nodes at the last execution */
+private int size = 0;
+
+/** Number of executions so far */
+private int executions = 0;
+
+/** Number of times the clusters were rebuilt */
+private int rebuilds = 0;
+
+//--------------------------------------------------------------------------
+//Initialization
+//--------------------------------------------------------------------------
+
+/**
+ * Standard constructor that reads the configuration parameters.
+ * Invoked by the simulation engine.
+ * @param name the configuration prefix for this class
+ */
+public ConnectivityTracker(String name)
+{
+	this.name = name;
+	pid = Configuration.getPid(name + "." + PAR_PROT);
+	sizestats = Configuration.contains(name + "." + PAR_STATS);
+	rebuild = Configuration.getInt(name + "." + PAR_REBUILD, 0);
+}
+
+//--------------------------------------------------------------------------
+//Methods
+//--------------------------------------------------------------------------
+
+/**
+* Updates the clusters and prints information about them.
+* If parameter {@value #PAR_STATS} is defined then the output is
+* produced by {@link IncrementalStats#toString}, over the sizes of the
+* clusters. Otherwise the number of clusters and the size of the largest
+* cluster are printed, separated by a space.
+* @return always false
+*/
+public boolean execute()
+{
+	update();
+	if (!sizestats) {
+		System.out.println(name + ": " + uf.sets() + " " + uf.maxSize());
+	} else {
+		IncrementalStats stats = new IncrementalStats();
+		for (int s = 1; s <= uf.maxSize(); ++s) {
+			if (uf.sizeCount(s) > 0) stats.add(s, uf.sizeCount(s));
+		}
+		System.out.println(name + ": " + stats);
+	}
+	return false;
+}
+
+//--------------------------------------------------------------------------
+
+/**
+* Brings the clusters up to date with the current overlay.
+* After the call the cluster information can be read from
+* {@link #getClusters}.
+*/
+public void update()
+{
+	executions++;
+	boolean full = (rebuild > 0 && executions % rebuild == 0) ||
+		Network.size() < size;
+	for (int i = 0; i < size && !full; ++i) {
+		final Node n = Network.get(i);
+		if (n != nodes[i] || n.isUp() != up[i]) {
+			full = true;
+		} else if (up[i]) {
+			final Linkable l = (Linkable) n.getProtocol(pid);
+			full = l.degree() < degree[i] ||
+				hash(l, 0, degree[i], 0) != hash[i];
+		}
+	}
+	if (full) {
+		rebuilds++;
+		uf.clear();
+		size = 0;
+	}
+
+	final int old = size;
+	size = Network.size();
+	if (nodes.length < size) {
+		final int cap = Math.max(size, 3 * nodes.length / 2 + 1);
+		nodes = Arrays.copyOf(nodes, cap);
+		up = Arrays.copyOf(up, cap);
+		degree = Arrays.copyOf(degree, cap);
+		hash = Arrays.copyOf(hash, cap);
+	}
+	for (int i = old; i < size; ++i) {
+		uf.add();
+		nodes[i] = Network.get(i);
+		up[i] = nodes[i].isUp();
+		degree[i] = 0;
+		hash[i] = 0;
+	}
+	for (int i = 0; i < size; ++i) {
+		if (!up[i]) continue;
+		final Linkable l = (Linkable) nodes[i].getProtocol(pid);
+		final int d = l.degree();
+		for (int j = degree[i]; j < d; ++j) {
+			final Node n = l.getNeighbor(j);
+			if (n.isUp()) uf.union(i, n.getIndex());
+		}
+		hash[i] = hash(l, degree[i], d, hash[i]);
+		degree[i] = d;
+	}
+}
+
+//--------------------------------------------------------------------------
+
+/**
+* Continues the hash h of the IDs of the neighbors before position from
+* with the neighbors from position from (inclusive) to to (exclusive).
+* The hash of the empty list is 0.
+*/
+private static long hash(Linkable l, int from, int to, long h)
+{
+	for (int j = from; j < to; ++j) {
+		long x = l.getNeighbor(j).getID() * 0xBF58476D1CE4E5B9L;
+		x ^= x >>> 31;
+		h = h * 0x9E3779B97F4A7C15L + x;
+	}
+	return h;
+}
+
+//--------------------------------------------------------------------------
+
+/**
+* Returns the clusters as of the last call to {@link #update}. Element i
+* of the structure is the node with index i. The structure must not be
+* modified.
+*/
+public UnionFind getClusters() { return uf; }
+
+//--------------------------------------------------------------------------
+
+/** Returns the number of times the clusters had to be rebuilt so far. */
+public int getRebuilds() { return rebuilds; }
+
+}
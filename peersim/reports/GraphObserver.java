@@ -55,16 +55,29 @@ protected static final String PAR_UNDIR = "undir";
 private static final String PAR_UNDIR_ALT = "undirected";
 
 /**
- * If defined, the undirected version of the graph will be stored using much
- * more memory but observers will be in general a few times faster. As a
- * consequence, it will not work with large graphs. Not defined by default. It
+ * If defined, the undirected version of the graph will be stored using more
+ * memory but observers will be in general a few times faster. It
  * is a static property, that is, it affects all graph observers that are used
  * in a simulation. That is, it is not a parameter of any observer, the name
  * should be specified as a standalone property.
+ * <p>
+ * If the value is "sparse" (or "hash"), the neighbours of each node are
+ * stored in a hash set (see {@link HashUndirGraph}), which needs memory
+ * linear in the number of edges. Otherwise an adjacency matrix is used (see
+ * {@link FastUndirGraph}); as a consequence, it will not work with large
+ * graphs. Not defined by default.
  * @config
  */
 private static final String PAR_FAST = "graphobserver.fast";
 
+/**
+ * If defined, observers that support it use parallel algorithms that work
+ * on a {@link CSRGraph} snapshot of the observed graph (see
+ * {@link #getCSR}). Not defined by default.
+ * @config
+ */
+protected static final String PAR_PARALLEL = "parallel";
+
 /** The name of this observer in the configuration */
 protected final String name;
 
@@ -72,6 +85,9 @@ protected final int pid;
 
 protected final boolean undir;
 
+/** {@link #PAR_PARALLEL} */
+protected final boolean parallel;
+
 protected final GraphAlgorithms ga = new GraphAlgorithms();
 
 protected Graph g;
@@ -86,12 +102,22 @@ private static int phase = -1234;
 
 private static int ctime = -1234;
 
+/** The value of {@link Network#getReorderings} when the graphs were made */
+private static long reorderings = -1234;
+
 private static Graph dirg;
 
 private static Graph undirg;
 
+private static CSRGraph dircsr;
+
+private static CSRGraph undircsr;
+
 private static boolean fast;
 
+/** True if {@link #PAR_FAST} selects {@link HashUndirGraph} */
+private static boolean sparse;
+
 /** If any instance of some extending class defines undir we need to
 maintain an undir graph. Note that the graph is stored in a static
 field so it is common to all instances. */
@@ -112,7 +138,13 @@ protected GraphObserver(String name) {
 	pid = Configuration.getPid(name+"."+PAR_PROT);
 	undir = (Configuration.contains(name + "." + PAR_UNDIR) |
 		Configuration.contains(name + "." + PAR_UNDIR_ALT));
+	parallel = Configuration.contains(name + "." + PAR_PARALLEL);
 	GraphObserver.fast = Configuration.contains(PAR_FAST);
+	if( GraphObserver.fast )
+	{
+		final String mode = Configuration.getString(PAR_FAST,"");
+		GraphObserver.sparse = mode.equals("sparse") || mode.equals("hash");
+	}
 	GraphObserver.needUndir = (GraphObserver.needUndir || undir);
 }
 
@@ -127,8 +159,9 @@ protected GraphObserver(String name) {
 * Attempts to initialize {@link #g} from a
 * pre-calculated graph stored in a static field, but first it
 * checks whether it needs to be updated.
-* If the simulation time has progressed or it was calculated for a different
-* protocol, then updates this static graph as well.
+* If the simulation time has progressed, it was calculated for a different
+* protocol, or the network was reordered since (see
+* {@link Network#getReorderings}), then updates this static graph as well.
 * The purpose of this mechanism is to save the time of constructing the
 * graph if many observers are run on the same graph. Time savings can be very
 * significant if the undirected version of the same graph is observed by many
@@ -139,19 +172,26 @@ protected void updateGraph() {
 	if( CommonState.getTime() != GraphObserver.time ||
 	    (CDState.isCD() && (CDState.getCycleT() != GraphObserver.ctime)) ||
 	    CommonState.getPhase() != GraphObserver.phase ||
-	    pid != GraphObserver.lastpid )
+	    pid != GraphObserver.lastpid ||
+	    Network.getReorderings() != GraphObserver.reorderings )
 	{
 		// we need to update the graphs
 		
 		GraphObserver.lastpid = pid;
+		GraphObserver.reorderings = Network.getReorderings();
 		GraphObserver.time = CommonState.getTime();
 		if( CDState.isCD() ) GraphObserver.ctime = CDState.getCycleT();
 		GraphObserver.phase = CommonState.getPhase();
 
 		GraphObserver.dirg = new OverlayGraph(pid);
+		GraphObserver.dircsr = null;
+		GraphObserver.undircsr = null;
 		if( GraphObserver.needUndir )
 		{
-			if( fast )
+			if( fast && sparse )
+				GraphObserver.undirg =
+				new HashUndirGraph(GraphObserver.dirg);
+			else if( fast )
 				GraphObserver.undirg =
 				new FastUndirGraph(GraphObserver.dirg);
 			else
@@ -164,6 +204,31 @@ protected void updateGraph() {
 	else g = GraphObserver.dirg;
 }
 
+// ---------------------------------------------------------------------
+
+/**
+* Returns a {@link CSRGraph} snapshot of {@link #g} with sorted neighbour
+* lists. Like the graphs themselves, the snapshots are stored in static
+* fields so they are shared by all observers, and they are created only
+* when first requested after {@link #updateGraph} has updated the graphs.
+* It must be called after {@link #updateGraph}.
+*/
+protected CSRGraph getCSR() {
+
+	if( undir )
+	{
+		if( GraphObserver.undircsr == null )
+			GraphObserver.undircsr = new CSRGraph(g,true);
+		return GraphObserver.undircsr;
+	}
+	else
+	{
+		if( GraphObserver.dircsr == null )
+			GraphObserver.dircsr = new CSRGraph(g,true);
+		return GraphObserver.dircsr;
+	}
+}
+
 }
 
 
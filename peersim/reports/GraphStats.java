@@ -20,6 +20,7 @@ package peersim.reports;
 
 import peersim.config.Configuration;
 import peersim.graph.GraphAlgorithms;
+import peersim.graph.ParallelBFS;
 import peersim.util.IncrementalStats;
 
 /**
@@ -97,6 +98,8 @@ public GraphStats(String name) {
 * Note that the path length between a pair of nodes can be infinite, in which
 * case the statistics will reflect this (the average will be infinite, etc).
 * See also the configuration parameters.
+* If parameter {@value GraphObserver#PAR_PARALLEL} is defined, path lengths
+* are calculated by {@link ParallelBFS}.
 * @return always false
 * @see BallExpansion
 * @see Clustering
@@ -123,20 +126,31 @@ public boolean execute() {
 	{
 		stats.reset();
 		final int n = ( nl<0 ? g.size() : nl );
+		final ParallelBFS bfs = (parallel?new ParallelBFS(getCSR()):null);
 		outerloop:
 		for(int i=0; i<n && i<g.size(); ++i)
 		{
-			ga.dist(g,i);
+			final int[] d;
+			if( parallel )
+			{
+				bfs.dist(i);
+				d = bfs.d;
+			}
+			else
+			{
+				ga.dist(g,i);
+				d = ga.d;
+			}
 			for(int j=0; j<g.size(); ++j)
 			{
 				if( j==i ) continue;
-				if (ga.d[j] == -1)
+				if (d[j] == -1)
 				{
 					stats.add(Double.POSITIVE_INFINITY);
 					break outerloop;
 				}
 				else
-					stats.add(ga.d[j]); 
+					stats.add(d[j]); 
 			}
 		}
 		System.out.print(stats.getAverage());
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.reports;
+
+import peersim.config.*;
+import peersim.core.*;
+import peersim.graph.HyperANF;
+
+/**
+ * Control to observe the neighbourhood function of the graph, and the
+ * average distance and effective diameter derived from it. Unlike
+ * {@link BallExpansion}, which runs breadth-first searches from a sample
+ * of nodes, it approximates the distances between all pairs of nodes
+ * in a few passes over the edges, using {@link HyperANF}.
+ */
+public class NeighbourhoodFunction extends GraphObserver
+{
+
+// ===================== fields =======================================
+// ====================================================================
+
+/**
+ * The precision of the counters, between 4 and 16. Each node uses
+ * 2<sup>p+1</sup> bytes of memory, and the relative error of the
+ * estimated ball size of one node is about 1.04/2<sup>p/2</sup>.
+ * Defaults to 7.
+ * @config
+ */
+private static final String PAR_P = "p";
+
+/**
+ * The maximal distance we care about, that is, the maximal number of
+ * iterations. Not limited by default, which means the iterations go on
+ * until all distances are found. If the iterations stop before that, the
+ * average distance and the effective diameter are NaN, because they
+ * depend on the distances not found.
+ * @config
+ */
+private static final String PAR_MAXD = "maxd";
+
+/**
+ * The fraction of the reachable pairs used to define the effective
+ * diameter. Defaults to 0.9.
+ * @config
+ */
+private static final String PAR_QUANTILE = "quantile";
+
+private final int p;
+
+private final int maxd;
+
+private final double quantile;
+
+// ===================== initialization ================================
+// =====================================================================
+
+/**
+ * Standard constructor that reads the configuration parameters.
+ * Invoked by the simulation engine.
+ * @param name the configuration prefix for this class
+ */
+public NeighbourhoodFunction(String name)
+{
+	super(name);
+	p = Configuration.getInt(name + "." + PAR_P, 7);
+	if (p < 4 || p > 16)
+		throw new IllegalParameterException(name + "." + PAR_P,
+			"must be between 4 and 16");
+	maxd = Configuration.getInt(name + "." + PAR_MAXD, Integer.MAX_VALUE);
+	quantile = Configuration.getDouble(name + "." + PAR_QUANTILE, 0.9);
+	if (quantile <= 0 || quantile > 1)
+		throw new IllegalParameterException(name + "." + PAR_QUANTILE,
+			"must be in (0,1]");
+}
+
+// ====================== methods ======================================
+// =====================================================================
+
+/**
+* Prints the estimated average distance and effective diameter in one
+* line, separated by a space, and in a second line the estimated
+* neighbourhood function: the number of pairs of nodes (x,y) such that y is
+* reachable from x in at most 0, 1, 2, etc steps, separated by spaces.
+* Unreachable pairs are ignored, like in {@link BallExpansion}.
+* The hash function of the counters is seeded from {@link CommonState#r}.
+* @return always false
+*/
+public boolean execute() {
+
+	updateGraph();
+	HyperANF anf = new HyperANF(getCSR(), p);
+	anf.run(maxd, CommonState.r.nextLong());
+	System.out.println(name + ": " + anf.averageDistance() + " " +
+		anf.effectiveDiameter(quantile));
+	final double[] nf = anf.neighbourhoodFunction();
+	for (int t = 0; t < nf.length; ++t) {
+		System.out.print(nf[t] + " ");
+	}
+	System.out.println();
+	return false;
+}
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.reports;
+
+import peersim.config.*;
+import peersim.core.*;
+import peersim.graph.CSRGraph;
+import peersim.graph.GraphPartitioner;
+
+/**
+ * Control to observe how well the graph can be split into parts for
+ * parallel or distributed simulation. The graph is partitioned by
+ * {@link GraphPartitioner}, and the cut edges are compared with those of
+ * the simple partition into contiguous ranges of node indexes, which is
+ * what an engine that splits the node array gets without partitioning.
+ */
+public class PartitionStats extends GraphObserver
+{
+
+// ===================== fields =======================================
+// ====================================================================
+
+/**
+ * The number of parts. Defaults to 2.
+ * @config
+ */
+private static final String PAR_K = "k";
+
+/**
+ * The allowed imbalance: no part can be larger than (1+imbalance) times
+ * the average part size. Defaults to 0.03.
+ * @config
+ */
+private static final String PAR_IMBALANCE = "imbalance";
+
+private final int k;
+
+private final double imbalance;
+
+// ===================== initialization ================================
+// =====================================================================
+
+/**
+ * Standard constructor that reads the configuration parameters.
+ * Invoked by the simulation engine.
+ * @param name the configuration prefix for this class
+ */
+public PartitionStats(String name)
+{
+	super(name);
+	k = Configuration.getInt(name + "." + PAR_K, 2);
+	if (k < 1)
+		throw new IllegalParameterException(name + "." + PAR_K,
+			"must be positive");
+	imbalance = Configuration.getDouble(name + "." + PAR_IMBALANCE, 0.03);
+	if (imbalance < 0)
+		throw new IllegalParameterException(name + "." + PAR_IMBALANCE,
+			"must not be negative");
+}
+
+// ====================== methods ======================================
+// =====================================================================
+
+/**
+* Partitions the graph and prints the number of cut edges, the fraction
+* of the edges that are cut, and the size of the largest part divided by
+* the average part size. These are followed by the number and the
+* fraction of cut edges of the partition into contiguous index ranges.
+* Values are separated by spaces. If the graph is undirected, each edge
+* is counted once. The random decisions of the partitioner are seeded from
+* {@link CommonState#r}.
+* @return always false
+*/
+public boolean execute()
+{
+	updateGraph();
+	final CSRGraph csr = getCSR();
+	final int size = csr.size();
+	final GraphPartitioner gp = new GraphPartitioner(csr);
+	gp.setImbalance(imbalance);
+	final int[] part = gp.partition(k, CommonState.r.nextLong());
+
+	final int[] psize = new int[k];
+	int max = 0;
+	for (int i = 0; i < size; ++i)
+		max = Math.max(max, ++psize[part[i]]);
+
+	final int[] blocks = new int[size];
+	for (int i = 0; i < size; ++i)
+		blocks[i] = (int) ((long) i * k / size);
+
+	final double edges = (csr.directed() ? csr.edges() : csr.edges() / 2);
+	final long cut = GraphPartitioner.cut(csr, part);
+	final long bcut = GraphPartitioner.cut(csr, blocks);
+	System.out.println(name + ": " + cut + " " + cut / edges + " " +
+		(double) max * k / size + " " + bcut + " " + bcut / edges);
+	return false;
+}
+
+}
@@ -22,6 +22,7 @@ import peersim.core.*;
 import peersim.config.Configuration;
 import peersim.graph.*;
 import peersim.util.IncrementalStats;
+import peersim.util.RandPermutation;
 import java.util.Map;
 import java.util.Iterator;
 
@@ -33,6 +34,10 @@ import java.util.Iterator;
  * shuffle the network</em> (see {@value #PAR_N}) so if this is an issue,
  * it should not be used,
  * or only after the simulation has finished.
+ * <p>
+ * If {@value #PAR_PERCOLATION} is set, the same statistics are computed
+ * using the algorithm of Newman and Ziff, which is much faster and has no
+ * side effects.
  */
 public class RandRemoval extends GraphObserver
 {
@@ -49,8 +54,25 @@ public class RandRemoval extends GraphObserver
  */
 private static final String PAR_N = "n";
 
+/**
+ * If defined, the removal procedure is simulated as site percolation,
+ * using the algorithm of Newman and Ziff: the nodes that remain are added to
+ * an initially empty graph in random order, and the clusters are
+ * maintained by a {@link UnionFind} structure. This way one run of the
+ * procedure costs a single pass over the edges, instead of recalculating
+ * the clusters for all percentages. The network is not shuffled;
+ * the first run uses the order of the nodes in the network, just like
+ * the default mode, and further runs use random permutations.
+ * Not defined by default.
+ * @config
+ */
+private static final String PAR_PERCOLATION = "percolation";
+
 private final int n;
 
+/** {@link #PAR_PERCOLATION} */
+private final boolean percolation;
+
 // ===================== initialization ================================
 // =====================================================================
 
@@ -63,6 +85,7 @@ public RandRemoval(String name)
 {
 	super(name);
 	n = Configuration.getInt(name + "." + PAR_N, 1);
+	percolation = Configuration.contains(name + "." + PAR_PERCOLATION);
 }
 
 // ====================== methods ======================================
@@ -79,6 +102,8 @@ public RandRemoval(String name)
 * percentage values a line is printed that contains the respective averages,
 * first the average maximal cluster size, followed by the average number
 * of clusters.
+* If {@value #PAR_PERCOLATION} is defined, the same lines are printed, but
+* the network is not shuffled.
 * @return always false
 */
 public boolean execute()
@@ -96,7 +121,10 @@ public boolean execute()
 		maxClust[i] = new IncrementalStats();
 		clustNum[i] = new IncrementalStats();
 	}
-	for (int j = 0; j < n; ++j) {
+	if (percolation) {
+		percolation(maxClust, clustNum);
+	}
+	else for (int j = 0; j < n; ++j) {
 		PrefixSubGraph sg = new PrefixSubGraph(g);
 		IncrementalStats stats = new IncrementalStats();
 		for (int i = 0; i < steps; i++) {
@@ -119,4 +147,63 @@ public boolean execute()
 	return false;
 }
 
+// ---------------------------------------------------------------------
+
+/**
+* Performs the experiments of {@link #execute} using the algorithm of
+* Newman and Ziff. Removing the nodes of a random permutation from the
+* end is the same as adding them to an empty graph from the beginning,
+* so the nodes are added in permutation order to a {@link UnionFind}
+* structure, linking each new node to the nodes added before it.
+* The largest cluster size and the number of clusters are recorded when
+* the number of nodes added reaches one of the sizes of interest.
+*/
+private void percolation(IncrementalStats[] maxClust,
+		IncrementalStats[] clustNum)
+{
+	final CSRGraph csr = getCSR();
+	final CSRGraph tr = csr.transpose();
+	final int size = csr.size();
+	final int steps = maxClust.length;
+	final int[] pos = new int[size];
+	final UnionFind uf = new UnionFind(size);
+	final RandPermutation rp = new RandPermutation(CommonState.r);
+	for (int j = 0; j < n; ++j) {
+		if (j > 0) rp.setPermutation(size);
+		for (int k = 0; k < size; ++k)
+			pos[j > 0 ? rp.get(k) : k] = k;
+		uf.clear();
+		// the sizes of interest, decreasing with i
+		int i = steps - 1;
+		for (int k = 0; k <= size && i >= 0; ++k) {
+			while (i >= 0 && size / 2 - i * (size / 100) == k) {
+				// clusters of the nodes with pos<k
+				maxClust[i].add(k > 0 ? uf.maxSize() :
+					Double.NEGATIVE_INFINITY);
+				clustNum[i].add(uf.sets());
+				--i;
+			}
+			if (k == size) break;
+			final int v = (j > 0 ? rp.get(k) : k);
+			uf.add();
+			link(uf, pos, csr, v, k);
+			link(uf, pos, tr, v, k);
+		}
+	}
+}
+
+// ---------------------------------------------------------------------
+
+/**
+* Links the node at position k with its neighbors in the given graph that
+* are at lower positions. The elements of uf are positions.
+*/
+private static void link(UnionFind uf, int[] pos, CSRGraph g, int v, int k)
+{
+	for (int e = g.offsets[v]; e < g.offsets[v + 1]; ++e) {
+		final int p = pos[g.targets[e]];
+		if (p < k) uf.union(k, p);
+	}
+}
+
 }
@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.reports;
+
+import peersim.config.*;
+import peersim.core.*;
+import peersim.graph.CSRGraph;
+import peersim.graph.SpMV;
+
+/**
+ * Control to observe how fast a random walk mixes on the undirected
+ * version of the overlay. The transition matrix of the simple random walk
+ * is P=D<sup>-1</sup>A, where A is the adjacency matrix and D is the
+ * diagonal matrix of the degrees. P is similar to the symmetric matrix
+ * N=D<sup>-1/2</sup>AD<sup>-1/2</sup>, so they have the same real
+ * eigenvalues 1=&lambda;<sub>1</sub>&ge;&lambda;<sub>2</sub>&ge;...
+ * The largest eigenvalue belongs to the eigenvector with elements
+ * sqrt(d<sub>i</sub>) of N. The second largest eigenvalue modulus (SLEM),
+ * max(|&lambda;<sub>2</sub>|,|&lambda;<sub>n</sub>|), determines the speed
+ * of convergence to the stationary distribution.
+ * <p>
+ * The SLEM is estimated by power iteration with N on vectors orthogonal to
+ * the first eigenvector, using the parallel {@link SpMV} kernel.
+ * The estimate never exceeds the true SLEM. It converges slowly if
+ * other eigenvalues are close to the SLEM, as in the case of rings; then
+ * {@value #PAR_MAXITER} should be increased and {@value #PAR_TOL}
+ * decreased.
+ * If {@value #PAR_LAZY} is defined, the lazy random walk is considered
+ * instead, which stays at the current node with probability 1/2. Its
+ * transition matrix is (I+P)/2, and its eigenvalues are non-negative.
+ * <p>
+ * Only nodes that have at least one neighbour take part in the walk.
+ */
+public class SpectralGap extends GraphObserver
+{
+
+// ===================== fields =======================================
+// ====================================================================
+
+/**
+ * If defined, the lazy random walk is considered. Not defined by default.
+ * @config
+ */
+private static final String PAR_LAZY = "lazy";
+
+/**
+ * The iteration stops if the relative change of the estimate is smaller
+ * than this. Defaults to 1e-6.
+ * @config
+ */
+private static final String PAR_TOL = "tol";
+
+/**
+ * The maximal number of iterations. Defaults to 1000.
+ * @config
+ */
+private static final String PAR_MAXITER = "maxiter";
+
+/**
+ * The distance from the stationary distribution used for the bound on
+ * the mixing time. Defaults to 0.25.
+ * @config
+ */
+private static final String PAR_EPSILON = "epsilon";
+
+private final boolean lazy;
+
+private final double tol;
+
+private final int maxiter;
+
+private final double epsilon;
+
+// ===================== initialization ================================
+// =====================================================================
+
+/**
+ * Standard constructor that reads the configuration parameters.
+ * Invoked by the simulation engine.
+ * @param name the configuration prefix for this class
+ */
+public SpectralGap(String name)
+{
+	super(name);
+	if (!undir)
+		throw new IllegalParameterException(name + "." + PAR_UNDIR,
+			"the random walk is defined only on the undirected graph");
+	lazy = Configuration.contains(name + "." + PAR_LAZY);
+	tol = Configuration.getDouble(name + "." + PAR_TOL, 1e-6);
+	maxiter = Configuration.getInt(name + "." + PAR_MAXITER, 1000);
+	epsilon = Configuration.getDouble(name + "." + PAR_EPSILON, 0.25);
+}
+
+// ====================== methods ======================================
+// =====================================================================
+
+/**
+* Prints the estimated SLEM, the spectral gap (1-SLEM), an upper bound
+* on the mixing time and the number of iterations performed, separated by
+* spaces. The mixing time bound is
+* ln(1/(&epsilon;&pi;<sub>min</sub>))/gap, where &epsilon; is
+* {@value #PAR_EPSILON} and &pi;<sub>min</sub> is the smallest stationary
+* probability. If the graph is not connected, the SLEM is 1 and the bound is
+* infinite. The initial vector of the iteration is drawn using
+* {@link CommonState#r}.
+* @return always false
+*/
+public boolean execute()
+{
+	updateGraph();
+	final CSRGraph csr = getCSR();
+	final SpMV spmv = new SpMV(csr);
+	final int size = csr.size();
+
+	// first eigenvector of N and the stationary distribution
+	final double[] v1 = new double[size];
+	final double[] isd = new double[size]; // 1/sqrt(d) or 0
+	int mindeg = Integer.MAX_VALUE;
+	long vol = 0;
+	for (int i = 0; i < size; ++i) {
+		final int d = csr.degree(i);
+		v1[i] = Math.sqrt(d);
+		isd[i] = (d > 0 ? 1 / v1[i] : 0);
+		if (d > 0 && d < mindeg)
+			mindeg = d;
+		vol += d;
+	}
+	if (vol == 0) {
+		System.out.println(name + ": " + Double.NaN + " " + Double.NaN +
+			" " + Double.NaN + " 0");
+		return false;
+	}
+	final double n1 = spmv.norm(v1);
+	for (int i = 0; i < size; ++i)
+		v1[i] /= n1;
+
+	final double[] x = new double[size];
+	final double[] y = new double[size];
+	final double[] t = new double[size];
+	for (int i = 0; i < size; ++i)
+		x[i] = (isd[i] > 0 ? CommonState.r.nextDouble() - 0.5 : 0);
+	orthogonalize(spmv, x, v1);
+	scale(x, 1 / spmv.norm(x));
+
+	double slem = 0;
+	int iter = 0;
+	while (iter < maxiter) {
+		iter++;
+		// y = N x
+		for (int i = 0; i < size; ++i)
+			t[i] = x[i] * isd[i];
+		spmv.multiply(t, y);
+		for (int i = 0; i < size; ++i) {
+			y[i] *= isd[i];
+			if (lazy)
+				y[i] = (x[i] + y[i]) / 2;
+		}
+		orthogonalize(spmv, y, v1);
+		// x is a unit vector, so |Nx| converges to the SLEM
+		final double est = spmv.norm(y);
+		final boolean done = Math.abs(est - slem) <= tol * est;
+		slem = est;
+		if (est == 0)
+			break;
+		for (int i = 0; i < size; ++i)
+			x[i] = y[i] / est;
+		if (done)
+			break;
+	}
+	slem = Math.min(slem, 1);
+
+	final double gap = 1 - slem;
+	final double pimin = (double) mindeg / vol;
+	final double mixing = Math.log(1 / (epsilon * pimin)) / gap;
+	System.out.println(name + ": " + slem + " " + gap + " " + mixing + " " +
+		iter);
+	return false;
+}
+
+// ---------------------------------------------------------------------
+
+/** Removes the component of x along the unit vector v. */
+private static void orthogonalize(SpMV spmv, double[] x, double[] v)
+{
+	final double p = spmv.dot(x, v);
+	for (int i = 0; i < x.length; ++i)
+		x[i] -= p * v[i];
+}
+
+// ---------------------------------------------------------------------
+
+private static void scale(double[] x, double a)
+{
+	for (int i = 0; i < x.length; ++i)
+		x[i] *= a;
+}
+
+}
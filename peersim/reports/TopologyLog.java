@@ -0,0 +1,508 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.reports;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import peersim.config.*;
+import peersim.core.*;
+import peersim.util.FileNameGenerator;
+
+/**
+ * Records the evolution of the topology of a {@link Linkable} protocol in a
+ * compressed binary log. The first execution records the full graph, and
+ * later executions record only the changes since the previous
+ * execution: the links that were added and removed, and the nodes that
+ * joined and left the network. The log can be read with
+ * {@link TopologyLogReader}, which can rebuild the graph at any recorded
+ * time.
+ * <p>
+ * Nodes are identified by {@link Node#getID}, so the log is not affected by
+ * changes of node indexes. The links are recorded as they are stored in the
+ * protocol, irrespective of the fail state of the nodes.
+ * <p>
+ * The simulation thread only copies the overlay into primitive arrays.
+ * Computing the changes, the compression and the output are done by a
+ * background thread, so the simulation is slowed down only if the
+ * background thread falls behind by more than {@value #QUEUE} snapshots.
+ * The log is completed when the JVM exits.
+ * <p>
+ * The log is a stream compressed by {@link Deflater} that starts with
+ * the int {@value #MAGIC}, followed by records. Each record starts with a
+ * byte that is {@value #FULL} if the record contains the full graph, or
+ * {@value #DELTA} if it contains changes, and the time of the execution,
+ * followed by the number of nodes in the record, and the nodes in
+ * increasing order of ID. Each node starts with the difference of its ID
+ * and that of the previous node (or the ID itself for the first node),
+ * followed by -1 if the node left the network. Otherwise it is followed by
+ * the number of added links, the number of removed links, and the IDs of
+ * the added and the removed neighbours, both in increasing order and
+ * encoded as differences like the node IDs. Nodes that joined the network
+ * are recorded with all their links as added links. All numbers except
+ * the magic number and the type are written as variable length integers
+ * (seven bits in each byte, least significant first, the highest bit is
+ * set if more bytes follow), where -1 is written as 0 and every other
+ * value x as x+1.
+ */
+public class TopologyLog implements Control
+{
+
+//--------------------------------------------------------------------------
+//Parameters
+//--------------------------------------------------------------------------
+
+/**
+ * The {@link Linkable} protocol to observe.
+ * @config
+ */
+private static final String PAR_PROT = "protocol";
+
+/**
+ * The prefix of the name of the log file. The extension is ".dlog" and
+ * after the prefix the name contains a numeric index that is incremented
+ * for each experiment (see {@link FileNameGenerator}).
+ * @config
+ */
+private static final String PAR_BASENAME = "outf";
+
+/**
+ * The compression level between 0 (no compression) and 9 (best
+ * compression). Defaults to 1, which is the fastest.
+ * @config
+ */
+private static final String PAR_LEVEL = "level";
+
+//--------------------------------------------------------------------------
+//Constants
+//--------------------------------------------------------------------------
+
+/** The first four bytes of the uncompressed stream */
+static final int MAGIC = 0x5053444c;
+
+/** Type of records that contain the full graph */
+static final int FULL = 0;
+
+/** Type of records that contain changes */
+static final int DELTA = 1;
+
+/** The maximal number of records waiting for the background thread */
+static final int QUEUE = 8;
+
+/** Marks the end of the queue */
+private static final Snapshot END =
+	new Snapshot(0, new long[0], new int[1], new long[0]);
+
+//--------------------------------------------------------------------------
+//Fields
+//--------------------------------------------------------------------------
+
+/** The name of this observer in the configuration */
+private final String name;
+
+/** {@link #PAR_PROT} */
+private final int pid;
+
+/** The name of the log file */
+private final String file;
+
+/** {@link #PAR_LEVEL} */
+private final int level;
+
+/** The snapshots waiting for the background thread */
+private final BlockingQueue<Snapshot> queue =
+	new ArrayBlockingQueue<Snapshot>(QUEUE);
+
+/** The background thread, created at the first execution */
+private Thread writer = null;
+
+/** True if the log is closed */
+private volatile boolean closed = false;
+
+/** The error of the background thread, if any */
+private volatile IOException error = null;
+
+//--------------------------------------------------------------------------
+//Initialization
+//--------------------------------------------------------------------------
+
+/**
+ * Standard constructor that reads the configuration parameters.
+ * Invoked by the simulation engine.
+ * @param name the configuration prefix for this class
+ */
+public TopologyLog(String name)
+{
+	this.name = name;
+	pid = Configuration.getPid(name + "." + PAR_PROT);
+	file = new FileNameGenerator(Configuration.getString(name + "." +
+		PAR_BASENAME), ".dlog").nextCounterName();
+	level = Configuration.getInt(name + "." + PAR_LEVEL, 1);
+	if (level < 0 || level > 9)
+		throw new IllegalParameterException(name + "." + PAR_LEVEL,
+			"must be between 0 and 9");
+}
+
+//--------------------------------------------------------------------------
+//Methods
+//--------------------------------------------------------------------------
+
+/**
+ * Takes a snapshot of the overlay and passes it to the background thread,
+ * which records the changes since the last execution, or the full graph at
+ * the first execution. Prints the name of the log file at the first
+ * execution, and the number of nodes and links in the snapshot at every
+ * execution.
+ * @return always false
+ */
+public boolean execute()
+{
+	if (error != null)
+		throw new RuntimeException(name + ": writing " + file + " failed",
+			error);
+	if (closed)
+		throw new IllegalStateException(name + ": log is closed");
+	if (writer == null)
+		start();
+
+	final int size = Network.size();
+	final long[] ids = new long[size];
+	final int[] start = new int[size + 1];
+	for (int i = 0; i < size; ++i) {
+		final Node n = Network.get(i);
+		ids[i] = n.getID();
+		start[i + 1] = start[i] + ((Linkable) n.getProtocol(pid)).degree();
+	}
+	final long[] nbs = new long[start[size]];
+	for (int i = 0; i < size; ++i) {
+		final Linkable link = (Linkable) Network.get(i).getProtocol(pid);
+		for (int j = start[i]; j < start[i + 1]; ++j)
+			nbs[j] = link.getNeighbor(j - start[i]).getID();
+	}
+	try {
+		queue.put(new Snapshot(CommonState.getTime(), ids, start, nbs));
+	} catch (InterruptedException e) {
+		throw new RuntimeException(e);
+	}
+	System.out.println(name + ": " + size + " " + nbs.length);
+	return false;
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Waits until all records are written and closes the log. Later
+ * executions are not allowed. This is called automatically when the JVM
+ * exits.
+ */
+public synchronized void close()
+{
+	if (writer == null || closed)
+		return;
+	closed = true;
+	try {
+		queue.put(END);
+		writer.join();
+	} catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+	}
+}
+
+//--------------------------------------------------------------------------
+
+/** Writes a record, storing the error if it fails. */
+private void write(OutputStream os, byte[] rec)
+{
+	try {
+		os.write(rec);
+	} catch (IOException e) {
+		error = e;
+	}
+}
+
+//--------------------------------------------------------------------------
+
+/** Opens the file and starts the background thread. */
+private void start()
+{
+	final OutputStream os;
+	try {
+		os = new DeflaterOutputStream(new BufferedOutputStream(
+			new FileOutputStream(file), 1 << 16), new Deflater(level),
+			1 << 16);
+		new DataOutputStream(os).writeInt(MAGIC);
+	} catch (IOException e) {
+		throw new RuntimeException(name + ": cannot open " + file, e);
+	}
+	System.out.println(name + ": writing to file " + file);
+	writer = new Thread(name + " writer") {
+		public void run()
+		{
+			try {
+				// after an error the snapshots are consumed but dropped
+				Snapshot previous = null;
+				for (Snapshot s = queue.take(); s != END;
+						s = queue.take()) {
+					if (error != null)
+						continue;
+					s = s.sorted();
+					write(os, encode(previous, s));
+					previous = s;
+				}
+				if (error == null)
+					os.close();
+			} catch (IOException e) {
+				error = e;
+			} catch (InterruptedException e) {
+				// the JVM is exiting
+			}
+		}
+	};
+	writer.setDaemon(true);
+	writer.start();
+	Runtime.getRuntime().addShutdownHook(new Thread() {
+		public void run()
+		{
+			close();
+		}
+	});
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Returns the record of the changes from the previous snapshot to the
+ * current one, or of the full graph if there is no previous snapshot.
+ * Both snapshots must be sorted.
+ */
+private static byte[] encode(Snapshot previous, Snapshot current)
+{
+	final Snapshot p = (previous == null ? END : previous);
+	final Snapshot c = current;
+	final Output out = new Output();
+	out.write(previous == null ? FULL : DELTA);
+	out.writeVar(c.time);
+	final int countPos = out.size();
+	int count = 0;
+	long last = 0;
+	for (int i = 0, j = 0; i < p.ids.length || j < c.ids.length;) {
+		final long id;
+		if (j == c.ids.length ||
+				(i < p.ids.length && p.ids[i] < c.ids[j])) {
+			id = p.ids[i++];
+			out.writeVar(id - last);
+			out.writeVar(-1);
+		} else if (i == p.ids.length || c.ids[j] < p.ids[i]) {
+			id = c.ids[j];
+			out.writeVar(id - last);
+			writeDiff(out, c.nbs, 0, 0, c.nbs, c.start[j], c.start[j + 1]);
+			j++;
+		} else {
+			id = c.ids[j];
+			final int pf = p.start[i], pt = p.start[i + 1];
+			final int cf = c.start[j], ct = c.start[j + 1];
+			i++;
+			j++;
+			if (equal(p.nbs, pf, pt, c.nbs, cf, ct))
+				continue;
+			out.writeVar(id - last);
+			writeDiff(out, p.nbs, pf, pt, c.nbs, cf, ct);
+		}
+		last = id;
+		count++;
+	}
+	return out.withCount(countPos, count);
+}
+
+//--------------------------------------------------------------------------
+
+/** Returns true if the two ranges contain the same elements. */
+private static boolean equal(long[] a, int af, int at, long[] b, int bf,
+		int bt)
+{
+	if (at - af != bt - bf)
+		return false;
+	for (; af < at; ++af, ++bf)
+		if (a[af] != b[bf])
+			return false;
+	return true;
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Writes the added and removed neighbours of a node, given the sorted
+ * ranges of its neighbours before and after.
+ */
+private static void writeDiff(Output out, long[] before, int bf, int bt,
+		long[] now, int nf, int nt)
+{
+	int added = 0, removed = 0;
+	for (int i = bf, j = nf; i < bt || j < nt;) {
+		if (j == nt || (i < bt && before[i] < now[j])) {
+			removed++;
+			i++;
+		} else if (i == bt || now[j] < before[i]) {
+			added++;
+			j++;
+		} else {
+			i++;
+			j++;
+		}
+	}
+	out.writeVar(added);
+	out.writeVar(removed);
+	writeMissing(out, now, nf, nt, before, bf, bt, added);
+	writeMissing(out, before, bf, bt, now, nf, nt, removed);
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Writes the elements of the sorted range of a that are not in the sorted
+ * range of b, as differences.
+ */
+private static void writeMissing(Output out, long[] a, int af, int at,
+		long[] b, int bf, int bt, int count)
+{
+	long last = 0;
+	for (int i = af, j = bf; i < at && count > 0; ++i) {
+		while (j < bt && b[j] < a[i])
+			j++;
+		if (j < bt && b[j] == a[i])
+			continue;
+		out.writeVar(a[i] - last);
+		last = a[i];
+		count--;
+	}
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Reads a variable length integer written by {@link Output#writeVar}.
+ * @throws EOFException if the stream ends
+ */
+static long readVar(InputStream in) throws IOException
+{
+	long x = 0;
+	for (int shift = 0;; shift += 7) {
+		final int b = in.read();
+		if (b < 0)
+			throw new EOFException();
+		x |= (long) (b & 0x7f) << shift;
+		if ((b & 0x80) == 0)
+			return x - 1;
+	}
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * The overlay at one execution in compressed sparse row format: the
+ * neighbour IDs of the node with ID <code>ids[i]</code> are
+ * <code>nbs[start[i]]</code> to <code>nbs[start[i+1]-1]</code>.
+ */
+private static class Snapshot
+{
+
+	final long time;
+
+	final long[] ids;
+
+	final int[] start;
+
+	final long[] nbs;
+
+	Snapshot(long time, long[] ids, int[] start, long[] nbs)
+	{
+		this.time = time;
+		this.ids = ids;
+		this.start = start;
+		this.nbs = nbs;
+	}
+
+	/**
+	 * Returns a copy of this snapshot with the nodes and the neighbours of
+	 * each node in increasing order of ID.
+	 */
+	Snapshot sorted()
+	{
+		final long[] sids = ids.clone();
+		Arrays.sort(sids);
+		final int[] pos = new int[ids.length];
+		final int[] sstart = new int[start.length];
+		for (int i = 0; i < ids.length; ++i) {
+			pos[i] = Arrays.binarySearch(sids, ids[i]);
+			sstart[pos[i] + 1] = start[i + 1] - start[i];
+		}
+		for (int i = 0; i < ids.length; ++i)
+			sstart[i + 1] += sstart[i];
+		final long[] snbs = new long[nbs.length];
+		for (int i = 0; i < ids.length; ++i) {
+			final int to = sstart[pos[i]];
+			System.arraycopy(nbs, start[i], snbs, to, start[i + 1] - start[i]);
+			Arrays.sort(snbs, to, to + start[i + 1] - start[i]);
+		}
+		return new Snapshot(time, sids, sstart, snbs);
+	}
+}
+
+//--------------------------------------------------------------------------
+
+/** A byte buffer that can write variable length integers. */
+private static class Output extends ByteArrayOutputStream
+{
+
+	Output()
+	{
+		super(1024);
+	}
+
+	/** Writes x+1 in the variable length format. */
+	void writeVar(long x)
+	{
+		x++;
+		while ((x & ~0x7fL) != 0) {
+			write((int) (x & 0x7f) | 0x80);
+			x >>>= 7;
+		}
+		write((int) x);
+	}
+
+	/**
+	 * Returns the content with the given number inserted at the given
+	 * position.
+	 */
+	byte[] withCount(int pos, int count)
+	{
+		final Output c = new Output();
+		c.writeVar(count);
+		final byte[] res = new byte[size() + c.size()];
+		System.arraycopy(buf, 0, res, 0, pos);
+		System.arraycopy(c.buf, 0, res, pos, c.size());
+		System.arraycopy(buf, pos, res, pos + c.size(), size() - pos);
+		return res;
+	}
+}
+
+}
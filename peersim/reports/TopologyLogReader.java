@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.reports;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.InflaterInputStream;
+import peersim.graph.CSRGraph;
+
+/**
+ * Reads the logs written by {@link TopologyLog} and rebuilds the recorded
+ * graphs. The reader keeps the graph at the time of the last record read.
+ * Records are read one by one with {@link #next}, or up to a given time
+ * with {@link #seek}. The current graph is returned by {@link #getGraph}, in
+ * which the node with index i has ID <code>getIDs()[i]</code>.
+ * <p>
+ * Example: the graph at time 100.
+ * <pre>
+ * TopologyLogReader r = new TopologyLogReader("topology00000000.dlog");
+ * r.seek(100);
+ * CSRGraph g = r.getGraph();
+ * long[] ids = r.getIDs();
+ * r.close();
+ * </pre>
+ */
+public class TopologyLogReader
+{
+
+//--------------------------------------------------------------------------
+//Fields
+//--------------------------------------------------------------------------
+
+private final InputStream in;
+
+/** The sorted neighbour IDs of each node, by ID */
+private final HashMap<Long, long[]> graph = new HashMap<Long, long[]>();
+
+/** The time of the last record read, or -1 */
+private long time = -1;
+
+/** The type of the next record, or -1 at the end of the log */
+private int nextType;
+
+/** The time of the next record */
+private long nextTime;
+
+//--------------------------------------------------------------------------
+//Initialization
+//--------------------------------------------------------------------------
+
+/**
+ * Opens the given log. The graph is empty until the first record is read.
+ * @throws IOException if the file cannot be read or it is not a log
+ */
+public TopologyLogReader(String file) throws IOException
+{
+	in = new BufferedInputStream(new InflaterInputStream(
+		new FileInputStream(file)), 1 << 16);
+	if (new DataInputStream(in).readInt() != TopologyLog.MAGIC) {
+		in.close();
+		throw new IOException(file + ": not a topology log");
+	}
+	readHead();
+}
+
+//--------------------------------------------------------------------------
+//Methods
+//--------------------------------------------------------------------------
+
+/**
+ * Reads the next record and applies it to the graph.
+ * @return false if there are no more records
+ */
+public boolean next() throws IOException
+{
+	if (nextType < 0)
+		return false;
+	if (nextType == TopologyLog.FULL)
+		graph.clear();
+	time = nextTime;
+	long id = 0;
+	final long count = TopologyLog.readVar(in);
+	for (long k = 0; k < count; ++k) {
+		id += TopologyLog.readVar(in);
+		final long added = TopologyLog.readVar(in);
+		if (added < 0) {
+			graph.remove(id);
+			continue;
+		}
+		final long removed = TopologyLog.readVar(in);
+		final long[] add = readIDs((int) added);
+		final long[] rem = readIDs((int) removed);
+		final long[] before = graph.get(id);
+		graph.put(id, apply(before == null ? add : before, add, rem,
+			before == null));
+	}
+	readHead();
+	return true;
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Reads all records up to and including the given time.
+ * @return the time of the last record read, which is -1 if no
+ * records were read yet
+ */
+public long seek(long t) throws IOException
+{
+	while (nextType >= 0 && nextTime <= t)
+		next();
+	return time;
+}
+
+//--------------------------------------------------------------------------
+
+/** Returns the time of the last record read, or -1 if none. */
+public long getTime()
+{
+	return time;
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Returns the time of the next record, or -1 if there are no more
+ * records.
+ */
+public long getNextTime()
+{
+	return (nextType < 0 ? -1 : nextTime);
+}
+
+//--------------------------------------------------------------------------
+
+/** Returns the number of nodes in the current graph. */
+public int size()
+{
+	return graph.size();
+}
+
+//--------------------------------------------------------------------------
+
+/** Returns the IDs of the nodes of the current graph in increasing order. */
+public long[] getIDs()
+{
+	final long[] ids = new long[graph.size()];
+	int i = 0;
+	for (long id : graph.keySet())
+		ids[i++] = id;
+	Arrays.sort(ids);
+	return ids;
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Returns a snapshot of the current graph. Node i is the node with the
+ * i-th smallest ID (see {@link #getIDs}). The graph is directed and the
+ * neighbour lists are sorted. Links to IDs that are not in the graph
+ * (that is, to nodes that have left the network) are not included.
+ */
+public CSRGraph getGraph()
+{
+	final long[] ids = getIDs();
+	final int n = ids.length;
+	final int[] offsets = new int[n + 1];
+	int m = 0;
+	for (int i = 0; i < n; ++i) {
+		for (long nb : graph.get(ids[i]))
+			if (Arrays.binarySearch(ids, nb) >= 0)
+				m++;
+		offsets[i + 1] = m;
+	}
+	final int[] targets = new int[m];
+	for (int i = 0, e = 0; i < n; ++i)
+		for (long nb : graph.get(ids[i])) {
+			final int j = Arrays.binarySearch(ids, nb);
+			if (j >= 0)
+				targets[e++] = j;
+		}
+	return new CSRGraph(offsets, targets, true, true);
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Returns the IDs of the neighbours of the given node in increasing order,
+ * or null if the node is not in the current graph. The array must not be
+ * modified.
+ */
+public long[] getNeighbours(long id)
+{
+	return graph.get(id);
+}
+
+//--------------------------------------------------------------------------
+
+public void close() throws IOException
+{
+	in.close();
+}
+
+//--------------------------------------------------------------------------
+
+/** Reads the type and time of the next record. */
+private void readHead() throws IOException
+{
+	nextType = in.read();
+	if (nextType >= 0)
+		nextTime = TopologyLog.readVar(in);
+}
+
+//--------------------------------------------------------------------------
+
+private long[] readIDs(int count) throws IOException
+{
+	final long[] ids = new long[count];
+	long last = 0;
+	for (int i = 0; i < count; ++i)
+		ids[i] = (last += TopologyLog.readVar(in));
+	return ids;
+}
+
+//--------------------------------------------------------------------------
+
+/**
+ * Returns the sorted array before with the sorted arrays add added and rem
+ * removed. If fresh is true, before is the same as add.
+ */
+private static long[] apply(long[] before, long[] add, long[] rem,
+		boolean fresh)
+{
+	if (fresh || (add.length == 0 && rem.length == 0))
+		return before;
+	final long[] res = new long[before.length + add.length - rem.length];
+	int k = 0;
+	for (int i = 0, a = 0, r = 0; i < before.length || a < add.length;) {
+		if (a == add.length || (i < before.length && before[i] < add[a])) {
+			while (r < rem.length && rem[r] < before[i])
+				r++;
+			if (r < rem.length && rem[r] == before[i])
+				i++;
+			else
+				res[k++] = before[i++];
+		} else
+			res[k++] = add[a++];
+	}
+	return res;
+}
+
+}
@@ -0,0 +1,399 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.transport;
+
+import java.util.Arrays;
+import peersim.config.*;
+import peersim.core.*;
+import peersim.edsim.*;
+
+
+/**
+ * This transport protocol models the limited upload and download capacity
+ * of nodes, on top of another transport that defines the propagation
+ * latency (for example {@link E2ETransport}). The size of each message
+ * is given by a {@link MessageSizer}, and sending it takes its size divided
+ * by the capacity, in addition to the time the message waits for the
+ * messages sent or received before it.
+ * <p>
+ * In "fifo" mode a message is sent completely through the uplink of the
+ * sender, then it propagates to the receiver, then it is received
+ * completely through the downlink of the receiver (store and forward).
+ * Both links serve messages in first-in first-out order. The downlink is
+ * reserved when the message is sent, so messages are received in the order
+ * they are sent, even if a message sent later would arrive earlier.
+ * In "fluid" mode the message is a flow from the sender to the
+ * receiver at the rate of the slower of the two links, which occupies
+ * both links for the same time. This approximates streaming transfers,
+ * where the transmission of large messages is not counted twice.
+ * <p>
+ * In both modes the delivery time is calculated when the message is sent,
+ * and the message is scheduled by {@link EDSimulator#add} as a single
+ * event. The underlying transport is used only for its latency, so it
+ * does not send the message.
+ * The times when the links become free are stored in arrays shared by all
+ * the instances, at a position assigned to each instance when it is
+ * cloned, so they do not depend on the indexes of the nodes. The positions
+ * of nodes removed from the network are reused (see {@link #clone}).
+ */
+public class BandwidthTransport implements Transport
+{
+
+//---------------------------------------------------------------------
+//Parameters
+//---------------------------------------------------------------------
+
+/**
+ * The name of the underlying transport protocol, which defines the
+ * propagation latency.
+ * @config
+ */
+private static final String PAR_TRANSPORT = "transport";
+
+/**
+ * The upload capacity of nodes, in size units per time unit. Can be
+ * changed for individual nodes by {@link #setUpload}. Defaults to
+ * infinity.
+ * @config
+ */
+private static final String PAR_UP = "up";
+
+/**
+ * The download capacity of nodes, in size units per time unit. Can be
+ * changed for individual nodes by {@link #setDownload}. Defaults to
+ * infinity.
+ * @config
+ */
+private static final String PAR_DOWN = "down";
+
+/**
+ * Either "fifo" or "fluid", as described in the class documentation.
+ * Defaults to "fifo".
+ * @config
+ */
+private static final String PAR_MODE = "mode";
+
+/**
+ * The class implementing {@link MessageSizer} that calculates the size
+ * of messages. If not defined, all messages have size {@value #PAR_SIZE}.
+ * @config
+ */
+private static final String PAR_SIZER = "sizer";
+
+/**
+ * The size of all messages if {@value #PAR_SIZER} is not defined.
+ * Defaults to 1.
+ * @config
+ */
+private static final String PAR_SIZE = "size";
+
+//---------------------------------------------------------------------
+//Fields
+//---------------------------------------------------------------------
+
+/**
+ * The state of the links of all the instances, which share the same
+ * object. Instances are indexed by {@link #slot}.
+ */
+private static final class Links
+{
+	/** The number of slots ever used */
+	int slots;
+
+	/** Upload and download capacities */
+	double[] up = new double[16], down = new double[16];
+
+	/** The times when the uplinks and downlinks become free */
+	double[] upFree = new double[16], downFree = new double[16];
+
+	/** The instance in each slot, or null if the slot is free */
+	BandwidthTransport[] owner = new BandwidthTransport[16];
+
+	/** The value of {@link #sweeps} when each slot was assigned */
+	int[] epoch = new int[16];
+
+	/** The free slots are free[0] to free[nfree-1] */
+	int[] free = new int[16];
+
+	int nfree;
+
+	/** The number of sweeps so far */
+	int sweeps;
+}
+
+/** Identifier of this transport protocol */
+private final int tid;
+
+/** Protocol identifier for the support transport protocol */
+private final int transport;
+
+/** True in fluid mode */
+private final boolean fluid;
+
+/** The sizer of messages, or null */
+private final MessageSizer sizer;
+
+/** The size of messages if there is no sizer */
+private final long size;
+
+/** The default capacities */
+private final double up, down;
+
+/** Shared by all the instances */
+private final Links links;
+
+/** The position of this instance in the arrays of {@link #links} */
+private int slot = -1;
+
+//---------------------------------------------------------------------
+//Initialization
+//---------------------------------------------------------------------
+
+/**
+ * Reads configuration parameters.
+ */
+public BandwidthTransport(String prefix)
+{
+	tid = CommonState.getPid();
+	transport = Configuration.getPid(prefix + "." + PAR_TRANSPORT);
+	up = Configuration.getDouble(prefix + "." + PAR_UP,
+		Double.POSITIVE_INFINITY);
+	down = Configuration.getDouble(prefix + "." + PAR_DOWN,
+		Double.POSITIVE_INFINITY);
+	if (!(up > 0))
+		throw new IllegalParameterException(prefix + "." + PAR_UP,
+			"must be positive");
+	if (!(down > 0))
+		throw new IllegalParameterException(prefix + "." + PAR_DOWN,
+			"must be positive");
+	final String mode = Configuration.getString(prefix + "." + PAR_MODE,
+		"fifo");
+	if (!mode.equals("fifo") && !mode.equals("fluid"))
+		throw new IllegalParameterException(prefix + "." + PAR_MODE,
+			"unknown mode '" + mode + "'");
+	fluid = mode.equals("fluid");
+	if (Configuration.contains(prefix + "." + PAR_SIZER))
+		sizer = (MessageSizer) Configuration.getInstance(
+			prefix + "." + PAR_SIZER);
+	else
+		sizer = null;
+	size = Configuration.getLong(prefix + "." + PAR_SIZE, 1);
+	if (size < 0)
+		throw new IllegalParameterException(prefix + "." + PAR_SIZE,
+			"must not be negative");
+	links = new Links();
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Clones the object, and assigns a position in the shared arrays
+ * to the clone, with the default capacities and free links.
+ * <p>
+ * The positions of instances whose nodes were removed from the
+ * {@link Network} are reused, so the arrays grow with the size of the
+ * network, not with the number of nodes ever created. When the arrays are
+ * full, the positions that are not used by the nodes in the network are
+ * freed, except those assigned after the previous such sweep, which
+ * may belong to nodes that are not added to the network yet. The arrays
+ * are enlarged only if less than a quarter of them can be freed.
+ * An instance whose position is freed must not be used any more.
+ */
+public Object clone()
+{
+	BandwidthTransport bt = null;
+	try { bt = (BandwidthTransport) super.clone(); }
+	catch( CloneNotSupportedException e ) {} // never happens
+	final Links l = links;
+	if (l.nfree == 0 && l.slots == l.up.length) {
+		sweep();
+		if (l.nfree < l.slots / 4) {
+			final int n = 2 * l.slots;
+			l.up = Arrays.copyOf(l.up, n);
+			l.down = Arrays.copyOf(l.down, n);
+			l.upFree = Arrays.copyOf(l.upFree, n);
+			l.downFree = Arrays.copyOf(l.downFree, n);
+			l.owner = Arrays.copyOf(l.owner, n);
+			l.epoch = Arrays.copyOf(l.epoch, n);
+			l.free = Arrays.copyOf(l.free, n);
+		}
+	}
+	bt.slot = (l.nfree > 0 ? l.free[--l.nfree] : l.slots++);
+	l.owner[bt.slot] = bt;
+	l.epoch[bt.slot] = l.sweeps;
+	l.up[bt.slot] = up;
+	l.down[bt.slot] = down;
+	l.upFree[bt.slot] = 0;
+	l.downFree[bt.slot] = 0;
+	return bt;
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Frees the positions that are not used by the nodes in the network and
+ * were assigned before the previous sweep.
+ */
+private void sweep()
+{
+	final Links l = links;
+	final boolean[] live = new boolean[l.slots];
+	for (int i = 0; i < Network.size(); ++i) {
+		final Node n = Network.get(i);
+		if (n == null) // the network is being created
+			continue;
+		final int s = ((BandwidthTransport) n.getProtocol(tid)).slot;
+		if (s >= 0)
+			live[s] = true;
+	}
+	for (int s = 0; s < l.slots; ++s) {
+		if (live[s] || l.owner[s] == null || l.epoch[s] == l.sweeps)
+			continue;
+		l.owner[s].slot = -1;
+		l.owner[s] = null;
+		l.free[l.nfree++] = s;
+	}
+	l.sweeps++;
+}
+
+//---------------------------------------------------------------------
+//Methods inherited by Transport
+//---------------------------------------------------------------------
+
+/**
+ * Reserves the links for the message and schedules its delivery, as
+ * described in the class documentation. If the sender or the receiver
+ * was removed from the network and its position was freed, the message
+ * is scheduled with the latency of the underlying transport only. If the
+ * underlying transport cannot reach the receiver (negative latency, see
+ * {@link Transport#getLatency}), the message is dropped without using
+ * the links.
+ */
+public void send(Node src, Node dest, Object msg, int pid)
+{
+	final BandwidthTransport s = (BandwidthTransport) src.getProtocol(tid);
+	final BandwidthTransport r = (BandwidthTransport) dest.getProtocol(tid);
+	final Links l = links;
+	final long now = CommonState.getTime();
+	final long latency = ((Transport) src.getProtocol(transport))
+		.getLatency(src, dest);
+	if (latency < 0)
+		return;
+	if (s.slot < 0 || r.slot < 0) {
+		EDSimulator.add(latency, msg, dest, pid);
+		return;
+	}
+	Object m = msg;
+	while (m instanceof WrappedMessage)
+		m = ((WrappedMessage) m).getPayload();
+	final double len = (sizer == null ? size : sizer.getSize(m));
+	final double end;
+	if (fluid) {
+		// the flow occupies the downlink latency later than the uplink
+		final double start = Math.max(now, Math.max(l.upFree[s.slot],
+			l.downFree[r.slot] - latency));
+		final double t = len / Math.min(l.up[s.slot], l.down[r.slot]);
+		l.upFree[s.slot] = start + t;
+		l.downFree[r.slot] = start + t + latency;
+		end = start + t + latency;
+	} else {
+		final double sent = Math.max(now, l.upFree[s.slot]) +
+			len / l.up[s.slot];
+		l.upFree[s.slot] = sent;
+		end = Math.max(sent + latency, l.downFree[r.slot]) +
+			len / l.down[r.slot];
+		l.downFree[r.slot] = end;
+	}
+	EDSimulator.add((long) Math.ceil(end) - now, msg, dest, pid);
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Returns the latency of the underlying protocol, that is, the
+ * propagation latency without transmission and queueing.
+ */
+public long getLatency(Node src, Node dest)
+{
+	Transport t = (Transport) src.getProtocol(transport);
+	return t.getLatency(src, dest);
+}
+
+//---------------------------------------------------------------------
+//Methods
+//---------------------------------------------------------------------
+
+/** Returns the upload capacity of the node hosting this instance. */
+public double getUpload()
+{
+	return links.up[slot];
+}
+
+//---------------------------------------------------------------------
+
+/** Sets the upload capacity of the node hosting this instance. */
+public void setUpload(double up)
+{
+	if (!(up > 0))
+		throw new IllegalArgumentException("invalid capacity " + up);
+	links.up[slot] = up;
+}
+
+//---------------------------------------------------------------------
+
+/** Returns the download capacity of the node hosting this instance. */
+public double getDownload()
+{
+	return links.down[slot];
+}
+
+//---------------------------------------------------------------------
+
+/** Sets the download capacity of the node hosting this instance. */
+public void setDownload(double down)
+{
+	if (!(down > 0))
+		throw new IllegalArgumentException("invalid capacity " + down);
+	links.down[slot] = down;
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Returns the time until the uplink of the node hosting this instance
+ * becomes free, that is, the time needed to send the queued messages.
+ */
+public double getUploadBacklog()
+{
+	return Math.max(0, links.upFree[slot] - CommonState.getTime());
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Returns the time until the downlink of the node hosting this instance
+ * becomes free. It includes messages that are still being sent by other
+ * nodes.
+ */
+public double getDownloadBacklog()
+{
+	return Math.max(0, links.downFree[slot] - CommonState.getTime());
+}
+
+}
@@ -18,11 +18,27 @@
 
 package peersim.transport;
 
+import java.io.*;
+import peersim.util.MappedBuffer;
 
 /**
  * This static singleton emulates an underlying router network
  * of fixed size, and stores the latency measurements for all pairs
  * of routers.
+ * <p>
+ * The latencies are stored either on the Java heap (see
+ * {@link #reset(int,boolean)}), or in a memory-mapped file (see
+ * {@link #reset(int,boolean,String,int,long)}). The mapped file does not
+ * use heap memory, and can be reopened instantly by later simulations
+ * (see {@link #load}). The file contains a header of {@value #HEADER}
+ * bytes: the int {@value #MAGIC}, the flags (int; 1 if the latencies are
+ * symmetric, plus 2 if the matrix is complete), the number of routers
+ * (int), the quantum (int), and a key (long) that identifies the source of
+ * the latencies. It is followed by the latencies in
+ * little-endian order: if the latencies are symmetric, the pairs (i,j)
+ * with i&gt;j are stored row by row, otherwise all pairs are stored row by
+ * row. If the quantum is 0 the latencies are ints, otherwise they are
+ * unsigned shorts in units of the quantum.
  *
  * @author Alberto Montresor
  * @version $Revision: 1.6 $
@@ -30,6 +46,26 @@ package peersim.transport;
 public class E2ENetwork
 {
 
+//---------------------------------------------------------------------
+//Constants
+//---------------------------------------------------------------------
+
+/** The length of the header of mapped files in bytes */
+public static final int HEADER = 32;
+
+/** The first four bytes of mapped files */
+public static final int MAGIC = 0x50534532;
+
+private static final int SYMMETRIC = 1;
+
+private static final int COMPLETE = 2;
+
+/**
+ * The largest quantum of 16 bit latencies. Larger quanta are rejected,
+ * because 65535 times the quantum would not fit in an int.
+ */
+public static final int MAX_QUANTUM = Integer.MAX_VALUE / 0xffff;
+
 //---------------------------------------------------------------------
 //Fields
 //---------------------------------------------------------------------
@@ -45,9 +81,19 @@ private static boolean symm;
 private static int size;
 
 /**
- * Latency distances between nodes.
+ * Latency distances between nodes, if they are stored on the heap.
+ * Null if they are stored in {@link #mapped}.
  */
 private static int[][] array;
+
+/** The mapped file, if the latencies are stored in a file, or null */
+private static MappedBuffer mapped;
+
+/**
+ * The unit of the 16 bit latencies in {@link #mapped}, or 0 if latencies
+ * are stored as ints.
+ */
+private static int quantum;
 	
 //---------------------------------------------------------------------
 //Initialization
@@ -71,6 +117,7 @@ public static void reset(int size, boolean symm)
 {
 	E2ENetwork.symm = symm;
 	E2ENetwork.size = size;
+	mapped = null;
 	array = new int[size][];
 	for (int i=0; i < size; i++) {
 		if (symm)
@@ -79,6 +126,110 @@ public static void reset(int size, boolean symm)
 			array[i] = new int[size];
 	}
 }
+
+//---------------------------------------------------------------------
+
+/**
+ * Resets the network, by creating a memory-mapped file for the
+ * latencies. If the file exists, it is overwritten. Initially all latencies
+ * between any pairs are set to be 0. When all latencies are set,
+ * {@link #complete} should be called, so that later simulations can
+ * reopen the file with {@link #load}.
+ * @param size the number or routers
+ * @param symm if latency is symmetric between all pairs of routers
+ * @param file the name of the file
+ * @param quantum if 0, latencies are stored as 32 bit integers. Otherwise
+ * they are stored in 16 bits, rounded to a multiple of quantum; latencies
+ * larger than 65535 times quantum are stored as 65535 times quantum.
+ * It must not be larger than {@link #MAX_QUANTUM}.
+ * @param key identifies the source of the latencies, see {@link #load}
+ * @throws IOException if the file cannot be created
+ */
+public static void reset(int size, boolean symm, String file, int quantum,
+		long key) throws IOException
+{
+	if (size < 0 || quantum < 0)
+		throw new IllegalArgumentException("negative size or quantum");
+	if (quantum > MAX_QUANTUM)
+		throw new IllegalArgumentException("quantum " + quantum +
+			" is larger than " + MAX_QUANTUM);
+	final long entries = (symm ? (long) size * (size - 1) / 2 :
+		(long) size * size);
+	final MappedBuffer buf = new MappedBuffer(file, HEADER +
+		entries * (quantum == 0 ? 4 : 2));
+	buf.putInt(0, MAGIC);
+	buf.putInt(4, symm ? SYMMETRIC : 0);
+	buf.putInt(8, size);
+	buf.putInt(12, quantum);
+	buf.putLong(16, key);
+	E2ENetwork.symm = symm;
+	E2ENetwork.size = size;
+	E2ENetwork.quantum = quantum;
+	array = null;
+	mapped = buf;
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Marks the memory-mapped file created by
+ * {@link #reset(int,boolean,String,int,long)} as complete, and writes it to
+ * the storage device. Has no effect if the latencies are on the heap.
+ */
+public static void complete()
+{
+	if (mapped == null || (mapped.getInt(4) & COMPLETE) != 0)
+		return;
+	mapped.force();
+	mapped.putInt(4, mapped.getInt(4) | COMPLETE);
+	mapped.force();
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Reopens a memory-mapped file created by
+ * {@link #reset(int,boolean,String,int,long)}, if it exists, it is
+ * complete, and it was created with the given symmetry, quantum and
+ * key. The file is mapped read-only, so the latencies cannot be changed
+ * by {@link #setLatency}. Nothing is read in advance, so opening is
+ * instantaneous.
+ * @param file the name of the file
+ * @param symm if latency is symmetric between all pairs of routers
+ * @param quantum the quantum of the latencies, see
+ * {@link #reset(int,boolean,String,int,long)}
+ * @param key the key the file was created with
+ * @return true if the file was opened, false if it does not exist or it
+ * is incomplete or has a different symmetry, quantum or key. In the latter
+ * case the network is not changed.
+ */
+public static boolean load(String file, boolean symm, int quantum, long key)
+{
+	if (!new File(file).isFile() || new File(file).length() < HEADER)
+		return false;
+	final MappedBuffer buf;
+	try {
+		buf = new MappedBuffer(file);
+	} catch (IOException e) {
+		return false;
+	}
+	final int flags = buf.getInt(4);
+	final int s = buf.getInt(8);
+	final int q = buf.getInt(12);
+	if (buf.getInt(0) != MAGIC || (flags & COMPLETE) == 0 || s < 0 ||
+			q != quantum || q > MAX_QUANTUM || buf.getLong(16) != key ||
+			((flags & SYMMETRIC) != 0) != symm)
+		return false;
+	final long entries = (symm ? (long) s * (s - 1) / 2 : (long) s * s);
+	if (buf.size() != HEADER + entries * (q == 0 ? 4 : 2))
+		return false;
+	E2ENetwork.symm = symm;
+	size = s;
+	E2ENetwork.quantum = q;
+	array = null;
+	mapped = buf;
+	return true;
+}
 	
 //---------------------------------------------------------------------
 
@@ -104,7 +255,13 @@ public static int getLatency(int sender, int receiver)
 			receiver = tmp;
 		}
 	} 
-	return array[sender][receiver];
+	if (array != null)
+		return array[sender][receiver];
+	check(sender, receiver);
+	final long k = index(sender, receiver);
+	if (quantum == 0)
+		return mapped.getInt(HEADER + 4 * k);
+	return (mapped.getShort(HEADER + 2 * k) & 0xffff) * quantum;
 }
 
 //---------------------------------------------------------------------
@@ -127,7 +284,21 @@ public static void setLatency(int sender, int receiver, int latency)
 			receiver = tmp;
 		}
 	} 
- 	array[sender][receiver] = latency;
+	if (array != null) {
+ 		array[sender][receiver] = latency;
+		return;
+	}
+	if (sender == receiver && symm)
+		throw new ArrayIndexOutOfBoundsException(receiver);
+	check(sender, receiver);
+	final long k = index(sender, receiver);
+	if (quantum == 0)
+		mapped.putInt(HEADER + 4 * k, latency);
+	else {
+		final long q = Math.min(0xffff, Math.max(0,
+			((long) latency + quantum / 2) / quantum));
+		mapped.putShort(HEADER + 2 * k, (short) q);
+	}
 }
 
 //---------------------------------------------------------------------
@@ -141,4 +312,56 @@ public static int getSize()
 	return size;
 }
 
+//---------------------------------------------------------------------
+
+/**
+ * Returns true if the latencies are stored in a memory-mapped file.
+ */
+public static boolean isMapped()
+{
+	return mapped != null;
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Returns a key for {@link #load} that identifies latencies read from the
+ * given file or class path resource and multiplied by the given ratio.
+ * The key depends on the name, and for files also on the length and the
+ * time of the last modification of the file.
+ */
+static long sourceKey(String source, double ratio)
+{
+	long h = source.hashCode();
+	final File f = new File(source);
+	if (f.isFile())
+		h = 31 * (31 * (31 * f.getAbsolutePath().hashCode() + f.length()) +
+			f.lastModified());
+	return 31 * h + Double.doubleToLongBits(ratio);
+}
+
+//---------------------------------------------------------------------
+
+/** Throws the exception that the heap array would throw. */
+private static void check(int sender, int receiver)
+{
+	if (sender < 0 || sender >= size)
+		throw new ArrayIndexOutOfBoundsException(sender);
+	if (receiver < 0 || receiver >= size)
+		throw new ArrayIndexOutOfBoundsException(receiver);
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Returns the position of the pair in the mapped file, in units of
+ * latencies. For symmetric networks sender must be larger than receiver.
+ */
+private static long index(int sender, int receiver)
+{
+	if (symm)
+		return (long) sender * (sender - 1) / 2 + receiver;
+	return (long) sender * size + receiver;
+}
+
 }
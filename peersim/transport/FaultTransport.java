@@ -0,0 +1,427 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.transport;
+
+import peersim.config.*;
+import peersim.core.*;
+import peersim.edsim.*;
+
+
+/**
+ * This transport protocol injects faults into the messages sent through
+ * an underlying transport, which defines their latency. The faults are
+ * applied by a pipeline of stages that are configured in the same
+ * protocol, so composing several faults does not need a chain of
+ * protocols. The stages are applied in the order given by
+ * {@value #PAR_STAGES}. A stage can drop a message, duplicate it, or
+ * delay it further; the copies created by duplication go through the
+ * rest of the pipeline independently. The surviving copies are scheduled
+ * by {@link EDSimulator#add} with the latency of the underlying transport
+ * plus their extra delays; the underlying transport does not send them.
+ * <p>
+ * The type of a stage is given by the beginning of its name, and its
+ * parameters are prefixed by its name. The following types exist:
+ * <ul>
+ * <li>"loss": drops each message with probability "p".</li>
+ * <li>"dup": duplicates each message with probability "p".</li>
+ * <li>"reorder": with probability "p", delays a message by a uniform
+ * random extra delay between 0 and "delay" (inclusive), so that it may
+ * arrive after messages sent later.</li>
+ * <li>"partition": between the times "from" (inclusive, defaults to 0)
+ * and "until" (exclusive, defaults to the end of the simulation), the
+ * nodes are split into "groups" groups (defaults to 2) by their ID modulo
+ * the number of groups, and messages between different groups are
+ * dropped.</li>
+ * </ul>
+ * For example:
+ * <pre>
+ * protocol.fault FaultTransport
+ * protocol.fault.transport urt
+ * protocol.fault.stages loss dup reorder
+ * protocol.fault.loss.p 0.05
+ * protocol.fault.dup.p 0.01
+ * protocol.fault.reorder.p 0.1
+ * protocol.fault.reorder.delay 500
+ * </pre>
+ * Random events do not draw a random number for each message: the number
+ * of messages until the next event is drawn from the geometric
+ * distribution, which gives the same distribution of events as
+ * independent draws with the given probability.
+ * <p>
+ * Each stage counts the messages that enter it and the messages it drops,
+ * duplicates or delays (see {@link #getInput} and {@link #getAffected}).
+ * A single instance is created and inserted in the protocol array of all
+ * nodes, so the counters are global.
+ */
+public final class FaultTransport implements Transport
+{
+
+//---------------------------------------------------------------------
+//Parameters
+//---------------------------------------------------------------------
+
+/**
+ * The name of the underlying transport protocol, which defines the
+ * latency of messages.
+ * @config
+ */
+private static final String PAR_TRANSPORT = "transport";
+
+/**
+ * The names of the stages, in the order they are applied, separated by
+ * spaces or commas.
+ * @config
+ */
+private static final String PAR_STAGES = "stages";
+
+//---------------------------------------------------------------------
+//Stages
+//---------------------------------------------------------------------
+
+/**
+ * Draws the number of trials until the next event of given probability
+ * from the geometric distribution.
+ */
+private static final class Skip
+{
+	private final double p;
+
+	/** Logarithm of the probability of no event */
+	private final double lq;
+
+	/** The number of trials without event before the next event */
+	private long left = -1;
+
+	Skip(double p)
+	{
+		this.p = p;
+		lq = Math.log1p(-p);
+	}
+
+	/** Returns true if the next trial is an event. */
+	boolean next()
+	{
+		if (p <= 0)
+			return false;
+		if (left < 0)
+			left = draw();
+		if (left > 0) {
+			left--;
+			return false;
+		}
+		left = draw();
+		return true;
+	}
+
+	private long draw()
+	{
+		return (long) (Math.log(1 - CommonState.r.nextDouble()) / lq);
+	}
+}
+
+//---------------------------------------------------------------------
+
+/** A stage of the pipeline */
+private static abstract class Stage
+{
+	final String name;
+
+	/** Counters */
+	long input, affected;
+
+	Stage(String name)
+	{
+		this.name = name;
+	}
+
+	/**
+	 * Applies the stage to copies 0 to n-1 of a message, whose extra
+	 * delays are in d.
+	 * @return the new number of copies
+	 */
+	abstract int apply(Node src, Node dest, long[] d, int n);
+}
+
+//---------------------------------------------------------------------
+
+private static final class Loss extends Stage
+{
+	private final Skip skip;
+
+	Loss(String prefix, String name)
+	{
+		super(name);
+		skip = new Skip(probability(prefix + "." + name));
+	}
+
+	int apply(Node src, Node dest, long[] d, int n)
+	{
+		int m = 0;
+		for (int i = 0; i < n; ++i) {
+			input++;
+			if (skip.next())
+				affected++;
+			else
+				d[m++] = d[i];
+		}
+		return m;
+	}
+}
+
+//---------------------------------------------------------------------
+
+private static final class Dup extends Stage
+{
+	private final Skip skip;
+
+	Dup(String prefix, String name)
+	{
+		super(name);
+		skip = new Skip(probability(prefix + "." + name));
+	}
+
+	int apply(Node src, Node dest, long[] d, int n)
+	{
+		int m = n;
+		for (int i = 0; i < n; ++i) {
+			input++;
+			if (skip.next()) {
+				affected++;
+				d[m++] = d[i];
+			}
+		}
+		return m;
+	}
+}
+
+//---------------------------------------------------------------------
+
+private static final class Reorder extends Stage
+{
+	private final Skip skip;
+
+	private final long delay;
+
+	Reorder(String prefix, String name)
+	{
+		super(name);
+		skip = new Skip(probability(prefix + "." + name));
+		delay = Configuration.getLong(prefix + "." + name + ".delay");
+		if (delay < 0)
+			throw new IllegalParameterException(prefix + "." + name +
+				".delay", "must not be negative");
+	}
+
+	int apply(Node src, Node dest, long[] d, int n)
+	{
+		for (int i = 0; i < n; ++i) {
+			input++;
+			if (skip.next()) {
+				affected++;
+				d[i] += CommonState.r.nextLong(delay + 1);
+			}
+		}
+		return n;
+	}
+}
+
+//---------------------------------------------------------------------
+
+private static final class Partition extends Stage
+{
+	private final long from, until;
+
+	private final int groups;
+
+	Partition(String prefix, String name)
+	{
+		super(name);
+		final String p = prefix + "." + name;
+		from = Configuration.getLong(p + ".from", 0);
+		until = Configuration.getLong(p + ".until", Long.MAX_VALUE);
+		groups = Configuration.getInt(p + ".groups", 2);
+		if (groups < 1)
+			throw new IllegalParameterException(p + ".groups",
+				"must be positive");
+	}
+
+	int apply(Node src, Node dest, long[] d, int n)
+	{
+		input += n;
+		final long t = CommonState.getTime();
+		if (t < from || t >= until ||
+				src.getID() % groups == dest.getID() % groups)
+			return n;
+		affected += n;
+		return 0;
+	}
+}
+
+//---------------------------------------------------------------------
+
+/** Reads the probability of a stage. */
+private static double probability(String prefix)
+{
+	final double p = Configuration.getDouble(prefix + ".p");
+	if (!(p >= 0 && p <= 1))
+		throw new IllegalParameterException(prefix + ".p",
+			"must be between 0 and 1");
+	return p;
+}
+
+//---------------------------------------------------------------------
+//Fields
+//---------------------------------------------------------------------
+
+/** Protocol identifier for the support transport protocol */
+private final int transport;
+
+/** The stages in order */
+private final Stage[] stages;
+
+/** The extra delays of the copies of the message being sent */
+private final long[] delays;
+
+//---------------------------------------------------------------------
+//Initialization
+//---------------------------------------------------------------------
+
+/**
+ * Reads configuration parameters.
+ */
+public FaultTransport(String prefix)
+{
+	transport = Configuration.getPid(prefix + "." + PAR_TRANSPORT);
+	final String[] names = Configuration.getString(prefix + "." +
+		PAR_STAGES).trim().split("[\\s,]+");
+	stages = new Stage[names.length];
+	int copies = 1;
+	for (int i = 0; i < names.length; ++i) {
+		final String name = names[i];
+		if (name.startsWith("loss"))
+			stages[i] = new Loss(prefix, name);
+		else if (name.startsWith("dup")) {
+			stages[i] = new Dup(prefix, name);
+			if (copies > 1 << 20)
+				throw new IllegalParameterException(prefix + "." +
+					PAR_STAGES, "too many duplication stages");
+			copies *= 2;
+		} else if (name.startsWith("reorder"))
+			stages[i] = new Reorder(prefix, name);
+		else if (name.startsWith("partition"))
+			stages[i] = new Partition(prefix, name);
+		else
+			throw new IllegalParameterException(prefix + "." + PAR_STAGES,
+				"unknown type of stage '" + name + "'");
+	}
+	delays = new long[copies];
+}
+
+//---------------------------------------------------------------------
+
+/**
+* Returns <code>this</code>. This way only one instance exists in the system
+* that is linked from all the nodes. This is because this protocol has no
+* state that depends on the hosting node.
+ */
+public Object clone()
+{
+	return this;
+}
+
+//---------------------------------------------------------------------
+//Methods
+//---------------------------------------------------------------------
+
+/**
+ * Applies the stages to the message, and schedules the surviving
+ * copies with the latency of the underlying transport plus their extra
+ * delays. The copies are dropped if the underlying transport cannot
+ * reach the receiver (negative latency, see {@link Transport#getLatency}).
+ */
+public void send(Node src, Node dest, Object msg, int pid)
+{
+	final long[] d = delays;
+	d[0] = 0;
+	int n = 1;
+	for (int i = 0; i < stages.length && n > 0; ++i)
+		n = stages[i].apply(src, dest, d, n);
+	if (n == 0)
+		return;
+	final long latency = getLatency(src, dest);
+	if (latency < 0)
+		return;
+	for (int i = 0; i < n; ++i)
+		EDSimulator.add(latency + d[i], msg, dest, pid);
+}
+
+//---------------------------------------------------------------------
+
+/** Returns the latency of the underlying protocol. */
+public long getLatency(Node src, Node dest)
+{
+	try {
+		Transport t = (Transport) src.getProtocol(transport);
+		return t.getLatency(src, dest);
+	} catch (ClassCastException e) {
+		throw new IllegalArgumentException("Protocol " +
+				Configuration.lookupPid(transport) +
+				" does not implement Transport");
+	}
+}
+
+//---------------------------------------------------------------------
+
+/** Returns the number of stages. */
+public int getStages()
+{
+	return stages.length;
+}
+
+//---------------------------------------------------------------------
+
+/** Returns the name of stage i. */
+public String getName(int i)
+{
+	return stages[i].name;
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Returns the number of messages (counting copies separately) that
+ * entered stage i.
+ */
+public long getInput(int i)
+{
+	return stages[i].input;
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Returns the number of messages that stage i dropped, duplicated or
+ * delayed, depending on its type.
+ */
+public long getAffected(int i)
+{
+	return stages[i].affected;
+}
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.transport;
+
+import peersim.config.*;
+import peersim.core.*;
+import peersim.edsim.*;
+
+
+/**
+ * This transport protocol delivers messages reliably, with a latency that
+ * is a linear function of the Euclidean distance of the nodes, given by a
+ * {@link Coordinates} protocol (for example
+ * {@link example.hot.InetCoordinates}). Protocols can find nearby nodes
+ * through the {@link SpatialIndex} of the same coordinate protocol.
+ * <p>
+ * The memory requirements are minimal, as a single instance is created and
+ * inserted in the protocol array of all nodes (because instances have no state
+ * that depends on the hosting node).
+ */
+public final class GeometricTransport implements Transport
+{
+
+//---------------------------------------------------------------------
+//Parameters
+//---------------------------------------------------------------------
+
+/**
+ * The {@link Coordinates} protocol that defines the positions of the nodes.
+ * @config
+ */
+private static final String PAR_COORD = "coord";
+
+/**
+ * The latency of a unit of distance. Defaults to 1.
+ * @config
+ */
+private static final String PAR_RATIO = "ratio";
+
+/**
+ * The delay that corresponds to the time spent on the source (and destination)
+ * nodes. In other words, full latency is calculated by the distance of
+ * the nodes multiplied by {@value #PAR_RATIO}, incremented by twice this
+ * delay. Defaults to 0.
+ * @config
+ */
+private static final String PAR_LOCAL = "local";
+
+//---------------------------------------------------------------------
+//Fields
+//---------------------------------------------------------------------
+
+/** The coordinate protocol */
+private final int coord;
+
+/** Latency of a unit of distance */
+private final double ratio;
+
+/** Local component of latency */
+private final long local;
+
+//---------------------------------------------------------------------
+//Initialization
+//---------------------------------------------------------------------
+
+/**
+ * Reads configuration parameters.
+ */
+public GeometricTransport(String prefix)
+{
+	coord = Configuration.getPid(prefix + "." + PAR_COORD);
+	ratio = Configuration.getDouble(prefix + "." + PAR_RATIO, 1);
+	if (ratio < 0)
+		throw new IllegalParameterException(prefix + "." + PAR_RATIO,
+			"must not be negative");
+	local = Configuration.getLong(prefix + "." + PAR_LOCAL, 0);
+}
+
+//---------------------------------------------------------------------
+
+/**
+* Returns <code>this</code>. This way only one instance exists in the system
+* that is linked from all the nodes. This is because this protocol has no
+* state that depends on the hosting node.
+ */
+public Object clone()
+{
+	return this;
+}
+
+//---------------------------------------------------------------------
+//Methods inherited by Transport
+//---------------------------------------------------------------------
+
+/**
+* Delivers the message reliably, with the latency calculated by
+* {@link #getLatency}.
+*/
+public void send(Node src, Node dest, Object msg, int pid)
+{
+	EDSimulator.add(getLatency(src, dest), msg, dest, pid);
+}
+
+//---------------------------------------------------------------------
+
+/**
+* Returns the distance of the nodes multiplied by {@value #PAR_RATIO} and
+* rounded, plus twice the local delay configured by {@value #PAR_LOCAL}.
+*/
+public long getLatency(Node src, Node dest)
+{
+	final Coordinates a = (Coordinates) src.getProtocol(coord);
+	final Coordinates b = (Coordinates) dest.getProtocol(coord);
+	final double dx = a.getX() - b.getX(), dy = a.getY() - b.getY();
+	return Math.round(Math.sqrt(dx * dx + dy * dy) * ratio) + local * 2;
+}
+
+}
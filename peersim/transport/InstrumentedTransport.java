@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.transport;
+
+import peersim.config.*;
+import peersim.core.*;
+import peersim.edsim.*;
+import peersim.util.LogHistogram;
+
+
+/**
+ * This transport protocol collects statistics about the messages sent
+ * through an underlying transport, without changing their delivery.
+ * For each protocol identifier it counts the messages sent and
+ * delivered, and it keeps a {@link LogHistogram} of the time from sending
+ * to delivery. If a {@link MessageSizer} is configured, it also sums the
+ * size of the messages sent. The statistics can be printed periodically by
+ * {@link TransportStats}.
+ * <p>
+ * To observe the delivery, each message is wrapped in an envelope that
+ * is sent by the underlying transport to this protocol, which records
+ * the latency and passes the message to its destination protocol through
+ * {@link EDProtocol#processEvent}, as {@link EDSimulator} would. The
+ * envelopes are {@link PooledMessage}s, so they are not allocated for
+ * each message. They implement {@link WrappedMessage}, so transports
+ * below this one that calculate the size of messages, like
+ * {@link BandwidthTransport}, see the original message. The latency includes everything the underlying transport
+ * adds, for example queuing in {@link BandwidthTransport} or the extra
+ * delays of {@link FaultTransport}. Messages dropped by the underlying
+ * transport are counted as sent but not delivered, and so are messages
+ * that arrive at nodes that are down.
+ * <p>
+ * A message that is a {@link PooledMessage} is retained while it is in an
+ * envelope, so it is returned to its pool only after delivery, as
+ * without this protocol.
+ * A single instance is created and inserted in the protocol array of all
+ * nodes, so the statistics are global.
+ */
+public final class InstrumentedTransport implements Transport,
+		EDProtocol<Object>
+{
+
+//---------------------------------------------------------------------
+//Parameters
+//---------------------------------------------------------------------
+
+/**
+ * The name of the underlying transport protocol.
+ * @config
+ */
+private static final String PAR_TRANSPORT = "transport";
+
+/**
+ * The class implementing {@link MessageSizer} that calculates the size
+ * of messages. If not defined, the sizes are not counted.
+ * @config
+ */
+private static final String PAR_SIZER = "sizer";
+
+/**
+ * The precision of the latency histograms, see {@link LogHistogram}.
+ * Defaults to 7, which means a relative error below 2%.
+ * @config
+ */
+private static final String PAR_PRECISION = "precision";
+
+//---------------------------------------------------------------------
+//Envelopes
+//---------------------------------------------------------------------
+
+/** A message in transit, with the time it was sent */
+private static final class Envelope extends PooledMessage
+		implements WrappedMessage
+{
+	Object msg;
+
+	int pid;
+
+	long sent;
+
+	public Object getPayload()
+	{
+		return msg;
+	}
+
+	protected void clear()
+	{
+		if (msg instanceof PooledMessage)
+			((PooledMessage) msg).release();
+		msg = null;
+	}
+}
+
+//---------------------------------------------------------------------
+
+private static final MessagePool<Envelope> POOL =
+	new MessagePool<Envelope>() {
+		protected Envelope create() { return new Envelope(); }
+	};
+
+//---------------------------------------------------------------------
+//Fields
+//---------------------------------------------------------------------
+
+/** Protocol identifier for the support transport protocol */
+private final int transport;
+
+/** The protocol identifier of this protocol */
+private final int tid;
+
+/** The sizer of messages, or null */
+private final MessageSizer sizer;
+
+/** Counters, indexed by protocol identifier */
+private final long[] sent, delivered, bytes;
+
+/** Latency histograms, indexed by protocol identifier */
+private final LogHistogram[] latency;
+
+//---------------------------------------------------------------------
+//Initialization
+//---------------------------------------------------------------------
+
+/**
+ * Reads configuration parameters.
+ */
+public InstrumentedTransport(String prefix)
+{
+	transport = Configuration.getPid(prefix + "." + PAR_TRANSPORT);
+	tid = CommonState.getPid();
+	if (Configuration.contains(prefix + "." + PAR_SIZER))
+		sizer = (MessageSizer) Configuration.getInstance(
+			prefix + "." + PAR_SIZER);
+	else
+		sizer = null;
+	final int precision = Configuration.getInt(prefix + "." +
+		PAR_PRECISION, 7);
+	if (precision < 1 || precision > 16)
+		throw new IllegalParameterException(prefix + "." + PAR_PRECISION,
+			"must be between 1 and 16");
+	final int n = Configuration.getNames(Node.PAR_PROT).length;
+	sent = new long[n];
+	delivered = new long[n];
+	bytes = new long[n];
+	latency = new LogHistogram[n];
+	for (int i = 0; i < n; ++i)
+		latency[i] = new LogHistogram(precision);
+}
+
+//---------------------------------------------------------------------
+
+/**
+* Returns <code>this</code>. This way only one instance exists in the system
+* that is linked from all the nodes. This is because this protocol has no
+* state that depends on the hosting node.
+ */
+public Object clone()
+{
+	return this;
+}
+
+//---------------------------------------------------------------------
+//Methods
+//---------------------------------------------------------------------
+
+/**
+ * Counts the message and sends it in an envelope through the underlying
+ * transport.
+ */
+public void send(Node src, Node dest, Object msg, int pid)
+{
+	sent[pid]++;
+	if (sizer != null) {
+		Object m = msg;
+		while (m instanceof WrappedMessage)
+			m = ((WrappedMessage) m).getPayload();
+		bytes[pid] += sizer.getSize(m);
+	}
+	if (msg instanceof PooledMessage)
+		((PooledMessage) msg).retain();
+	final Envelope e = POOL.acquire();
+	e.msg = msg;
+	e.pid = pid;
+	e.sent = CommonState.getTime();
+	try {
+		Transport t = (Transport) src.getProtocol(transport);
+		t.send(src, dest, e, tid);
+	} catch (ClassCastException ex) {
+		throw new IllegalArgumentException("Protocol " +
+				Configuration.lookupPid(transport) +
+				" does not implement Transport");
+	}
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Records the latency of the message in the envelope, and delivers the
+ * message to its destination protocol.
+ */
+public void processEvent(Node node, int pid, Object event)
+{
+	final Envelope e = (Envelope) event;
+	final int p = e.pid;
+	delivered[p]++;
+	latency[p].add(CommonState.getTime() - e.sent);
+	final EDProtocol<Object> prot;
+	try {
+		@SuppressWarnings("unchecked")
+		final EDProtocol<Object> ep = (EDProtocol<Object>) node.getProtocol(p);
+		prot = ep;
+	} catch (ClassCastException ex) {
+		throw new IllegalArgumentException("Protocol " +
+				Configuration.lookupPid(p) +
+				" does not implement EDProtocol");
+	}
+	CommonState.setPid(p);
+	prot.processEvent(node, p, e.msg);
+	CommonState.setPid(pid);
+}
+
+//---------------------------------------------------------------------
+
+/** Returns the latency of the underlying protocol. */
+public long getLatency(Node src, Node dest)
+{
+	try {
+		Transport t = (Transport) src.getProtocol(transport);
+		return t.getLatency(src, dest);
+	} catch (ClassCastException e) {
+		throw new IllegalArgumentException("Protocol " +
+				Configuration.lookupPid(transport) +
+				" does not implement Transport");
+	}
+}
+
+//---------------------------------------------------------------------
+
+/** Returns the number of messages sent to protocol pid. */
+public long getSent(int pid)
+{
+	return sent[pid];
+}
+
+//---------------------------------------------------------------------
+
+/** Returns the number of messages delivered to protocol pid. */
+public long getDelivered(int pid)
+{
+	return delivered[pid];
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Returns the total size of the messages sent to protocol pid, or 0 if
+ * no sizer is configured.
+ */
+public long getBytes(int pid)
+{
+	return bytes[pid];
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Returns the histogram of the latencies of the messages delivered to
+ * protocol pid. The histogram is updated as further messages are
+ * delivered.
+ */
+public LogHistogram getLatencies(int pid)
+{
+	return latency[pid];
+}
+
+//---------------------------------------------------------------------
+
+/** Resets all counters and histograms. */
+public void reset()
+{
+	for (int i = 0; i < sent.length; ++i) {
+		sent[i] = delivered[i] = bytes[i] = 0;
+		latency[i].reset();
+	}
+}
+
+}
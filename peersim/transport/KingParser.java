@@ -19,13 +19,31 @@
 package peersim.transport;
 
 import java.io.*;
-import java.util.*;
+import java.util.Arrays;
+import java.util.zip.CRC32;
 import peersim.config.*;
 import peersim.core.Control;
+import peersim.util.MappedBuffer;
+import peersim.util.RangeTask;
 
 /**
  * Initializes static singleton {@link E2ENetwork} by reading a king data set.
- * 
+ * <p>
+ * The data set starts with any number of lines that are ignored, followed
+ * by one line starting with "node" for each router, followed by one
+ * line for each pair of routers, containing the indexes of the
+ * routers (starting from 1) and the latency between them, separated by
+ * commas or whitespace. Empty lines are ignored among the latencies.
+ * The file is mapped into memory, and the latencies are parsed in parallel
+ * in chunks of lines, using {@link RangeTask}. The parsed latencies are
+ * stored in the order of the chunks, so if a pair is listed more than once,
+ * the last latency is used.
+ * <p>
+ * If {@value #PAR_MAPPED} is defined, the parsed latencies are cached in a
+ * binary file, which is memory-mapped by later runs instead of parsing
+ * the data set again. The cache is identified by the CRC32 checksum and the
+ * length of the data set, and by {@value #PAR_RATIO}.
+ *
  * @author Alberto Montresor
  * @version $Revision: 1.9 $
  */
@@ -37,7 +55,8 @@ public class KingParser implements Control
 // ---------------------------------------------------------------------
 
 /**
- * The file containing the King measurements.
+ * The file containing the King measurements. If not defined, the
+ * resource "t-king.map" is read from the class path.
  * @config
  */
 private static final String PAR_FILE = "file";
@@ -49,10 +68,33 @@ private static final String PAR_FILE = "file";
  */
 private static final String PAR_RATIO = "ratio";
 
+/**
+ * If defined, the latencies are stored in a memory-mapped file with this
+ * name instead of the heap (see
+ * {@link E2ENetwork#reset(int,boolean,String,int,long)}). If the file
+ * already contains the latencies read from the same data set with the same
+ * ratio and quantum, it is reopened without parsing the data set (see
+ * {@link E2ENetwork#load}).
+ * @config
+ */
+private static final String PAR_MAPPED = "mapped";
+
+/**
+ * If positive, latencies in the memory-mapped file are stored in 16 bits,
+ * rounded to multiples of this value, which must not be larger than
+ * {@link E2ENetwork#MAX_QUANTUM}. Defaults to 0, which means 32 bit
+ * latencies. Used only if {@value #PAR_MAPPED} is defined.
+ * @config
+ */
+private static final String PAR_QUANTUM = "quantum";
+
 // ---------------------------------------------------------------------
 // Fields
 // ---------------------------------------------------------------------
 
+/** The length of the chunks of the data set parsed by a task */
+private static final int CHUNK = 1 << 20;
+
 /** Name of the file containing the King measurements. */
 private String filename;
 
@@ -65,6 +107,12 @@ private double ratio;
 /** Prefix for reading parameters */
 private String prefix;
 
+/** Name of the memory-mapped file, or null */
+private String mapped;
+
+/** Quantum of the memory-mapped file */
+private int quantum;
+
 // ---------------------------------------------------------------------
 // Initialization
 // ---------------------------------------------------------------------
@@ -77,6 +125,11 @@ public KingParser(String prefix)
 	this.prefix = prefix;
 	ratio = Configuration.getDouble(prefix + "." + PAR_RATIO, 1);
 	filename = Configuration.getString(prefix + "." + PAR_FILE, null);
+	mapped = Configuration.getString(prefix + "." + PAR_MAPPED, null);
+	quantum = Configuration.getInt(prefix + "." + PAR_QUANTUM, 0);
+	if (quantum < 0 || quantum > E2ENetwork.MAX_QUANTUM)
+		throw new IllegalParameterException(prefix + "." + PAR_QUANTUM,
+			"must be between 0 and " + E2ENetwork.MAX_QUANTUM);
 }
 
 // ---------------------------------------------------------------------
@@ -85,82 +138,309 @@ public KingParser(String prefix)
 
 /**
  * Initializes static singleton {@link E2ENetwork} by reading a king data set.
+ * @throws IllegalParameterException if the data set cannot be read or it
+ * is malformed
 * @return  always false
 */
 public boolean execute()
 {
-	BufferedReader in = null;
-	if (filename != null) {
-		try {
-			in = new BufferedReader(new FileReader(filename));
-		} catch (FileNotFoundException e) {
-			throw new IllegalParameterException(prefix + "." + PAR_FILE, filename
-					+ " does not exist");
-		}
-	} else {
-		in = new BufferedReader( new InputStreamReader(
-						ClassLoader.getSystemResourceAsStream("t-king.map")
-					)	);
+	final String name = (filename == null ? "t-king.map" : filename);
+	final MappedBuffer buf;
+	try {
+		buf = open();
+	} catch (IOException e) {
+		throw new IllegalParameterException(prefix + "." + PAR_FILE,
+			"cannot read " + name + ": " + e.getMessage());
 	}
-		
-	// XXX If the file format is not correct, we will get quite obscure
-	// exceptions. To be improved.
 
-	String line = null;
-	// Skip initial lines
-	int size = 0;
+	final long key = key(buf);
+	if (mapped != null && E2ENetwork.load(mapped, true, quantum, key)) {
+		System.err.println("KingParser: reusing " + mapped);
+		return false;
+	}
+
+	// Skip initial lines and count the node lines
+	long pos = 0;
 	int lc = 1;
-	try {
-		while ((line = in.readLine()) != null && !line.startsWith("node")) lc++;
-		while (line != null && line.startsWith("node")) {
-			size++;
-			lc++;
-			line = in.readLine();
-		}
-	} catch (IOException e) {
-		System.err.println("KingParser: " + filename + ", line " + lc + ":");
-		e.printStackTrace();
-		try { in.close(); } catch (IOException e1) { };
-		System.exit(1);
+	while (pos < buf.size() && !startsWith(buf, pos, "node")) {
+		pos = nextLine(buf, pos);
+		lc++;
+	}
+	int size = 0;
+	while (pos < buf.size() && startsWith(buf, pos, "node")) {
+		pos = nextLine(buf, pos);
+		size++;
+		lc++;
 	}
-	E2ENetwork.reset(size, true);
-	if (line == null) {
-		System.err.println("KingParser: " + filename + ", line " + lc + ":");
-		System.err.println("No latency matrix contained in the specified file");
-		try { in.close(); } catch (IOException e1) { };
-		System.exit(1);
+	if (pos >= buf.size())
+		throw new IllegalParameterException(prefix + "." + PAR_FILE,
+			name + ", line " + lc + ": " +
+			"No latency matrix contained in the specified file");
+
+	if (mapped == null)
+		E2ENetwork.reset(size, true);
+	else {
+		try {
+			E2ENetwork.reset(size, true, mapped, quantum, key);
+		} catch (IOException e) {
+			throw new IllegalParameterException(prefix + "." + PAR_MAPPED,
+				"cannot create " + mapped + ": " + e.getMessage());
+		}
 	}
-	
 	System.err.println("KingParser: read " + size + " entries");
-	
+
+	// Chunks of whole lines
+	final int chunks = (int) ((buf.size() - pos + CHUNK - 1) / CHUNK);
+	final long[] bounds = new long[chunks + 1];
+	bounds[0] = pos;
+	for (int c = 1; c < chunks; ++c)
+		bounds[c] = Math.max(bounds[c - 1],
+			nextLine(buf, pos + (long) c * CHUNK - 1));
+	bounds[chunks] = buf.size();
+
+	final int[] lines = new int[chunks];
+	final String[] errors = new String[chunks];
+	final int[][] triples = new int[chunks][];
+	final int[] counts = new int[chunks];
+	final int routers = size;
+	final RangeTask task = new RangeTask(1) {
+		protected void process(int from, int to)
+		{
+			for (int c = from; c < to; ++c)
+				errors[c] = parse(buf, bounds[c], bounds[c + 1], routers,
+					lines, triples, counts, c);
+		}
+	};
+
+	// The chunks are parsed in batches, and the latencies of each batch
+	// are stored in the order of the chunks before the next batch is
+	// parsed, so at most one batch of triples is on the heap.
+	final int batch = 2 * RangeTask.getParallelism();
+	for (int from = 0; from < chunks; from += batch) {
+		final int to = Math.min(chunks, from + batch);
+		task.run(from, to);
+		for (int c = from; c < to; ++c) {
+			if (errors[c] != null)
+				throw new IllegalParameterException(prefix + "." + PAR_FILE,
+					name + ", line " + (lc + lines[c]) + ": " + errors[c]);
+			lc += lines[c];
+			final int[] t = triples[c];
+			for (int i = 0; i < counts[c]; i += 3)
+				E2ENetwork.setLatency(t[i], t[i + 1], t[i + 2]);
+			triples[c] = null;
+		}
+	}
+	E2ENetwork.complete();
+	return false;
+}
+
+// ---------------------------------------------------------------------
+
+/**
+ * Maps the data set. Class path resources are copied to a temporary file
+ * first.
+ */
+private MappedBuffer open() throws IOException
+{
+	if (filename != null)
+		return new MappedBuffer(filename);
+	final InputStream in = ClassLoader.getSystemResourceAsStream("t-king.map");
+	if (in == null)
+		throw new FileNotFoundException("t-king.map is not in the class path");
+	final File tmp = File.createTempFile("t-king", ".map");
+	tmp.deleteOnExit();
+	final OutputStream out = new FileOutputStream(tmp);
 	try {
-		do {
-			StringTokenizer tok = new StringTokenizer(line, ", ");
-			if (tok.countTokens() != 3) {
-				System.err.println("KingParser: " + filename + ", line " + lc + ":");
-				System.err.println("Specified line does not contain a <node1, node2, latency> triple");
-				try { in.close(); } catch (IOException e1) { };
-				System.exit(1);
-			}
-			int n1 = Integer.parseInt(tok.nextToken()) - 1;
-			int n2 = Integer.parseInt(tok.nextToken()) - 1;
-			int latency = (int) (Double.parseDouble(tok.nextToken()) * ratio);
-			E2ENetwork.setLatency(n1, n2, latency);
-			lc++;
-			line = in.readLine();
-		} while (line != null);
-		
+		final byte[] b = new byte[1 << 16];
+		for (int k = in.read(b); k >= 0; k = in.read(b))
+			out.write(b, 0, k);
+	} finally {
 		in.close();
-	
-	} catch (IOException e) {
-		System.err.println("KingParser: " + filename + ", line " + lc + ":");
-		e.printStackTrace();
-		try { in.close(); } catch (IOException e1) { };
-		System.exit(1);
+		out.close();
 	}
+	return new MappedBuffer(tmp.getPath());
+}
 
+// ---------------------------------------------------------------------
 
-	return false;
+/**
+ * Returns the key of the cache: a combination of the CRC32 checksum and
+ * the length of the data set, and the ratio.
+ */
+private long key(MappedBuffer buf)
+{
+	final CRC32 crc = new CRC32();
+	final byte[] b = new byte[1 << 16];
+	for (long p = 0; p < buf.size(); p += b.length) {
+		final int k = (int) Math.min(b.length, buf.size() - p);
+		buf.get(p, b, 0, k);
+		crc.update(b, 0, k);
+	}
+	return ((crc.getValue() << 32) | (buf.size() & 0xffffffffL)) ^
+		Double.doubleToLongBits(ratio) * 0x9E3779B97F4A7C15L;
+}
+
+// ---------------------------------------------------------------------
+
+/**
+ * Parses the latencies in the lines between positions from and to, and
+ * stores the number of lines in lines[c]. The routers (from 0) and the
+ * latencies are stored in triples[c] in the order of the lines, and the
+ * number of values stored is put in counts[c].
+ * Numbers are parsed from the bytes directly. Tokens that are not plain
+ * decimal numbers (for example with a sign or an exponent) are parsed by
+ * {@link Integer#parseInt} and {@link Double#parseDouble}.
+ * @return null, or an error message, in which case lines[c] is the
+ * number of lines before the erroneous line
+ */
+private String parse(MappedBuffer buf, long from, long to, int size,
+		int[] lines, int[][] triples, int[] counts, int c)
+{
+	final byte[] b = new byte[(int) (to - from)];
+	buf.get(from, b, 0, b.length);
+	int[] t = new int[3 * 1024];
+	int k = 0;
+	final long[] value = new long[3];
+	final int[] scale = new int[3];
+	double latency = 0;
+	int line = 0;
+	int p = 0;
+	while (p < b.length) {
+		// tokens of the line
+		int tokens = 0;
+		while (p < b.length && b[p] != '\n') {
+			final byte x = b[p];
+			if (x == ',' || x == ' ' || x == '\t' || x == '\r') {
+				p++;
+				continue;
+			}
+			if (tokens == 3) {
+				lines[c] = line;
+				return "Specified line does not contain a " +
+					"<node1, node2, latency> triple";
+			}
+			// unsigned decimal number, with fraction only for the latency
+			final int start = p;
+			long v = 0;
+			int sc = 0, digits = 0;
+			boolean dot = false;
+			for (; p < b.length && ((b[p] >= '0' && b[p] <= '9') ||
+					(b[p] == '.' && !dot && tokens == 2)); ++p) {
+				if (b[p] == '.') {
+					dot = true;
+					continue;
+				}
+				if (v < (1L << 53) / 10) {
+					v = 10 * v + (b[p] - '0');
+					if (dot)
+						sc++;
+				} else if (!dot)
+					sc--;
+				digits++;
+			}
+			if (digits == 0 || (p < b.length && !delimiter(b[p]))) {
+				while (p < b.length && !delimiter(b[p]))
+					p++;
+				final String s = new String(b, start, p - start);
+				try {
+					if (tokens == 2)
+						latency = Double.parseDouble(s);
+					else
+						value[tokens] = Integer.parseInt(s);
+				} catch (NumberFormatException e) {
+					lines[c] = line;
+					return "Invalid number in a " +
+						"<node1, node2, latency> triple";
+				}
+				scale[tokens++] = 0;
+				continue;
+			}
+			if (tokens == 2)
+				latency = decimal(v, sc);
+			value[tokens] = v;
+			scale[tokens++] = sc;
+		}
+		if (tokens > 0) {
+			if (tokens != 3) {
+				lines[c] = line;
+				return "Specified line does not contain a " +
+					"<node1, node2, latency> triple";
+			}
+			final long n1 = value[0], n2 = value[1];
+			if (scale[0] != 0 || scale[1] != 0 || n1 < 1 || n1 > size ||
+					n2 < 1 || n2 > size || n1 == n2) {
+				lines[c] = line;
+				return "Invalid pair of nodes " + n1 + ", " + n2;
+			}
+			if (k == t.length)
+				t = Arrays.copyOf(t, 2 * t.length);
+			t[k++] = (int) n1 - 1;
+			t[k++] = (int) n2 - 1;
+			t[k++] = (int) (latency * ratio);
+		}
+		line++;
+		p++;
+	}
+	lines[c] = line;
+	triples[c] = t;
+	counts[c] = k;
+	return null;
+}
+
+// ---------------------------------------------------------------------
+
+/** Returns true if x separates the numbers of a line. */
+private static boolean delimiter(byte x)
+{
+	return x == ',' || x == ' ' || x == '\t' || x == '\r' || x == '\n';
+}
+
+// ---------------------------------------------------------------------
+
+/**
+ * Returns v times 10 to the power of -scale, rounded the same way as
+ * {@link Double#parseDouble} rounds the decimal representation.
+ */
+private static double decimal(long v, int scale)
+{
+	if (scale == 0)
+		return v;
+	if (scale > 0 && scale <= 22)
+		return v / POW10[scale];
+	if (scale < 0 && scale >= -22)
+		return v * POW10[-scale];
+	return Double.parseDouble(v + "e" + (-scale));
+}
+
+/** Powers of ten that are exactly representable as doubles */
+private static final double[] POW10 = new double[23];
+
+static {
+	POW10[0] = 1;
+	for (int i = 1; i < POW10.length; ++i)
+		POW10[i] = 10 * POW10[i - 1];
+}
+
+// ---------------------------------------------------------------------
+
+/** Returns the position after the end of the line at position pos. */
+private static long nextLine(MappedBuffer buf, long pos)
+{
+	while (pos < buf.size() && buf.getByte(pos) != '\n')
+		pos++;
+	return Math.min(buf.size(), pos + 1);
+}
+
+// ---------------------------------------------------------------------
+
+private static boolean startsWith(MappedBuffer buf, long pos, String s)
+{
+	if (pos + s.length() > buf.size())
+		return false;
+	for (int i = 0; i < s.length(); ++i)
+		if (buf.getByte(pos + i) != s.charAt(i))
+			return false;
+	return true;
 }
 
 }
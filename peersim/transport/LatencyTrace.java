@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.transport;
+
+import java.io.*;
+import java.util.StringTokenizer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * This static singleton replays a trace of latency changes on
+ * {@link E2ENetwork}, so that the latencies between routers change in
+ * simulated time. The latencies of {@link E2ENetwork} must be initialized
+ * first on the heap, for example by {@link KingParser}; the trace then
+ * overwrites them as time advances (see {@link #advance}). Memory-mapped
+ * latencies are not changed, because the file is reused by later
+ * simulations. It is used by {@link TraceTransport}.
+ * <p>
+ * The trace is a text file, compressed by gzip if its name ends with
+ * ".gz". Each line contains the time of a change, the indexes of the two
+ * routers (starting from 0) and their new latency, separated by
+ * whitespace or commas. The times must not decrease. Empty lines and lines
+ * starting with "#" are ignored. A time-stamped latency matrix is simply
+ * a set of lines with the same time.
+ * <p>
+ * The trace is not loaded in memory. A background thread reads it in
+ * blocks that contain the changes of a window of time (or a part of it,
+ * if the window contains too many changes), and prepares the next block
+ * while the current one is applied. So the memory used is bounded by a few
+ * blocks, independently of the length of the trace.
+ */
+public class LatencyTrace
+{
+
+//---------------------------------------------------------------------
+//Fields
+//---------------------------------------------------------------------
+
+/** The maximal number of changes in a block */
+private static final int BLOCK = 1 << 16;
+
+/** Changes read by the background thread */
+private static final class Block
+{
+	final long[] time;
+	final int[] a, b, latency;
+	int n;
+
+	/** True if this is the last block of the trace */
+	boolean last;
+
+	/** The error of the background thread, or null */
+	String error;
+
+	Block(int size)
+	{
+		time = new long[size];
+		a = new int[size];
+		b = new int[size];
+		latency = new int[size];
+	}
+}
+
+/** The background thread, or null if no trace is open */
+private static Thread reader;
+
+/** The blocks prepared by the background thread */
+private static BlockingQueue<Block> queue;
+
+/** The block being applied, or null */
+private static Block block;
+
+/** The next change of {@link #block} to apply */
+private static int pos;
+
+/** True if all the changes of the trace are applied */
+private static boolean end = true;
+
+/** The number of applied changes */
+private static long applied;
+
+//---------------------------------------------------------------------
+//Initialization
+//---------------------------------------------------------------------
+
+/** Disable instance construction */
+private LatencyTrace() {}
+
+//---------------------------------------------------------------------
+//Methods
+//---------------------------------------------------------------------
+
+/**
+ * Opens the given trace, closing the previous one if any, and starts
+ * reading it in the background. No change is applied yet.
+ * @param window the length of the window of time of the blocks
+ * @param ratio the latencies of the trace are multiplied by this and
+ * rounded down
+ * @throws IOException if the file cannot be opened
+ */
+public static void open(final String file, final long window,
+		final double ratio) throws IOException
+{
+	if (window < 1)
+		throw new IllegalArgumentException("invalid window " + window);
+	close();
+	InputStream is = new FileInputStream(file);
+	if (file.endsWith(".gz"))
+		is = new GZIPInputStream(is, 1 << 16);
+	final BufferedReader in = new BufferedReader(
+		new InputStreamReader(is, "US-ASCII"), 1 << 16);
+	final BlockingQueue<Block> q = new ArrayBlockingQueue<Block>(1);
+	reader = new Thread("LatencyTrace reader") {
+		public void run()
+		{
+			try {
+				read(in, q, file, window, ratio);
+			} catch (InterruptedException e) {
+				// the trace is closed
+			} finally {
+				try {
+					in.close();
+				} catch (IOException e) {
+				}
+			}
+		}
+	};
+	reader.setDaemon(true);
+	queue = q;
+	block = null;
+	pos = 0;
+	end = false;
+	applied = 0;
+	reader.start();
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Applies all the changes of the trace up to the given time (inclusive)
+ * that were not applied yet. If the next block is not read yet, waits
+ * for the background thread.
+ * @throws IllegalStateException if the trace is malformed or it
+ * cannot be read, or a change refers to a router that does not exist
+ */
+public static void advance(long time)
+{
+	while (true) {
+		if (block == null) {
+			if (end)
+				return;
+			try {
+				block = queue.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			pos = 0;
+			if (block.error != null) {
+				final String error = block.error;
+				close();
+				throw new IllegalStateException(error);
+			}
+		}
+		final Block bl = block;
+		final int size = E2ENetwork.getSize();
+		if (pos < bl.n && bl.time[pos] <= time && E2ENetwork.isMapped())
+			throw new IllegalStateException("latency changes cannot be " +
+				"applied to the memory-mapped file of E2ENetwork");
+		for (; pos < bl.n && bl.time[pos] <= time; ++pos) {
+			final int a = bl.a[pos], b = bl.b[pos];
+			if (a >= size || b >= size)
+				throw new IllegalStateException("latency change at time " +
+					bl.time[pos] + " between routers " + a + " and " + b +
+					", but there are only " + size + " routers");
+			E2ENetwork.setLatency(a, b, bl.latency[pos]);
+			applied++;
+		}
+		if (pos < bl.n)
+			return;
+		end = bl.last;
+		block = null;
+	}
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Stops reading the trace. The changes applied so far are kept.
+ */
+public static void close()
+{
+	if (reader != null)
+		reader.interrupt();
+	reader = null;
+	queue = null;
+	block = null;
+	end = true;
+}
+
+//---------------------------------------------------------------------
+
+/** Returns the number of changes applied since the trace was opened. */
+public static long getApplied()
+{
+	return applied;
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Returns true if all the changes of the trace are applied, or no trace
+ * is open.
+ */
+public static boolean isFinished()
+{
+	return end;
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Reads the trace into blocks, and puts them in the queue. Errors are
+ * put in the queue as well.
+ */
+private static void read(BufferedReader in, BlockingQueue<Block> q,
+		String file, long window, double ratio) throws InterruptedException
+{
+	Block bl = new Block(BLOCK);
+	long last = Long.MIN_VALUE;
+	long lc = 0;
+	try {
+		for (String line = in.readLine(); line != null;
+				line = in.readLine()) {
+			lc++;
+			final StringTokenizer tok = new StringTokenizer(line, " \t,");
+			if (!tok.hasMoreTokens() || line.trim().startsWith("#"))
+				continue;
+			if (tok.countTokens() != 4)
+				throw new IOException("line does not contain a " +
+					"<time, router1, router2, latency> change");
+			final long t = Long.parseLong(tok.nextToken());
+			final int a = Integer.parseInt(tok.nextToken());
+			final int b = Integer.parseInt(tok.nextToken());
+			final int l = (int) (Double.parseDouble(tok.nextToken()) * ratio);
+			if (t < last)
+				throw new IOException("time " + t + " is earlier than " +
+					"the time of the previous change");
+			if (t < 0 || a < 0 || b < 0 || a == b || l < 0)
+				throw new IOException("invalid change");
+			// a block contains changes from a single window
+			if (bl.n == BLOCK || (bl.n > 0 &&
+					t / window != bl.time[0] / window)) {
+				q.put(bl);
+				bl = new Block(BLOCK);
+			}
+			bl.time[bl.n] = t;
+			bl.a[bl.n] = a;
+			bl.b[bl.n] = b;
+			bl.latency[bl.n++] = l;
+			last = t;
+		}
+	} catch (IOException e) {
+		bl.error = file + ", line " + lc + ": " + e.getMessage();
+	} catch (NumberFormatException e) {
+		bl.error = file + ", line " + lc + ": invalid number " +
+			e.getMessage();
+	}
+	bl.last = true;
+	q.put(bl);
+}
+
+}
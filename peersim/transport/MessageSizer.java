@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.transport;
+
+/**
+ * Calculates the size of messages for transports that model bandwidth, like
+ * {@link BandwidthTransport}. Implementations are normally instantiated from
+ * the configuration, through a constructor that takes the configuration
+ * prefix as its only parameter. The messages of a {@link WrappedMessage}
+ * are unwrapped before they are passed to the sizer.
+ */
+public interface MessageSizer
+{
+
+/**
+ * Returns the size of the given message, in the units of the capacities of
+ * the transport (for example bytes).
+ * The size must not be negative.
+ */
+public long getSize(Object msg);
+
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.transport;
+
+import java.io.*;
+
+/**
+ * This static singleton emulates an underlying router network
+ * of fixed size, like {@link E2ENetwork}, but instead of storing the
+ * latency of all pairs of routers, it assigns coordinates to the routers,
+ * and approximates latencies by distances. Each router has a position in
+ * a Euclidean space and a non-negative height, and the latency between two
+ * different routers is the distance of their positions plus their heights.
+ * The height models the latency of the access link of the router, which
+ * is common to all paths from the router. Memory usage is linear in the
+ * number of routers.
+ * <p>
+ * The coordinates are normally fitted to measured latencies by
+ * {@link VivaldiEmbedding}, and they can be saved and loaded by
+ * {@link #save} and {@link #load}.
+ */
+public class RouterCoordinates
+{
+
+//---------------------------------------------------------------------
+//Fields
+//---------------------------------------------------------------------
+
+/** The first four bytes of coordinate files */
+private static final int MAGIC = 0x50535243;
+
+/** The number of routers */
+private static int size;
+
+/** The dimension of the space */
+private static int dim;
+
+/** The position of router i starts at index i*dim */
+private static float[] pos = new float[0];
+
+/** The heights of the routers */
+private static float[] height = new float[0];
+
+//---------------------------------------------------------------------
+//Initialization
+//---------------------------------------------------------------------
+
+/** Disable instance construction */
+private RouterCoordinates() {}
+
+//---------------------------------------------------------------------
+//Methods
+//---------------------------------------------------------------------
+
+/**
+ * Resets the network. Initially all routers are at the origin and have
+ * height 0.
+ * @param size the number or routers
+ * @param dim the dimension of the space
+ */
+public static void reset(int size, int dim)
+{
+	if (size < 0 || dim < 1)
+		throw new IllegalArgumentException("invalid size or dimension");
+	RouterCoordinates.size = size;
+	RouterCoordinates.dim = dim;
+	pos = new float[size * dim];
+	height = new float[size];
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Returns the approximate latency between the given routers, which is
+ * the rounded value of {@link #getDistance}.
+ */
+public static int getLatency(int sender, int receiver)
+{
+	return (int) Math.round(getDistance(sender, receiver));
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Returns the distance of the positions of the given routers plus their
+ * heights, or 0 if they are the same.
+ */
+public static double getDistance(int a, int b)
+{
+	if (a == b)
+		return 0;
+	return norm(a, b) + height[a] + height[b];
+}
+
+//---------------------------------------------------------------------
+
+/** Returns the Euclidean distance of the positions of the given routers. */
+static double norm(int a, int b)
+{
+	double s = 0;
+	for (int k = 0, ia = a * dim, ib = b * dim; k < dim; ++k) {
+		final double d = pos[ia + k] - pos[ib + k];
+		s += d * d;
+	}
+	return Math.sqrt(s);
+}
+
+//---------------------------------------------------------------------
+
+/** Returns coordinate k of the position of router i. */
+public static float getCoordinate(int i, int k)
+{
+	if (k < 0 || k >= dim)
+		throw new ArrayIndexOutOfBoundsException(k);
+	return pos[i * dim + k];
+}
+
+//---------------------------------------------------------------------
+
+/** Sets coordinate k of the position of router i. */
+public static void setCoordinate(int i, int k, float x)
+{
+	if (k < 0 || k >= dim)
+		throw new ArrayIndexOutOfBoundsException(k);
+	pos[i * dim + k] = x;
+}
+
+//---------------------------------------------------------------------
+
+/** Returns the height of router i. */
+public static float getHeight(int i)
+{
+	return height[i];
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Sets the height of router i.
+ * @throws IllegalArgumentException if the height is negative
+ */
+public static void setHeight(int i, float h)
+{
+	if (!(h >= 0))
+		throw new IllegalArgumentException("invalid height " + h);
+	height[i] = h;
+}
+
+//---------------------------------------------------------------------
+
+/** Returns the number of routers. */
+public static int getSize()
+{
+	return size;
+}
+
+//---------------------------------------------------------------------
+
+/** Returns the dimension of the space. */
+public static int getDimension()
+{
+	return dim;
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Saves the coordinates in a binary file: the int {@value #MAGIC}, the
+ * number of routers (int), the dimension (int), and for each router its
+ * coordinates and height (floats).
+ */
+public static void save(String file) throws IOException
+{
+	final DataOutputStream out = new DataOutputStream(
+		new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+	try {
+		out.writeInt(MAGIC);
+		out.writeInt(size);
+		out.writeInt(dim);
+		for (int i = 0; i < size; ++i) {
+			for (int k = 0; k < dim; ++k)
+				out.writeFloat(pos[i * dim + k]);
+			out.writeFloat(height[i]);
+		}
+	} finally {
+		out.close();
+	}
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Loads the coordinates saved by {@link #save}, replacing the current
+ * ones.
+ * @throws IOException if the file cannot be read or it is not in the
+ * right format
+ */
+public static void load(String file) throws IOException
+{
+	final DataInputStream in = new DataInputStream(
+		new BufferedInputStream(new FileInputStream(file), 1 << 16));
+	try {
+		if (in.readInt() != MAGIC)
+			throw new IOException(file + ": not a coordinate file");
+		final int s = in.readInt();
+		final int d = in.readInt();
+		if (s < 0 || d < 1)
+			throw new IOException(file + ": invalid header");
+		final float[] p = new float[s * d];
+		final float[] h = new float[s];
+		for (int i = 0; i < s; ++i) {
+			for (int k = 0; k < d; ++k)
+				p[i * d + k] = in.readFloat();
+			h[i] = in.readFloat();
+		}
+		size = s;
+		dim = d;
+		pos = p;
+		height = h;
+	} finally {
+		in.close();
+	}
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Gives direct access to the positions for {@link VivaldiEmbedding}. The
+ * position of router i starts at index i*{@link #getDimension}.
+ */
+static float[] positions()
+{
+	return pos;
+}
+
+//---------------------------------------------------------------------
+
+/** Gives direct access to the heights for {@link VivaldiEmbedding}. */
+static float[] heights()
+{
+	return height;
+}
+
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.transport;
+
+import java.util.*;
+
+/**
+ * This static singleton emulates an underlying router network
+ * of fixed size, like {@link E2ENetwork}, but instead of storing the
+ * latency of all pairs of routers, it stores the links between routers
+ * with their latencies, and the latency between two routers is the length
+ * of the shortest path between them. Memory usage is linear in the number
+ * of links, plus the cache described below.
+ * <p>
+ * Shortest paths are calculated on demand by Dijkstra's algorithm, which
+ * calculates the latencies from a source router to all the other routers.
+ * These latencies are kept in a cache of bounded size, from which the
+ * least recently used source is evicted. If each node communicates with
+ * a small set of peers, most latencies are found in the cache. If the
+ * links are undirected, the latencies from the receiver are used as well.
+ * The number of hits and misses of the cache are counted, see
+ * {@link RouterGraphObserver}.
+ * <p>
+ * The graph is normally initialized by {@link RouterGraphInitializer}.
+ */
+public class RouterGraph
+{
+
+//---------------------------------------------------------------------
+//Fields
+//---------------------------------------------------------------------
+
+/** The distance of unreachable routers */
+private static final int INF = Integer.MAX_VALUE;
+
+/** The number of routers */
+private static int size;
+
+/** True if the links are directed */
+private static boolean directed;
+
+/** The links of router i are from index offsets[i] to offsets[i+1] */
+private static int[] offsets = new int[1];
+
+/** The targets of the links */
+private static int[] targets = new int[0];
+
+/** The latencies of the links */
+private static int[] weights = new int[0];
+
+/** Latencies from the cached sources, in access order */
+private static LinkedHashMap<Integer,int[]> cache =
+	new LinkedHashMap<Integer,int[]>(16, 0.75f, true);
+
+/** The maximal number of cached sources */
+private static int capacity;
+
+/** Statistics of the cache */
+private static long hits, misses;
+
+/** The heap of Dijkstra's algorithm, reused between calls */
+private static long[] heap = new long[16];
+
+//---------------------------------------------------------------------
+//Initialization
+//---------------------------------------------------------------------
+
+/** Disable instance construction */
+private RouterGraph() {}
+
+//---------------------------------------------------------------------
+//Methods
+//---------------------------------------------------------------------
+
+/**
+ * Resets the network, empties the cache and resets its statistics. The
+ * arrays are stored without copying.
+ * @param offsets the links of router i are from index offsets[i]
+ * (inclusive) to offsets[i+1] (exclusive); its length is the number of
+ * routers plus one
+ * @param targets the routers the links lead to
+ * @param weights the non-negative latencies of the links
+ * @param directed if false, for each link from i to j there must be a
+ * link from j to i with the same latency
+ * @param capacity the maximal number of sources whose latencies are cached
+ */
+public static void reset(int[] offsets, int[] targets, int[] weights,
+		boolean directed, int capacity)
+{
+	final int n = offsets.length - 1;
+	if (n < 0 || capacity < 1 || offsets[n] > targets.length ||
+			offsets[n] > weights.length)
+		throw new IllegalArgumentException("invalid graph or capacity");
+	for (int e = 0; e < offsets[n]; ++e)
+		if (targets[e] < 0 || targets[e] >= n || weights[e] < 0)
+			throw new IllegalArgumentException("invalid link " + e);
+	RouterGraph.size = n;
+	RouterGraph.offsets = offsets;
+	RouterGraph.targets = targets;
+	RouterGraph.weights = weights;
+	RouterGraph.directed = directed;
+	RouterGraph.capacity = capacity;
+	cache.clear();
+	hits = misses = 0;
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Returns the latency of the shortest path between the given routers, or
+ * -1 if there is no path. If the path is longer than
+ * {@link Integer#MAX_VALUE}-1, that value is returned.
+ */
+public static int getLatency(int sender, int receiver)
+{
+	if (receiver < 0 || receiver >= size)
+		throw new IndexOutOfBoundsException("invalid router " + receiver);
+	int[] d = cache.get(sender);
+	if (d == null && !directed) {
+		d = cache.get(receiver);
+		if (d != null)
+			receiver = sender;
+	}
+	if (d != null)
+		hits++;
+	else {
+		misses++;
+		d = dijkstra(sender);
+		cache.put(sender, d);
+		if (cache.size() > capacity) {
+			final Iterator<int[]> it = cache.values().iterator();
+			it.next();
+			it.remove();
+		}
+	}
+	return (d[receiver] == INF ? -1 : d[receiver]);
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Returns the latencies of the shortest paths from the given source to
+ * all the routers, {@link Integer#MAX_VALUE} for unreachable routers.
+ */
+private static int[] dijkstra(int source)
+{
+	if (source < 0 || source >= size)
+		throw new IndexOutOfBoundsException("invalid router " + source);
+	final int[] d = new int[size];
+	Arrays.fill(d, INF);
+	d[source] = 0;
+	// entries are (distance << 32 | router), outdated ones are skipped
+	int k = 0;
+	heap[k++] = source;
+	while (k > 0) {
+		final long top = heap[0];
+		final long last = heap[--k];
+		// sift down the last entry from the root
+		int i = 0;
+		for (int c = 1; c < k; c = 2 * i + 1) {
+			if (c + 1 < k && heap[c + 1] < heap[c])
+				c++;
+			if (last <= heap[c])
+				break;
+			heap[i] = heap[c];
+			i = c;
+		}
+		heap[i] = last;
+
+		final int v = (int) top;
+		final int dv = (int) (top >>> 32);
+		if (dv > d[v])
+			continue;
+		for (int e = offsets[v]; e < offsets[v + 1]; ++e) {
+			final int u = targets[e];
+			final int du = (int) Math.min(INF - 1, (long) dv + weights[e]);
+			if (du >= d[u])
+				continue;
+			d[u] = du;
+			if (k == heap.length)
+				heap = Arrays.copyOf(heap, 2 * k);
+			// sift up
+			final long x = ((long) du << 32) | u;
+			int j = k++;
+			while (j > 0 && heap[(j - 1) / 2] > x) {
+				heap[j] = heap[(j - 1) / 2];
+				j = (j - 1) / 2;
+			}
+			heap[j] = x;
+		}
+	}
+	return d;
+}
+
+//---------------------------------------------------------------------
+
+/** Returns the number of routers. */
+public static int getSize()
+{
+	return size;
+}
+
+//---------------------------------------------------------------------
+
+/** Returns the number of links. */
+public static int getLinks()
+{
+	return offsets[size];
+}
+
+//---------------------------------------------------------------------
+
+/** Returns the number of latencies found in the cache since the reset. */
+public static long getHits()
+{
+	return hits;
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Returns the number of latencies that were not found in the cache since
+ * the reset. Each miss runs Dijkstra's algorithm once.
+ */
+public static long getMisses()
+{
+	return misses;
+}
+
+//---------------------------------------------------------------------
+
+/** Returns the number of sources whose latencies are in the cache. */
+public static int getCached()
+{
+	return cache.size();
+}
+
+}
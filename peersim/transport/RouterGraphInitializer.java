@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.transport;
+
+import java.io.IOException;
+import java.util.Arrays;
+import peersim.config.*;
+import peersim.core.*;
+import peersim.graph.*;
+
+/**
+ * Initializes static singleton {@link RouterGraph} with the links between
+ * routers and their latencies. The links are read either from a binary
+ * graph file (see {@link MappedGraph}), or from a {@link Linkable}
+ * protocol, in which case the routers are the nodes of the network in
+ * the order of their indexes, for example a topology generated by
+ * {@link example.hot.WireInetTopology}. The latencies of the links are the
+ * weights of the file multiplied by {@value #PAR_RATIO}, or
+ * {@value #PAR_HOP} if there are no weights.
+ * Exactly one of {@value #PAR_FILE} and {@value #PAR_PROT} must be defined.
+ */
+public class RouterGraphInitializer implements Control
+{
+
+// ---------------------------------------------------------------------
+// Parameters
+// ---------------------------------------------------------------------
+
+/**
+ * The binary graph file containing the links. If it is undirected,
+ * the links are undirected.
+ * @config
+ */
+private static final String PAR_FILE = "file";
+
+/**
+ * The {@link Linkable} protocol containing the links.
+ * @config
+ */
+private static final String PAR_PROT = "protocol";
+
+/**
+ * If defined, the links of {@value #PAR_PROT} are considered undirected.
+ * Not defined by default.
+ * @config
+ */
+private static final String PAR_UNDIR = "undir";
+
+/**
+ * The ratio between the weights of the file and the time units used in
+ * the simulation. Latencies are rounded down. Defaults to 1.
+ * @config
+ */
+private static final String PAR_RATIO = "ratio";
+
+/**
+ * The latency of the links if there are no weights. Defaults to 1.
+ * @config
+ */
+private static final String PAR_HOP = "hop";
+
+/**
+ * The maximal number of source routers whose latencies are cached by
+ * {@link RouterGraph}. Defaults to 256.
+ * @config
+ */
+private static final String PAR_CACHE = "cache";
+
+// ---------------------------------------------------------------------
+// Fields
+// ---------------------------------------------------------------------
+
+private final String name;
+
+private final String file;
+
+private final int pid;
+
+private final boolean undir;
+
+private final double ratio;
+
+private final int hop;
+
+private final int cache;
+
+// ---------------------------------------------------------------------
+// Initialization
+// ---------------------------------------------------------------------
+
+/**
+ * Read the configuration parameters.
+ */
+public RouterGraphInitializer(String prefix)
+{
+	name = prefix;
+	file = Configuration.getString(prefix + "." + PAR_FILE, null);
+	if (file == null)
+		pid = Configuration.getPid(prefix + "." + PAR_PROT);
+	else if (Configuration.contains(prefix + "." + PAR_PROT))
+		throw new IllegalParameterException(prefix + "." + PAR_PROT,
+			"cannot be used together with " + PAR_FILE);
+	else
+		pid = -1;
+	undir = Configuration.contains(prefix + "." + PAR_UNDIR);
+	ratio = Configuration.getDouble(prefix + "." + PAR_RATIO, 1);
+	hop = Configuration.getInt(prefix + "." + PAR_HOP, 1);
+	if (hop < 0)
+		throw new IllegalParameterException(prefix + "." + PAR_HOP,
+			"must not be negative");
+	cache = Configuration.getInt(prefix + "." + PAR_CACHE, 256);
+	if (cache < 1)
+		throw new IllegalParameterException(prefix + "." + PAR_CACHE,
+			"must be positive");
+}
+
+// ---------------------------------------------------------------------
+// Methods
+// ---------------------------------------------------------------------
+
+/**
+ * Initializes {@link RouterGraph}, and prints the number of routers and
+ * links, separated by spaces.
+ * @return always false
+ */
+public boolean execute()
+{
+	final int[] offsets, targets, weights;
+	final boolean directed;
+	if (file != null) {
+		final MappedGraph g;
+		try {
+			g = new MappedGraph(file);
+		} catch (IOException e) {
+			throw new IllegalParameterException(name + "." + PAR_FILE,
+				e.getMessage());
+		}
+		final CSRGraph csr = g.toCSR();
+		offsets = csr.offsets;
+		targets = csr.targets;
+		weights = new int[targets.length];
+		for (int e = 0; e < weights.length; ++e) {
+			weights[e] = (g.hasWeights() ? (int) (g.weight(e) * ratio) : hop);
+			if (weights[e] < 0)
+				throw new IllegalParameterException(name + "." + PAR_FILE,
+					"negative weight of edge " + e);
+		}
+		directed = g.directed();
+	} else {
+		final Graph og = (undir ? new ConstUndirGraph(new OverlayGraph(pid))
+			: new OverlayGraph(pid));
+		final CSRGraph csr = new CSRGraph(og);
+		offsets = csr.offsets;
+		targets = csr.targets;
+		weights = new int[targets.length];
+		Arrays.fill(weights, hop);
+		directed = !undir;
+	}
+	RouterGraph.reset(offsets, targets, weights, directed, cache);
+	System.out.println(name + ": " + RouterGraph.getSize() + " " +
+		RouterGraph.getLinks());
+	return false;
+}
+
+}
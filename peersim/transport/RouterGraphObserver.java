@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.transport;
+
+import peersim.core.Control;
+
+/**
+ * Prints the statistics of the latency cache of {@link RouterGraph}.
+ */
+public class RouterGraphObserver implements Control
+{
+
+// ---------------------------------------------------------------------
+// Fields
+// ---------------------------------------------------------------------
+
+/** The name of this object in the configuration file */
+private final String name;
+
+// ---------------------------------------------------------------------
+// Initialization
+// ---------------------------------------------------------------------
+
+/**
+ * Standard constructor that reads the configuration parameters.
+ * Invoked by the simulation engine.
+ * @param prefix the configuration prefix for this class
+ */
+public RouterGraphObserver(String prefix)
+{
+	name = prefix;
+}
+
+// ---------------------------------------------------------------------
+// Methods
+// ---------------------------------------------------------------------
+
+/**
+ * Prints the number of hits and misses of the cache since the
+ * initialization of {@link RouterGraph}, the hit ratio, and the number of
+ * cached sources, separated by spaces.
+ * @return always false
+ */
+public boolean execute()
+{
+	final long hits = RouterGraph.getHits();
+	final long misses = RouterGraph.getMisses();
+	System.out.println(name + ": " + hits + " " + misses + " " +
+		(double) hits / (hits + misses) + " " + RouterGraph.getCached());
+	return false;
+}
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.transport;
+
+import peersim.config.*;
+import peersim.core.*;
+import peersim.edsim.*;
+
+
+/**
+ * This transport protocol is based on the {@link RouterGraph} class.
+ * It works like {@link E2ETransport}, but the latency between two routers
+ * is the length of the shortest path between them in a graph of links,
+ * which is calculated on demand and cached. Routers are assigned by
+ * {@link UniformRouterAssignment}. Messages between routers that are
+ * not connected by any path are dropped.
+ */
+public class ShortestPathTransport implements Transport, RouterInfo
+{
+
+//---------------------------------------------------------------------
+//Parameters
+//---------------------------------------------------------------------
+
+/**
+ * The delay that corresponds to the time spent on the source (and destination)
+ * nodes. In other words, full latency is calculated by the shortest path
+ * between the routers, incremented by twice this delay. Defaults to 0.
+ * @config
+ */
+private static final String PAR_LOCAL = "local";
+	
+//---------------------------------------------------------------------
+//Static fields
+//---------------------------------------------------------------------
+
+/** Identifier of this transport protocol */
+private static int tid;
+	
+/** Local component of latency */
+private static long local;
+
+//---------------------------------------------------------------------
+//Fields
+//---------------------------------------------------------------------
+
+/** Identifier of the internal node */
+private int router = -1;
+	
+//---------------------------------------------------------------------
+//Initialization
+//---------------------------------------------------------------------
+
+/**
+ * Reads configuration parameters.
+ */
+public ShortestPathTransport(String prefix)
+{
+	tid = CommonState.getPid();
+	local = Configuration.getLong(prefix + "." + PAR_LOCAL, 0);
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * Clones the object.
+ */
+public Object clone()
+{
+	ShortestPathTransport ct=null;
+	try { ct=(ShortestPathTransport)super.clone(); }
+	catch( CloneNotSupportedException e ) {} // never happens
+	return ct;
+}
+
+//---------------------------------------------------------------------
+//Methods inherited by Transport
+//---------------------------------------------------------------------
+
+/**
+* Delivers the message with the latency calculated by {@link #getLatency},
+* or drops it if the routers are not connected.
+*/
+public void send(Node src, Node dest, Object msg, int pid)
+{
+	final long delay = getLatency(src, dest);
+	if (delay >= 0)
+		EDSimulator.add(delay, msg, dest, pid);
+}
+
+//---------------------------------------------------------------------
+
+/**
+* Calculates latency using the static singleton {@link RouterGraph}.
+* It looks up which routers the given nodes are assigned to, then
+* looks up the latency of the shortest path between them. Finally it
+* increments this value by adding twice the local delay configured by
+* {@value #PAR_LOCAL}.
+* @return the latency, or -1 if the routers are not connected
+*/
+public long getLatency(Node src, Node dest)
+{
+	/* Assuming that the sender corresponds to the source node */
+	ShortestPathTransport sender =
+		(ShortestPathTransport) src.getProtocol(tid);
+	ShortestPathTransport receiver =
+		(ShortestPathTransport) dest.getProtocol(tid);
+	final int l = RouterGraph.getLatency(sender.router, receiver.router);
+	return (l < 0 ? -1 : l + local*2);
+}
+
+
+//---------------------------------------------------------------------
+//Methods inherited by RouterInfo
+//---------------------------------------------------------------------
+
+/**
+ * Associates the node hosting this transport protocol instance with
+ * a router in the router network.
+ * 
+ * @param router the numeric index of the router 
+ */
+public void setRouter(int router)
+{
+	this.router = router;
+}
+
+//---------------------------------------------------------------------
+
+/**
+ * @return the router associated to this transport protocol.
+ */
+public int getRouter()
+{
+	return router;
+}
+
+}
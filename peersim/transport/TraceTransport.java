@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.transport;
+
+import java.io.IOException;
+import peersim.config.*;
+import peersim.core.*;
+
+
+/**
+ * This transport protocol works like {@link E2ETransport}, but the
+ * latencies of {@link E2ENetwork} change in time according to a trace
+ * replayed by {@link LatencyTrace}. Before a message is sent or a latency
+ * is returned, all the changes of the trace up to the current time are
+ * applied. The trace is opened when the protocol is created, at the
+ * beginning of each experiment, and it is read in the background as the
+ * simulation advances.
+ * The initial latencies must be stored on the heap by an initializer,
+ * for example {@link KingParser}.
+ */
+public class TraceTransport extends E2ETransport
+{
+
+//---------------------------------------------------------------------
+//Parameters
+//---------------------------------------------------------------------
+
+/**
+ * The trace file, in the format described at {@link LatencyTrace}.
+ * @config
+ */
+private static final String PAR_FILE = "file";
+
+/**
+ * The length of the window of time of the blocks read in the background.
+ * Defaults to 10000.
+ * @config
+ */
+private static final String PAR_WINDOW = "window";
+
+/**
+ * The ratio between the latencies in the trace and the time units used in
+ * the simulation. Defaults to 1.
+ * @config
+ */
+private static final String PAR_RATIO = "ratio";
+
+//---------------------------------------------------------------------
+//Initialization
+//---------------------------------------------------------------------
+
+/**
+ * Reads configuration parameters and opens the trace.
+ */
+public TraceTransport(String prefix)
+{
+	super(prefix);
+	final String file = Configuration.getString(prefix + "." + PAR_FILE);
+	final long window = Configuration.getLong(prefix + "." + PAR_WINDOW,
+		10000);
+	if (window < 1)
+		throw new IllegalParameterException(prefix + "." + PAR_WINDOW,
+			"must be positive");
+	final double ratio = Configuration.getDouble(prefix + "." + PAR_RATIO, 1);
+	try {
+		LatencyTrace.open(file, window, ratio);
+	} catch (IOException e) {
+		throw new IllegalParameterException(prefix + "." + PAR_FILE,
+			"cannot read " + file + ": " + e.getMessage());
+	}
+}
+
+//---------------------------------------------------------------------
+//Methods inherited by Transport
+//---------------------------------------------------------------------
+
+/**
+* Applies the changes of the trace up to the current time, and delivers
+* the message reliably, with the latency calculated by {@link #getLatency}.
+*/
+public void send(Node src, Node dest, Object msg, int pid)
+{
+	LatencyTrace.advance(CommonState.getTime());
+	super.send(src, dest, msg, pid);
+}
+
+//---------------------------------------------------------------------
+
+/**
+* Applies the changes of the trace up to the current time, and returns
+* the latency as described at {@link E2ETransport#getLatency}.
+*/
+public long getLatency(Node src, Node dest)
+{
+	LatencyTrace.advance(CommonState.getTime());
+	return super.getLatency(src, dest);
+}
+
+}
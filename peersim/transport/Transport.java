@@ -49,6 +49,10 @@ public void send(Node src, Node dest, Object msg, int pid);
 /**
  * Return a latency estimate from node <code>src</code> to protocol
  * <code>pid</code> of node <code>dst</code>. 
+ * A negative value means that <code>dest</code> cannot be reached from
+ * <code>src</code> (for example, see {@link ShortestPathTransport}).
+ * Messages sent in that case are dropped; transports that schedule
+ * messages with the latency of another transport must drop them too.
  * 
  * @param src sender node
  * @param dest destination node
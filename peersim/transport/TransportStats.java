@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.transport;
+
+import peersim.config.*;
+import peersim.core.*;
+import peersim.util.LogHistogram;
+
+/**
+ * Prints the statistics collected by an {@link InstrumentedTransport}, one
+ * line for each protocol that messages were sent to.
+ */
+public class TransportStats implements Control
+{
+
+// ---------------------------------------------------------------------
+// Parameters
+// ---------------------------------------------------------------------
+
+/**
+ * The {@link InstrumentedTransport} protocol.
+ * @config
+ */
+private static final String PAR_PROT = "protocol";
+
+/**
+ * If defined, the statistics are reset after they are printed, so each
+ * execution prints the statistics of the messages since the previous one.
+ * Not defined by default.
+ * @config
+ */
+private static final String PAR_RESET = "reset";
+
+// ---------------------------------------------------------------------
+// Fields
+// ---------------------------------------------------------------------
+
+/** The name of this object in the configuration file */
+private final String name;
+
+/** {@link #PAR_PROT} */
+private final int pid;
+
+/** {@link #PAR_RESET} */
+private final boolean reset;
+
+// ---------------------------------------------------------------------
+// Initialization
+// ---------------------------------------------------------------------
+
+/**
+ * Standard constructor that reads the configuration parameters.
+ * Invoked by the simulation engine.
+ * @param prefix the configuration prefix for this class
+ */
+public TransportStats(String prefix)
+{
+	name = prefix;
+	pid = Configuration.getPid(prefix + "." + PAR_PROT);
+	reset = Configuration.contains(prefix + "." + PAR_RESET);
+}
+
+// ---------------------------------------------------------------------
+// Methods
+// ---------------------------------------------------------------------
+
+/**
+ * For each protocol that messages were sent to, prints the name of the
+ * protocol, the number of messages sent and delivered, the total size of
+ * the messages sent, and the average, the 50th, 90th and 99th percentiles
+ * and the maximum of the latency, separated by spaces.
+ * @return always false
+ */
+public boolean execute()
+{
+	final Object p = Network.prototype.getProtocol(pid);
+	if (!(p instanceof InstrumentedTransport))
+		throw new IllegalParameterException(name + "." + PAR_PROT,
+			"protocol " + Configuration.lookupPid(pid) +
+			" is not an InstrumentedTransport");
+	final InstrumentedTransport t = (InstrumentedTransport) p;
+	final int n = Configuration.getNames(Node.PAR_PROT).length;
+	for (int i = 0; i < n; ++i) {
+		if (t.getSent(i) == 0 && t.getDelivered(i) == 0)
+			continue;
+		final LogHistogram h = t.getLatencies(i);
+		System.out.println(name + ": " + Configuration.lookupPid(i) + " " +
+			t.getSent(i) + " " + t.getDelivered(i) + " " + t.getBytes(i) +
+			" " + h.getAverage() + " " + h.getPercentile(50) + " " +
+			h.getPercentile(90) + " " + h.getPercentile(99) + " " +
+			h.getMax());
+	}
+	if (reset)
+		t.reset();
+	return false;
+}
+
+}
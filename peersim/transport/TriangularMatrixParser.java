@@ -63,6 +63,26 @@ private static final String PAR_FILE = "file";
  */
 private static final String PAR_RATIO = "ratio";
 
+/**
+ * If defined, the latencies are stored in a memory-mapped file with this
+ * name instead of the heap (see
+ * {@link E2ENetwork#reset(int,boolean,String,int,long)}). If the file
+ * already contains the latencies read from the same source with the same
+ * ratio and quantum, it is reopened without parsing the source (see
+ * {@link E2ENetwork#load}).
+ * @config
+ */
+private static final String PAR_MAPPED = "mapped";
+
+/**
+ * If positive, latencies in the memory-mapped file are stored in 16 bits,
+ * rounded to multiples of this value, which must not be larger than
+ * {@link E2ENetwork#MAX_QUANTUM}. Defaults to 0, which means 32 bit
+ * latencies. Used only if {@value #PAR_MAPPED} is defined.
+ * @config
+ */
+private static final String PAR_QUANTUM = "quantum";
+
 // ---------------------------------------------------------------------
 // Fields
 // ---------------------------------------------------------------------
@@ -73,6 +93,12 @@ private String filename;
 /** Ratio read from PAR_RATIO */
 private double ratio;
 
+/** Name of the memory-mapped file, or null */
+private String mapped;
+
+/** Quantum of the memory-mapped file */
+private int quantum;
+
 // ---------------------------------------------------------------------
 // Initialization
 // ---------------------------------------------------------------------
@@ -84,6 +110,11 @@ public TriangularMatrixParser(String prefix)
 {
 	filename = Configuration.getString(prefix + "." + PAR_FILE);
 	ratio = Configuration.getDouble(prefix + "." + PAR_RATIO);
+	mapped = Configuration.getString(prefix + "." + PAR_MAPPED, null);
+	quantum = Configuration.getInt(prefix + "." + PAR_QUANTUM, 0);
+	if (quantum < 0 || quantum > E2ENetwork.MAX_QUANTUM)
+		throw new IllegalParameterException(prefix + "." + PAR_QUANTUM,
+			"must be between 0 and " + E2ENetwork.MAX_QUANTUM);
 }
 
 // ---------------------------------------------------------------------
@@ -96,6 +127,11 @@ public TriangularMatrixParser(String prefix)
 */
 public boolean execute()
 {
+	final long key = E2ENetwork.sourceKey(filename, ratio);
+	if (mapped != null && E2ENetwork.load(mapped, true, quantum, key)) {
+		System.err.println("TriangularMatrixParser: reusing " + mapped);
+		return false;
+	}
 	try {
 		ObjectInputStream in = null;
 		try {
@@ -114,7 +150,10 @@ public boolean execute()
 	  int size = in.readInt();
 	  
 		// Reset the E2E network
-		E2ENetwork.reset(size, true);
+		if (mapped == null)
+			E2ENetwork.reset(size, true);
+		else
+			E2ENetwork.reset(size, true, mapped, quantum, key);
 		System.err.println("TriangularMatrixParser: reading " + size + " rows");
 	
 		// If the file format is not correct, data will be read 
@@ -131,6 +170,8 @@ public boolean execute()
 			}
 		}
 		System.err.println("TriangularMatrixParser: Read " + count + " entries");
+		in.close();
+		E2ENetwork.complete();
 	} catch (IOException e) {
 		throw new RuntimeException(e.getMessage());
 	}
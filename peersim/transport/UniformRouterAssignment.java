@@ -24,7 +24,9 @@ import peersim.core.*;
 
 /**
  * Initializes {@link RouterInfo} protocols by assigning routers to them.
- * The number of routers is defined by static singleton {@link E2ENetwork}.
+ * The number of routers is defined by static singleton {@link E2ENetwork},
+ * or if it is empty, by {@link RouterCoordinates} or {@link RouterGraph},
+ * unless it is given explicitly by {@value #PAR_ROUTERS}.
  *
  * @author Alberto Montresor
  * @version $Revision: 1.6 $
@@ -42,6 +44,14 @@ public class UniformRouterAssignment implements Control
  * @config 
  */
 private static final String PAR_PROT = "protocol"; 
+
+/**
+ * The number of routers. If not defined, the number of routers of
+ * {@link E2ENetwork} is used if it is not 0, otherwise that of
+ * {@link RouterCoordinates}, and finally that of {@link RouterGraph}.
+ * @config
+ */
+private static final String PAR_ROUTERS = "routers";
 	
 //---------------------------------------------------------------------
 //Methods
@@ -49,6 +59,9 @@ private static final String PAR_PROT = "protocol";
 
 /** Protocol identifier */
 private int pid;	
+
+/** Number of routers, or 0 if not specified */
+private int routers;
 	
 
 //---------------------------------------------------------------------
@@ -61,6 +74,10 @@ private int pid;
 public UniformRouterAssignment(String prefix)
 {
 	pid = Configuration.getPid(prefix+"."+PAR_PROT);
+	routers = Configuration.getInt(prefix+"."+PAR_ROUTERS, 0);
+	if (routers < 0)
+		throw new IllegalParameterException(prefix+"."+PAR_ROUTERS,
+			"must not be negative");
 }
 
 //---------------------------------------------------------------------
@@ -70,13 +87,19 @@ public UniformRouterAssignment(String prefix)
 /**
  * Initializes given {@link RouterInfo} protocol layer by assigning
  * routers randomly.
- * The number of routers is defined by static singleton {@link E2ENetwork}.
+ * The number of routers is defined as described at {@value #PAR_ROUTERS}.
 * @return always false
 */
 public boolean execute()
 {
 	int nsize = Network.size();
-	int nrouters = E2ENetwork.getSize();
+	int nrouters = routers;
+	if (nrouters == 0)
+		nrouters = E2ENetwork.getSize();
+	if (nrouters == 0)
+		nrouters = RouterCoordinates.getSize();
+	if (nrouters == 0)
+		nrouters = RouterGraph.getSize();
 	for (int i=0; i < nsize; i++) {
 		Node node = Network.get(i);
 		RouterInfo t = (RouterInfo) node.getProtocol(pid);
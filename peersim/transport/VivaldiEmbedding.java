@@ -0,0 +1,358 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.transport;
+
+import java.io.*;
+import java.util.Arrays;
+import peersim.config.*;
+import peersim.core.*;
+import peersim.util.ExtendedRandom;
+import peersim.util.RangeTask;
+
+/**
+ * Fits the coordinates of {@link RouterCoordinates} to the latencies
+ * stored in {@link E2ENetwork}, so that simulations can use
+ * {@link CoordinateTransport}, which needs linear memory, instead of
+ * {@link E2ETransport}, which needs quadratic memory. The latencies are
+ * normally read by {@link KingParser} or {@link TriangularMatrixParser}
+ * before this control is executed.
+ * <p>
+ * The fitting follows the Vivaldi algorithm with height vectors (Dabek et
+ * al., SIGCOMM 2004). In each round, every router samples
+ * {@value #PAR_NEIGHBOURS} random other routers, and moves along the
+ * average of the spring forces towards or away from them, weighted by the
+ * relative confidence in its own coordinates. All routers are updated
+ * in parallel from the coordinates of the previous round (Jacobi
+ * iteration), using {@link RangeTask}. The random samples are drawn from
+ * streams derived from a seed taken from {@link CommonState#r}, so the
+ * result does not depend on the number of threads.
+ * <p>
+ * After fitting, the relative error |d-l|/l of the approximation d of
+ * the latency l is measured on {@value #PAR_SAMPLES} random pairs of
+ * routers, and the median, the 90th percentile and the mean of the
+ * relative error are printed, followed by the number of rounds performed,
+ * separated by spaces.
+ */
+public class VivaldiEmbedding implements Control
+{
+
+// ---------------------------------------------------------------------
+// Parameters
+// ---------------------------------------------------------------------
+
+/**
+ * The dimension of the space, not including the height. Defaults to 2.
+ * @config
+ */
+private static final String PAR_DIM = "dim";
+
+/**
+ * The number of rounds. Defaults to 200.
+ * @config
+ */
+private static final String PAR_ROUNDS = "rounds";
+
+/**
+ * The number of routers sampled by each router in each round. Defaults
+ * to 16.
+ * @config
+ */
+private static final String PAR_NEIGHBOURS = "neighbours";
+
+/**
+ * The step size of the coordinate updates (c<sub>c</sub> in Vivaldi).
+ * Defaults to 0.25.
+ * @config
+ */
+private static final String PAR_CC = "cc";
+
+/**
+ * The step size of the error updates (c<sub>e</sub> in Vivaldi).
+ * Defaults to 0.25.
+ * @config
+ */
+private static final String PAR_CE = "ce";
+
+/**
+ * The number of random pairs used to measure the error of the
+ * approximation. Defaults to 100000.
+ * @config
+ */
+private static final String PAR_SAMPLES = "samples";
+
+/**
+ * If defined, the coordinates are loaded from this file if it exists
+ * (see {@link RouterCoordinates#load}), and they are not fitted.
+ * Otherwise they are fitted and saved to this file.
+ * @config
+ */
+private static final String PAR_FILE = "file";
+
+/**
+ * If defined, the latency matrix of {@link E2ENetwork} is released after
+ * fitting (the network is reset to size 0), so that its memory can be
+ * reclaimed.
+ * @config
+ */
+private static final String PAR_RELEASE = "release";
+
+// ---------------------------------------------------------------------
+// Fields
+// ---------------------------------------------------------------------
+
+/** The number of routers updated by a task */
+private static final int GRAIN = 256;
+
+private final String name;
+
+private final int dim;
+
+private final int rounds;
+
+private final int neighbours;
+
+private final double cc;
+
+private final double ce;
+
+private final int samples;
+
+private final String file;
+
+private final boolean release;
+
+// ---------------------------------------------------------------------
+// Initialization
+// ---------------------------------------------------------------------
+
+/**
+ * Read the configuration parameters.
+ */
+public VivaldiEmbedding(String prefix)
+{
+	name = prefix;
+	dim = Configuration.getInt(prefix + "." + PAR_DIM, 2);
+	if (dim < 1)
+		throw new IllegalParameterException(prefix + "." + PAR_DIM,
+			"must be positive");
+	rounds = Configuration.getInt(prefix + "." + PAR_ROUNDS, 200);
+	neighbours = Configuration.getInt(prefix + "." + PAR_NEIGHBOURS, 16);
+	if (neighbours < 1)
+		throw new IllegalParameterException(prefix + "." + PAR_NEIGHBOURS,
+			"must be positive");
+	cc = Configuration.getDouble(prefix + "." + PAR_CC, 0.25);
+	ce = Configuration.getDouble(prefix + "." + PAR_CE, 0.25);
+	samples = Configuration.getInt(prefix + "." + PAR_SAMPLES, 100000);
+	file = Configuration.getString(prefix + "." + PAR_FILE, null);
+	release = Configuration.contains(prefix + "." + PAR_RELEASE);
+}
+
+// ---------------------------------------------------------------------
+// Methods
+// ---------------------------------------------------------------------
+
+/**
+ * Fits or loads the coordinates and prints the error statistics. If
+ * the coordinates are loaded and {@link E2ENetwork} does not have the same
+ * number of routers, the statistics are not printed.
+ * @return always false
+ */
+public boolean execute()
+{
+	int done = 0;
+	if (file != null && new File(file).exists()) {
+		try {
+			RouterCoordinates.load(file);
+		} catch (IOException e) {
+			throw new IllegalParameterException(name + "." + PAR_FILE,
+				e.getMessage());
+		}
+		if (E2ENetwork.getSize() != RouterCoordinates.getSize()) {
+			System.out.println(name + ": loaded " + file);
+			return false;
+		}
+	} else {
+		if (E2ENetwork.getSize() < 2)
+			throw new IllegalStateException(name +
+				": no latencies to fit in E2ENetwork");
+		done = fit(CommonState.r.nextLong());
+		if (file != null) {
+			try {
+				RouterCoordinates.save(file);
+			} catch (IOException e) {
+				throw new IllegalParameterException(name + "." + PAR_FILE,
+					e.getMessage());
+			}
+		}
+	}
+
+	final double[] err = error(CommonState.r.nextLong());
+	System.out.println(name + ": " + err[0] + " " + err[1] + " " + err[2] +
+		" " + done);
+	if (release)
+		E2ENetwork.reset(0, true);
+	return false;
+}
+
+// ---------------------------------------------------------------------
+
+/**
+ * Fits the coordinates to the latencies of {@link E2ENetwork}.
+ * @return the number of rounds
+ */
+private int fit(final long seed)
+{
+	final int n = E2ENetwork.getSize();
+	RouterCoordinates.reset(n, dim);
+	final float[] pos = RouterCoordinates.positions();
+	final float[] height = RouterCoordinates.heights();
+	final float[] npos = new float[n * dim];
+	final float[] nheight = new float[n];
+	final float[] error = new float[n];
+	final float[] nerror = new float[n];
+	Arrays.fill(error, 1);
+
+	// start from random positions on the scale of the latencies
+	final ExtendedRandom r = new ExtendedRandom(seed);
+	double scale = 0;
+	for (int s = 0; s < 1000; ++s)
+		scale += E2ENetwork.getLatency(r.nextInt(n), r.nextInt(n));
+	scale = Math.max(1, scale / 1000);
+	for (int k = 0; k < pos.length; ++k)
+		pos[k] = (float) ((r.nextDouble() - 0.5) * scale);
+
+	for (int round = 0; round < rounds; ++round) {
+		final long rseed = ExtendedRandom.streamSeed(seed, round);
+		new RangeTask(GRAIN) {
+			protected void process(int from, int to)
+			{
+				update(from, to, new ExtendedRandom(
+					ExtendedRandom.streamSeed(rseed, from)), pos, height,
+					error, npos, nheight, nerror);
+			}
+		}.run(0, n);
+		System.arraycopy(npos, 0, pos, 0, pos.length);
+		System.arraycopy(nheight, 0, height, 0, n);
+		System.arraycopy(nerror, 0, error, 0, n);
+	}
+	return rounds;
+}
+
+// ---------------------------------------------------------------------
+
+/**
+ * Calculates the new coordinates and errors of routers from to to-1
+ * into npos, nheight and nerror.
+ */
+private void update(int from, int to, ExtendedRandom r, float[] pos,
+		float[] height, float[] error, float[] npos, float[] nheight,
+		float[] nerror)
+{
+	final int n = E2ENetwork.getSize();
+	final double[] force = new double[dim];
+	final double[] u = new double[dim];
+	for (int i = from; i < to; ++i) {
+		Arrays.fill(force, 0);
+		double hforce = 0, esum = 0, wsum = 0;
+		int count = 0;
+		for (int s = 0; s < neighbours; ++s) {
+			int j = r.nextInt(n - 1);
+			if (j >= i)
+				j++;
+			final int l = E2ENetwork.getLatency(i, j);
+			if (l <= 0)
+				continue;
+			// unit vector from j to i
+			double norm = 0;
+			for (int k = 0; k < dim; ++k) {
+				u[k] = pos[i * dim + k] - pos[j * dim + k];
+				norm += u[k] * u[k];
+			}
+			norm = Math.sqrt(norm);
+			if (norm == 0) {
+				for (int k = 0; k < dim; ++k) {
+					u[k] = r.nextGaussian();
+					norm += u[k] * u[k];
+				}
+				norm = Math.sqrt(norm);
+				for (int k = 0; k < dim; ++k)
+					u[k] /= norm;
+				norm = 0;
+			} else {
+				for (int k = 0; k < dim; ++k)
+					u[k] /= norm;
+			}
+			final double err = l - (norm + height[i] + height[j]);
+			final double w = error[i] / (error[i] + error[j]);
+			for (int k = 0; k < dim; ++k)
+				force[k] += w * err * u[k];
+			hforce += w * err;
+			esum += w * Math.abs(err) / l;
+			wsum += w;
+			count++;
+		}
+		if (count == 0) {
+			System.arraycopy(pos, i * dim, npos, i * dim, dim);
+			nheight[i] = height[i];
+			nerror[i] = error[i];
+			continue;
+		}
+		for (int k = 0; k < dim; ++k)
+			npos[i * dim + k] = (float) (pos[i * dim + k] +
+				cc * force[k] / count);
+		nheight[i] = (float) Math.max(0, height[i] + cc * hforce / count);
+		final double w = ce * wsum / count;
+		nerror[i] = (float) Math.max(1e-3, Math.min(1,
+			w * esum / wsum + (1 - w) * error[i]));
+	}
+}
+
+// ---------------------------------------------------------------------
+
+/**
+ * Returns the median, the 90th percentile and the mean of the relative
+ * error of the approximation on random pairs of routers with positive
+ * latency.
+ */
+private double[] error(long seed)
+{
+	final int n = RouterCoordinates.getSize();
+	final ExtendedRandom r = new ExtendedRandom(seed);
+	final double[] e = new double[samples];
+	int count = 0;
+	double sum = 0;
+	for (int s = 0; s < samples && n > 1; ++s) {
+		final int i = r.nextInt(n);
+		int j = r.nextInt(n - 1);
+		if (j >= i)
+			j++;
+		final int l = E2ENetwork.getLatency(i, j);
+		if (l <= 0)
+			continue;
+		e[count] = Math.abs(RouterCoordinates.getDistance(i, j) - l) / l;
+		sum += e[count++];
+	}
+	if (count == 0)
+		return new double[] { Double.NaN, Double.NaN, Double.NaN };
+	Arrays.sort(e, 0, count);
+	return new double[] { e[count / 2], e[(int) (0.9 * (count - 1))],
+		sum / count };
+}
+
+}
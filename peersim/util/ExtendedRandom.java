@@ -110,6 +110,25 @@ public long getLastSeed() { return lastSeed; }
 
 // -------------------------------------------------------------------------
 
+/**
+* Derives a seed for an independent random stream from a base seed.
+* Parallel algorithms can use it to seed one generator for each block of
+* work, so that the result does not depend on the number of threads or on
+* scheduling. The seeds are produced by the SplitMix64 mixing function,
+* so nearby stream numbers give unrelated seeds.
+* @param seed the base seed
+* @param stream the number of the stream
+*/
+public static long streamSeed( long seed, long stream ) {
+
+	long z = seed + (stream+1) * 0x9E3779B97F4A7C15L;
+	z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+	z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+	return z ^ (z >>> 31);
+}
+
+// -------------------------------------------------------------------------
+
 /*
 public static void main(String[] args) {
 
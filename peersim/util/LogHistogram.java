@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.util;
+
+import java.util.Arrays;
+
+/**
+* A histogram of non-negative long values with bounded relative error,
+* in the style of HdrHistogram. Values below 2<sup>p</sup> have their own
+* bucket, where p is the precision. Above that, every interval
+* [2<sup>k</sup>,2<sup>k+1</sup>) is split into 2<sup>p-1</sup> buckets of
+* equal width, so a value is known with a relative error of at most
+* 2<sup>1-p</sup>. The buckets are a single array of counters and the
+* bucket of a value is found with a few bit operations, so adding a value
+* is cheap and does not allocate. The minimum, the maximum and the sum of
+* the values are kept exactly.
+*/
+public class LogHistogram {
+
+
+// ===================== fields ========================================
+// =====================================================================
+
+
+/** The number of buckets in each interval [2^k,2^(k+1)), 2^(p-1) */
+private final int half;
+
+/** The precision p */
+private final int precision;
+
+private final long[] counts;
+
+private long n;
+
+private long sum;
+
+private long min;
+
+private long max;
+
+// ====================== initialization ==============================
+// ====================================================================
+
+
+/**
+* Creates a histogram with the given precision.
+* @param precision the number of significant bits kept of each value,
+* between 1 and 16. 7 bits give a relative error below 2%.
+*/
+public LogHistogram( int precision ) {
+
+	if( precision < 1 || precision > 16 )
+		throw new IllegalArgumentException(
+			"precision must be between 1 and 16");
+	this.precision = precision;
+	half = 1<<(precision-1);
+	counts = new long[(65-precision)*half];
+	reset();
+}
+
+// --------------------------------------------------------------------
+
+/** Removes all values. */
+public void reset() {
+
+	Arrays.fill(counts,0);
+	n = 0;
+	sum = 0;
+	min = Long.MAX_VALUE;
+	max = Long.MIN_VALUE;
+}
+
+
+// ======================== methods ===================================
+// ====================================================================
+
+
+/** Adds a value.
+* @throws IllegalArgumentException if the value is negative */
+public void add( long value ) {
+
+	if( value < 0 )
+		throw new IllegalArgumentException("negative value "+value);
+	counts[index(value)]++;
+	n++;
+	sum += value;
+	if( value < min ) min = value;
+	if( value > max ) max = value;
+}
+
+// --------------------------------------------------------------------
+
+/** Adds all values of the given histogram, which must have the same
+* precision. */
+public void add( LogHistogram h ) {
+
+	if( h.precision != precision )
+		throw new IllegalArgumentException("different precisions");
+	for(int i=0; i<counts.length; ++i) counts[i] += h.counts[i];
+	n += h.n;
+	sum += h.sum;
+	if( h.min < min ) min = h.min;
+	if( h.max > max ) max = h.max;
+}
+
+// --------------------------------------------------------------------
+
+/** The precision given at construction */
+public int getPrecision() { return precision; }
+
+// --------------------------------------------------------------------
+
+/** The number of values */
+public long getN() { return n; }
+
+// --------------------------------------------------------------------
+
+/** The sum of the values */
+public long getSum() { return sum; }
+
+// --------------------------------------------------------------------
+
+/** The minimum of the values, or 0 if there are none */
+public long getMin() { return (n == 0 ? 0 : min); }
+
+// --------------------------------------------------------------------
+
+/** The maximum of the values, or 0 if there are none */
+public long getMax() { return (n == 0 ? 0 : max); }
+
+// --------------------------------------------------------------------
+
+/** The average of the values, NaN if there are none */
+public double getAverage() { return (double)sum/n; }
+
+// --------------------------------------------------------------------
+
+/**
+* Returns the given percentile of the values: the largest value of the
+* bucket that contains the value with rank ceil(q*n/100), but at most the
+* maximum. So the result is never smaller than the exact percentile, and
+* it is larger by at most the relative error of the histogram.
+* Returns 0 if there are no values.
+* @param q the percentile, between 0 and 100
+*/
+public long getPercentile( double q ) {
+
+	if( !(q >= 0 && q <= 100) )
+		throw new IllegalArgumentException("percentile "+q+
+			" is not between 0 and 100");
+	if( n == 0 ) return 0;
+	final long rank = Math.max(1,(long)Math.ceil(q*n/100));
+	long c = 0;
+	int i = 0;
+	while( (c += counts[i]) < rank ) i++;
+	return Math.min(max,highest(i));
+}
+
+// --------------------------------------------------------------------
+
+/**
+* Prints the following quantities separated by spaces in a single line
+* in this order.
+* Minimum, maximum, number of values, average, the 50th, 90th, 99th and
+* 99.9th percentiles.
+*/
+public String toString() {
+
+	return getMin()+" "+getMax()+" "+n+" "+getAverage()+" "+
+		getPercentile(50)+" "+getPercentile(90)+" "+
+		getPercentile(99)+" "+getPercentile(99.9);
+}
+
+// --------------------------------------------------------------------
+
+/**
+* The bucket of a non-negative value. Values that have at most p bits
+* are their own bucket. Otherwise the value is shifted right so that it
+* has p bits, which is between 2^(p-1) and 2^p-1, and the buckets of
+* consecutive shifts follow each other.
+*/
+private int index( long value ) {
+
+	final int shift = Math.max(0,64-Long.numberOfLeadingZeros(value)-
+		precision);
+	return shift*half+(int)(value>>>shift);
+}
+
+// --------------------------------------------------------------------
+
+/** The largest value in the given bucket. */
+private long highest( int i ) {
+
+	final int shift = Math.max(0,i/half-1);
+	final long x = i-(long)shift*half;
+	return ((x+1)<<shift)-1;
+}
+
+}
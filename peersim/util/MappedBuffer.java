@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+* A file mapped into memory, which can be larger than the 2GB limit of a
+* single {@link MappedByteBuffer}. The file is mapped in segments of
+* {@value #SEGMENT} bytes, and values are accessed by absolute long
+* positions, in little-endian byte order. A value must not span two
+* segments, which is guaranteed if every value is aligned to its own size
+* (for example longs are at positions divisible by 8).
+* <p>
+* Reading is safe from several threads at the same time. Writing
+* different positions from several threads is also safe, but the written
+* values are guaranteed to be visible to other threads only after proper
+* synchronization (like the end of {@link RangeTask#run}).
+*/
+public class MappedBuffer {
+
+
+// ======================= fields ====================================
+// ===================================================================
+
+
+/** The size of the segments. */
+public static final int SEGMENT = 1<<30;
+
+private static final int SHIFT = 30;
+
+private static final long MASK = SEGMENT-1;
+
+private final MappedByteBuffer[] segments;
+
+private final long size;
+
+
+// ======================= initialization ============================
+// ===================================================================
+
+
+/**
+* Maps the given existing file read-only.
+*/
+public MappedBuffer( String file ) throws IOException {
+
+	RandomAccessFile raf = new RandomAccessFile(file,"r");
+	try
+	{
+		size = raf.length();
+		segments = map(raf.getChannel(),FileChannel.MapMode.READ_ONLY,size);
+	}
+	finally { raf.close(); }
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Creates or truncates the given file so that its size is the given
+* number of bytes, and maps it for reading and writing. The content is
+* initially all zero.
+*/
+public MappedBuffer( String file, long size ) throws IOException {
+
+	RandomAccessFile raf = new RandomAccessFile(file,"rw");
+	try
+	{
+		raf.setLength(0);
+		raf.setLength(size);
+		this.size = size;
+		segments = map(raf.getChannel(),FileChannel.MapMode.READ_WRITE,size);
+	}
+	finally { raf.close(); }
+}
+
+
+// ======================= public methods ============================
+// ===================================================================
+
+
+/** Returns the size of the mapped file in bytes. */
+public long size() { return size; }
+
+// -------------------------------------------------------------------
+
+public byte getByte( long pos ) {
+
+	return segments[(int)(pos>>>SHIFT)].get((int)(pos&MASK));
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Copies len bytes from position pos to dst starting at index off.
+* The bytes can span several segments.
+*/
+public void get( long pos, byte[] dst, int off, int len ) {
+
+	while( len > 0 )
+	{
+		final int p = (int)(pos&MASK);
+		final ByteBuffer b = segments[(int)(pos>>>SHIFT)].duplicate();
+		final int k = Math.min(len,b.limit()-p);
+		b.position(p);
+		b.get(dst,off,k);
+		pos += k;
+		off += k;
+		len -= k;
+	}
+}
+
+// -------------------------------------------------------------------
+
+public short getShort( long pos ) {
+
+	return segments[(int)(pos>>>SHIFT)].getShort((int)(pos&MASK));
+}
+
+// -------------------------------------------------------------------
+
+public int getInt( long pos ) {
+
+	return segments[(int)(pos>>>SHIFT)].getInt((int)(pos&MASK));
+}
+
+// -------------------------------------------------------------------
+
+public long getLong( long pos ) {
+
+	return segments[(int)(pos>>>SHIFT)].getLong((int)(pos&MASK));
+}
+
+// -------------------------------------------------------------------
+
+public float getFloat( long pos ) {
+
+	return segments[(int)(pos>>>SHIFT)].getFloat((int)(pos&MASK));
+}
+
+// -------------------------------------------------------------------
+
+public void putByte( long pos, byte x ) {
+
+	segments[(int)(pos>>>SHIFT)].put((int)(pos&MASK),x);
+}
+
+// -------------------------------------------------------------------
+
+public void putShort( long pos, short x ) {
+
+	segments[(int)(pos>>>SHIFT)].putShort((int)(pos&MASK),x);
+}
+
+// -------------------------------------------------------------------
+
+public void putInt( long pos, int x ) {
+
+	segments[(int)(pos>>>SHIFT)].putInt((int)(pos&MASK),x);
+}
+
+// -------------------------------------------------------------------
+
+public void putLong( long pos, long x ) {
+
+	segments[(int)(pos>>>SHIFT)].putLong((int)(pos&MASK),x);
+}
+
+// -------------------------------------------------------------------
+
+public void putFloat( long pos, float x ) {
+
+	segments[(int)(pos>>>SHIFT)].putFloat((int)(pos&MASK),x);
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Writes the changes to the storage device. Has no effect on read-only
+* buffers.
+*/
+public void force() {
+
+	for(MappedByteBuffer s: segments)
+		if( !s.isReadOnly() ) s.force();
+}
+
+
+// ======================= private methods ===========================
+// ===================================================================
+
+
+private static MappedByteBuffer[] map( FileChannel ch,
+		FileChannel.MapMode mode, long size ) throws IOException {
+
+	final int k = (int)((size+MASK)>>>SHIFT);
+	MappedByteBuffer[] segments = new MappedByteBuffer[k];
+	for(int s=0; s<k; ++s)
+	{
+		final long from = (long)s<<SHIFT;
+		segments[s] = ch.map(mode,from,Math.min(SEGMENT,size-from));
+		segments[s].order(ByteOrder.LITTLE_ENDIAN);
+	}
+	return segments;
+}
+
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2003-2005 The BISON Project
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.util;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+* Executes a loop over a range of indices in parallel using a fork-join pool
+* shared by all instances. Extending classes implement {@link #process},
+* which is called on disjoint subranges that together cover the range given
+* to {@link #run}. The range is split in halves recursively until the length
+* of the subranges is at most the grain given at construction time, so the
+* subranges depend only on the range and the grain, and not on the number of
+* threads or on scheduling. This is useful if subranges draw random numbers,
+* since seeding per subrange gives reproducible results.
+* <p>
+* Method {@link #process} is called from several threads at the same time,
+* so it must write only state that belongs to its own subrange, or use
+* appropriate synchronization.
+*/
+public abstract class RangeTask {
+
+
+// ======================= fields ====================================
+// ===================================================================
+
+
+/** The shared pool, created lazily. */
+private static ForkJoinPool pool = null;
+
+/** The number of threads of the shared pool */
+private static int parallelism = Runtime.getRuntime().availableProcessors();
+
+/** The maximal length of subranges passed to {@link #process} */
+private final int grain;
+
+
+// ======================= initialization ============================
+// ===================================================================
+
+
+/**
+* @param grain the maximal length of the subranges passed to
+* {@link #process}. Values smaller than 1 are taken as 1.
+*/
+protected RangeTask( int grain ) {
+
+	this.grain = Math.max(1,grain);
+}
+
+
+// ======================= public methods ============================
+// ===================================================================
+
+
+/**
+* Sets the number of threads used by all range tasks. The default is the
+* number of available processors. If 1 is given, then ranges are
+* processed in the calling thread.
+*/
+public static synchronized void setParallelism( int p ) {
+
+	if( p < 1 ) throw new IllegalArgumentException(
+		"parallelism must be positive: "+p);
+	if( pool != null && p != parallelism )
+	{
+		pool.shutdown();
+		pool = null;
+	}
+	parallelism = p;
+}
+
+// -------------------------------------------------------------------
+
+/** Returns the number of threads used by all range tasks. */
+public static synchronized int getParallelism() { return parallelism; }
+
+// -------------------------------------------------------------------
+
+/**
+* Calls {@link #process} on subranges covering [from,to) and returns
+* when all of them have finished. Runtime exceptions thrown by
+* {@link #process} are passed on to the caller.
+*/
+public final void run( int from, int to ) {
+
+	if( to <= from ) return;
+	if( to-from <= grain || getParallelism() == 1 )
+	{
+		split(from,to);
+		return;
+	}
+	getPool().invoke(new Chunk(from,to));
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Processes the indices in [from,to). Implementations must not rely on
+* the order in which subranges are processed.
+*/
+protected abstract void process( int from, int to );
+
+
+// ======================= private methods ===========================
+// ===================================================================
+
+
+private static synchronized ForkJoinPool getPool() {
+
+	if( pool == null ) pool = new ForkJoinPool(parallelism);
+	return pool;
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Processes the range sequentially, but split into the same subranges as
+* in the parallel case.
+*/
+private void split( int from, int to ) {
+
+	if( to-from <= grain ) process(from,to);
+	else
+	{
+		final int mid = (from+to)>>>1;
+		split(from,mid);
+		split(mid,to);
+	}
+}
+
+// -------------------------------------------------------------------
+
+@SuppressWarnings("serial")
+private class Chunk extends RecursiveAction {
+
+	private final int from;
+
+	private final int to;
+
+	Chunk( int from, int to ) { this.from=from; this.to=to; }
+
+	protected void compute() {
+
+		if( to-from <= grain ) process(from,to);
+		else
+		{
+			final int mid = (from+to)>>>1;
+			invokeAll(new Chunk(from,mid), new Chunk(mid,to));
+		}
+	}
+}
+
+}